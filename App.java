@@ -1,4 +1,22 @@
+import java.io.File;
+import java.io.IOException;
+import javafx.application.Application;
 
 public class App {
 
+    /**
+     * Starts the campus map. When campus.spg has been built (make campus.spg),
+     * it is queried in place through Backend.openGraphFile, so that startup
+     * neither parses nor copies the graph; otherwise campus.dot is loaded.
+     * @param args passed on to the JavaFX application
+     * @throws IOException if campus.spg exists but cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (new File("campus.spg").exists())
+            Frontend.setBackend(Backend.openGraphFile("campus.spg"));
+        else
+            Frontend.setBackend(new Backend(new DijkstraGraph<String, Double>()));
+        Application.launch(Frontend.class, args);
+    }
+
 }
@@ -1,108 +1,460 @@
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.*;
+import java.util.NoSuchElementException;
 
 public class Backend implements BackendInterface {
+    // the number of routes cached unless another capacity is requested
+    public static final int DEFAULT_CACHE_CAPACITY = 1024;
+
     private GraphADT<String, Double> graph;
     private List<String> locations;
+
+    // routes keyed by [start, end] or [start, via, end], which are only
+    // valid while the graph stays at cacheVersion
+    private LRUCache<List<String>, RouteResult<String>> routeCache;
+    private long cacheVersion;
+
+    // an immutable copy of the graph for parallel and multi-stop queries,
+    // which is only valid while the graph stays at snapshotVersion
+    private CSRGraph<String> snapshot;
+    private long snapshotVersion;
+
+    // records how long each load takes, when not null
+    private QueryMetrics metrics;
     
     public Backend(GraphADT<String, Double> graph) {
+        this(graph, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Creates a backend over a graph, caching up to cacheCapacity of the
+     * most recently requested routes.
+     * @param graph the graph to find routes in
+     * @param cacheCapacity the number of routes to cache
+     */
+    public Backend(GraphADT<String, Double> graph, int cacheCapacity) {
         this.graph = graph;
         locations = new ArrayList<String>();
+        routeCache = new LRUCache<List<String>, RouteResult<String>>(cacheCapacity);
+        cacheVersion = graph.getVersion();
+        // a mapped graph file is already loaded, and is queried in place
+        if (graph instanceof MappedGraph) {
+            MappedGraph mapped = (MappedGraph) graph;
+            for (int id = 0; id < mapped.getNodeCount(); id++)
+                locations.add(mapped.dataOf(id));
+        }
     }
     
+    /**
+     * Creates a backend that queries a file written by GraphFile in place,
+     * through a MappedGraph, so that starting up neither parses nor copies
+     * the graph. The returned backend's graph cannot be changed, and its
+     * locations are already loaded.
+     * @param filename the path of the graph file to map
+     * @return a backend over the mapped file
+     * @throws IOException if the file cannot be read or was not written by
+     *                     GraphFile
+     */
+    public static Backend openGraphFile(String filename) throws IOException {
+        return new Backend(new MappedGraph(filename));
+    }
+
+    /**
+     * Turns metrics on or off. While on, the time taken by each call to
+     * loadGraphData is recorded in the provided QueryMetrics, and so are the
+     * queries of the graph, when it is a DijkstraGraph or a ConcurrentGraph.
+     * @param metrics the metrics to record loads and queries in, or null to
+     *                stop recording them
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+        if (graph instanceof DijkstraGraph)
+            ((DijkstraGraph<String, Double>) graph).setMetrics(metrics);
+        else if (graph instanceof ConcurrentGraph)
+            ((ConcurrentGraph<String>) graph).setMetrics(metrics);
+    }
+
+    /**
+     * Records the time taken by a load that started at started, when
+     * metrics are on.
+     * @param source the kind of file loaded
+     * @param started the time the load started
+     */
+    private void recordLoad(String source, long started) {
+        if (metrics != null) {
+            metrics.record("backend_load_nanoseconds", "source", source, System.nanoTime() - started);
+            metrics.add("backend_loads_total", "source", source, 1);
+        }
+    }
+
     public void loadGraphData(String filename) throws IOException {
-        File file = new File(filename);
-        Scanner scanner = new Scanner(file);
-        Pattern pattern = Pattern.compile("\"([a-zA-Z0-9 -.]+)\" -> \"([a-zA-Z0-9 -.]+)\" \\[seconds=([0-9.]+)\\]");
-        
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            Matcher matcher = pattern.matcher(line);
-            
-            if (matcher.find()) {
-                String startLocation = matcher.group(1);
-                String endLocation = matcher.group(2);
-                Double weight = Double.parseDouble(matcher.group(3));
-                
-                graph.insertNode(startLocation);
-                graph.insertNode(endLocation);
-                graph.insertEdge(startLocation, endLocation, weight);
-
-                if (!locations.contains(startLocation)) {
-                    locations.add(startLocation);
+        long started = metrics == null ? 0 : System.nanoTime();
+        if (GraphFile.isGraphFile(filename)) {
+            boolean autoPublish = deferPublishing();
+            try {
+                loadGraphFile(filename);
+            } finally {
+                publishLoaded(autoPublish);
+            }
+            recordLoad("graphFile", started);
+            return;
+        }
+        // names are interned by the reader, so each node is inserted once,
+        // and edges are inserted using the same String instances
+        List<String> names = new ArrayList<String>();
+        boolean autoPublish = deferPublishing();
+        try (DotReader reader = new DotReader(filename)) {
+            reader.read(new DotReader.Handler() {
+                public void node(int id, String name) {
+                    names.add(name);
+                    if (graph.insertNode(name))
+                        locations.add(name);
                 }
 
-                if (!locations.contains(endLocation)) {
-                    locations.add(endLocation);
+                public void edge(int from, int to, double weight) {
+                    graph.insertEdge(names.get(from), names.get(to), weight);
                 }
+            });
+        } finally {
+            publishLoaded(autoPublish);
+        }
+        recordLoad("dot", started);
+    }
+    
+    /**
+     * Copies the graph stored in a file written by GraphFile into the graph,
+     * which skips parsing altogether. Use openGraphFile to query the file in
+     * place instead.
+     * @param filename the path of the file to read
+     * @throws IOException if there was a problem reading the file
+     */
+    private void loadGraphFile(String filename) throws IOException {
+        try (MappedGraph mapped = new MappedGraph(filename)) {
+            for (int id = 0; id < mapped.getNodeCount(); id++) {
+                if (graph.insertNode(mapped.dataOf(id)))
+                    locations.add(mapped.dataOf(id));
+            }
+            for (int id = 0; id < mapped.getNodeCount(); id++) {
+                String pred = mapped.dataOf(id);
+                for (int e = mapped.getEdgeStart(id); e < mapped.getEdgeStart(id + 1); e++)
+                    graph.insertEdge(pred, mapped.dataOf(mapped.getEdgeTarget(e)),
+                            mapped.getEdgeWeight(e));
             }
         }
-        
-        scanner.close();
+    }
+    
+    /**
+     * Loads a DOT file that lists one statement per line, parsing it on
+     * several threads with ParallelGraphLoader before inserting its nodes
+     * and edges into the graph.
+     * @param filename the path of the file to read
+     * @param threads the number of threads to parse with
+     * @throws IOException if there was a problem reading the file
+     */
+    public void loadGraphData(String filename, int threads) throws IOException {
+        long started = metrics == null ? 0 : System.nanoTime();
+        CSRGraph<String> snapshot = ParallelGraphLoader.load(filename, threads);
+        boolean autoPublish = deferPublishing();
+        try {
+            for (int id = 0; id < snapshot.getNodeCount(); id++) {
+                if (graph.insertNode(snapshot.dataOf(id)))
+                    locations.add(snapshot.dataOf(id));
+            }
+            for (int id = 0; id < snapshot.getNodeCount(); id++) {
+                String pred = snapshot.dataOf(id);
+                for (int e = snapshot.getEdgeStart(id); e < snapshot.getEdgeStart(id + 1); e++)
+                    graph.insertEdge(pred, snapshot.dataOf(snapshot.getEdgeTarget(e)),
+                            snapshot.getEdgeWeight(e));
+            }
+        } finally {
+            publishLoaded(autoPublish);
+        }
+        recordLoad("parallel", started);
+    }
+
+    /**
+     * Defers publishing while a load inserts nodes and edges one at a time,
+     * when the graph is a ConcurrentGraph, which would otherwise rebuild its
+     * snapshot after every insertion.
+     * @return whether the graph was auto-publishing before, to pass on to
+     *         publishLoaded
+     */
+    private boolean deferPublishing() {
+        if (!(graph instanceof ConcurrentGraph))
+            return false;
+        ConcurrentGraph<String> concurrent = (ConcurrentGraph<String>) graph;
+        boolean autoPublish = concurrent.isAutoPublish();
+        concurrent.setAutoPublish(false);
+        return autoPublish;
+    }
+
+    /**
+     * Makes everything loaded visible to queries, when the graph is a
+     * ConcurrentGraph, and restores the publishing mode it had before the
+     * load.
+     * @param autoPublish the value returned by deferPublishing
+     */
+    private void publishLoaded(boolean autoPublish) {
+        if (graph instanceof ConcurrentGraph) {
+            ((ConcurrentGraph<String>) graph).publish();
+            ((ConcurrentGraph<String>) graph).setAutoPublish(autoPublish);
+        }
     }
     
     public List<String> getListOfAllLocations() {
         return locations;
     }
     
-    public List<String> findShortestPath(String startLocation, String endLocation) {
-        return graph.shortestPathData(startLocation, endLocation);
+    /**
+     * Returns the walking times in seconds between every pair of locations,
+     * computed with one search per start location in parallel. The time from
+     * getListOfAllLocations().get(i) to getListOfAllLocations().get(j) is
+     * stored at index i * n + j, where n is the number of locations, and is
+     * Double.POSITIVE_INFINITY when there is no path.
+     * @return the travel times between all locations, in row-major order
+     */
+    public double[] getTravelTimeMatrix() {
+        CSRGraph<String> snapshot = snapshot();
+        if (snapshot != null)
+            return DistanceMatrix.compute(snapshot, locations, locations);
+        return pairwiseMatrix(locations);
     }
-    
-    public List<Double> getTravelTimesOnPath(String startLocation, String endLocation) {
-        List <Double> times = new ArrayList<Double>();
-
-        List<String> path = graph.shortestPathData(startLocation, endLocation);
 
-        for (int i = 0; i < path.size() - 1; i++) {
-            times.add(graph.getEdge(path.get(i), path.get(i + 1)));
+    /**
+     * Returns a snapshot of the graph that is reused until the graph next
+     * changes, or null when the graph cannot produce one.
+     * @return the current snapshot, or null
+     */
+    private synchronized CSRGraph<String> snapshot() {
+        long version = graph.getVersion();
+        if (snapshot == null || version != snapshotVersion) {
+            if (graph instanceof ConcurrentGraph)
+                snapshot = ((ConcurrentGraph<String>) graph).getSnapshot();
+            else if (graph instanceof CompactGraph)
+                snapshot = ((CompactGraph<String>) graph).freeze();
+            else if (graph instanceof MappedGraph)
+                snapshot = ((MappedGraph) graph).freeze();
+            else if (graph instanceof BaseGraph) {
+                // BaseGraph does not implement GraphADT, so its node type
+                // cannot be checked, but is String like every graph here
+                @SuppressWarnings("unchecked")
+                BaseGraph<String, ?> base = (BaseGraph<String, ?>) graph;
+                snapshot = base.freeze();
+            } else
+                return null;
+            snapshotVersion = version;
         }
+        return snapshot;
+    }
 
-        return times;
+    /**
+     * Computes the travel times between every pair of points one search at a
+     * time, for graphs that cannot produce a snapshot.
+     * @param points the locations to compute the travel times between
+     * @return the travel times in row-major order, with infinity for pairs
+     *         that have no path
+     */
+    private double[] pairwiseMatrix(List<String> points) {
+        int n = points.size();
+        double[] matrix = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                try {
+                    matrix[i * n + j] = graph.shortestPathCost(points.get(i), points.get(j));
+                } catch (NoSuchElementException e) {
+                    matrix[i * n + j] = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        return matrix;
     }
     
-    public List<String> findShortestPathVia(String startLocation, String via, String endLocation) {
-        List<String> path1 = graph.shortestPathData(startLocation, via);
-        List<String> path2 = graph.shortestPathData(via, endLocation);
-
-        List<String> path = new ArrayList<String>();
+    /**
+     * Returns the cache of routes, which records its hit, miss, eviction and
+     * invalidation statistics.
+     * @return the cache used by this backend
+     */
+    public LRUCache<List<String>, RouteResult<String>> getRouteCache() {
+        return routeCache;
+    }
 
-        // remove duplicate
-        for (int i = 0; i < path1.size() - 1; i++) {
-            path.add(path1.get(i));
+    /**
+     * Returns the cached route for a key, computing and caching it on a miss.
+     * The whole cache is invalidated first if the graph has changed since its
+     * entries were computed.
+     * @param key the locations the route is requested for
+     * @return the route through those locations
+     */
+    private RouteResult<String> cachedRoute(List<String> key) {
+        long version = graph.getVersion();
+        synchronized (routeCache) {
+            if (version != cacheVersion) {
+                routeCache.invalidate();
+                cacheVersion = version;
+            }
         }
-
-        for (int i = 0; i < path2.size(); i++) {
-            path.add(path2.get(i));
+        RouteResult<String> route = routeCache.get(key);
+        if (route == null) {
+            // a via route is joined from the (also cached) routes of its legs
+            route = key.size() == 2 ? graph.shortestPathRoute(key.get(0), key.get(1))
+                    : cachedRoute(Arrays.asList(key.get(0), key.get(1)))
+                            .append(cachedRoute(Arrays.asList(key.get(1), key.get(2))));
+            // a route computed while the graph was changing may be out of
+            // date, and so may the cache itself once another query has moved
+            // it on to a newer version, so both are checked under the lock
+            // that guards cacheVersion
+            synchronized (routeCache) {
+                if (cacheVersion == version && graph.getVersion() == version)
+                    routeCache.put(key, route);
+            }
         }
+        return route;
+    }
+
+    public RouteResult<String> findRoute(String startLocation, String endLocation) {
+        return cachedRoute(Arrays.asList(startLocation, endLocation));
+    }
 
-        return path;
+    public RouteResult<String> findRouteVia(String startLocation, String via, String endLocation) {
+        return cachedRoute(Arrays.asList(startLocation, via, endLocation));
     }
     
-    public List<Double> getTravelTimesOnPathVia(String startLocation, String via, String endLocation) {
-        List<Double> times = new ArrayList<Double>();
+    /**
+     * Returns the shortest route that visits every stop in the given order,
+     * joined from the shortest route between each two consecutive stops.
+     * @param stops the locations to visit, from the start to the end
+     * @return the route through every stop
+     * @throws NoSuchElementException if a stop is unknown, or there is no
+     *                                path between two consecutive stops
+     * @throws IllegalArgumentException if stops is empty
+     */
+    public RouteResult<String> findRouteThrough(List<String> stops) {
+        CSRGraph<String> snapshot = snapshot();
+        if (snapshot != null)
+            return new MultiStopRouter<String>(snapshot).routeInOrder(stops);
 
-        List<String> path1 = graph.shortestPathData(startLocation, via);
-        List<String> path2 = graph.shortestPathData(via, endLocation);
-        List<String> path2copy = new ArrayList<String>();
+        if (stops.isEmpty())
+            throw new IllegalArgumentException("A route needs at least one stop");
+        RouteResult<String> route = new RouteResult<String>(List.of(stops.get(0)), List.of(), 0);
+        for (int i = 0; i + 1 < stops.size(); i++)
+            route = route.append(findRoute(stops.get(i), stops.get(i + 1)));
+        return route;
+    }
 
-        for (int i = 0; i < path2.size(); i++) {
-            path2copy.add(path2.get(i));
-        }
+    /**
+     * Returns the shortest route from startLocation to endLocation that
+     * visits every stop, in whichever order is quickest.
+     * @param startLocation the start location of the route
+     * @param stops the locations to visit, in any order
+     * @param endLocation the end location of the route, which may be the
+     *                    same as startLocation for a round trip
+     * @return the route through every stop
+     * @throws NoSuchElementException if a location is unknown, or there is
+     *                                no order that connects every stop
+     */
+    public RouteResult<String> findOptimizedRoute(String startLocation, List<String> stops,
+            String endLocation) {
+        CSRGraph<String> snapshot = snapshot();
+        if (snapshot != null)
+            return new MultiStopRouter<String>(snapshot).routeAnyOrder(startLocation, stops, endLocation);
 
-        path2copy.remove(0);
-        path1.addAll(path2copy);
+        List<String> points = new ArrayList<String>(stops.size() + 2);
+        points.add(startLocation);
+        points.addAll(stops);
+        points.add(endLocation);
+        List<String> ordered = new ArrayList<String>(points.size());
+        for (int point : MultiStopRouter.solveOrder(pairwiseMatrix(points), points.size()))
+            ordered.add(points.get(point));
+        return findRouteThrough(ordered);
+    }
 
-        System.out.println(path1);
+    /**
+     * Returns every location within each walking time of startLocation, from
+     * one search bounded by the largest walking time. Graphs that cannot
+     * produce a snapshot fall back to one search per location.
+     * @param startLocation the location to walk from
+     * @param budgets the walking times in seconds, in any order
+     * @return the locations within each walking time
+     * @throws NoSuchElementException if startLocation is not a known location
+     * @throws IllegalArgumentException if no walking time is given, or one is
+     *                                  negative or NaN
+     */
+    public Isochrone<String> findReachable(String startLocation, double... budgets) {
+        if (graph instanceof DijkstraGraph)
+            return ((DijkstraGraph<String, Double>) graph).isochrone(startLocation, budgets);
+        CSRGraph<String> snapshot = snapshot();
+        if (snapshot != null)
+            return snapshot.isochrone(startLocation, budgets);
 
-        for (int i = 0; i < path1.size() - 1; i++) {
-            times.add(graph.getEdge(path1.get(i), path1.get(i + 1)));
+        double[] sorted = Isochrone.sortBudgets(budgets);
+        if (!graph.containsNode(startLocation))
+            throw new NoSuchElementException("No location " + startLocation);
+        List<String> reached = new ArrayList<String>();
+        List<Double> costs = new ArrayList<Double>();
+        for (String location : locations) {
+            try {
+                double cost = graph.shortestPathCost(startLocation, location);
+                if (cost <= sorted[sorted.length - 1]) {
+                    reached.add(location);
+                    costs.add(cost);
+                }
+            } catch (NoSuchElementException e) {
+                // not reachable at all
+            }
+        }
+        // an isochrone lists its locations in order of cost
+        Integer[] order = new Integer[reached.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(costs.get(a), costs.get(b)));
+        List<String> ordered = new ArrayList<String>(order.length);
+        double[] orderedCosts = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            ordered.add(reached.get(order[i]));
+            orderedCosts[i] = costs.get(order[i]);
         }
+        return new Isochrone<String>(startLocation, sorted, ordered, orderedCosts);
+    }
+
+    /**
+     * Returns up to count different routes from startLocation to
+     * endLocation that visit no location twice, the quickest first, found
+     * with Yen's algorithm within a snapshot of the graph. Graphs that
+     * cannot produce a snapshot only offer the quickest route.
+     * @param startLocation the start location of the routes
+     * @param endLocation the end location of the routes
+     * @param count the largest number of routes to return
+     * @return the routes, in increasing order of walking time
+     * @throws NoSuchElementException if a location is unknown, or there is
+     *                                no path between them
+     * @throws IllegalArgumentException if count is less than 1
+     */
+    public List<RouteResult<String>> findAlternativeRoutes(String startLocation, String endLocation,
+            int count) {
+        CSRGraph<String> snapshot = snapshot();
+        if (snapshot != null)
+            return new KShortestPaths<String>(snapshot).shortestPaths(startLocation, endLocation, count);
 
-        return times;
+        if (count < 1)
+            throw new IllegalArgumentException("At least one route must be asked for");
+        return List.of(findRoute(startLocation, endLocation));
+    }
+
+    public List<String> findShortestPath(String startLocation, String endLocation) {
+        return new ArrayList<String>(findRoute(startLocation, endLocation).getNodes());
+    }
+    
+    public List<Double> getTravelTimesOnPath(String startLocation, String endLocation) {
+        return new ArrayList<Double>(findRoute(startLocation, endLocation).getTimes());
+    }
+    
+    public List<String> findShortestPathVia(String startLocation, String via, String endLocation) {
+        return new ArrayList<String>(findRouteVia(startLocation, via, endLocation).getNodes());
+    }
+    
+    public List<Double> getTravelTimesOnPathVia(String startLocation, String via, String endLocation) {
+        return new ArrayList<Double>(findRouteVia(startLocation, via, endLocation).getTimes());
     }
 }
@@ -1,5 +1,6 @@
 import java.io.IOException;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public interface BackendInterface {
 
@@ -65,4 +66,70 @@ public interface BackendInterface {
    */
   public List<Double> getTravelTimesOnPathVia(String startLocation, String viaLocation, String endLocation);
 
+  /**
+   * Returns the shortest path from startLocation to endLocation, together with the walking time in
+   * seconds between each two nodes on it and the total walking time, all found by a single search.
+   * @param startLocation the start location of the path
+   * @param endLocation the end location of the path
+   * @return the route along the shortest path from startLocation to endLocation
+   * @throws NoSuchElementException if no such path exists
+   */
+  public RouteResult<String> findRoute(String startLocation, String endLocation);
+
+  /**
+   * Returns the shortest path from startLocation to endLocation through viaLocation, together with
+   * the walking time in seconds between each two nodes on it and the total walking time.
+   * @param startLocation the start location of the path
+   * @param viaLocation a location that the path show lead through
+   * @param endLocation the end location of the path
+   * @return the route along the shortest path from startLocation to endLocation through viaLocation
+   * @throws NoSuchElementException if no such path exists
+   */
+  public RouteResult<String> findRouteVia(String startLocation, String viaLocation, String endLocation);
+
+  /**
+   * Returns the shortest route that visits every stop in the given order, together with the walking
+   * time in seconds between each two nodes on it and the total walking time.
+   * @param stops the locations the route should lead through, from its start to its end
+   * @return the route through every stop
+   * @throws NoSuchElementException if no such route exists
+   * @throws IllegalArgumentException if stops is empty
+   */
+  public RouteResult<String> findRouteThrough(List<String> stops);
+
+  /**
+   * Returns the shortest route from startLocation to endLocation that visits every stop, in
+   * whichever order gives the shortest total walking time.
+   * @param startLocation the start location of the route
+   * @param stops the locations the route should lead through, in any order
+   * @param endLocation the end location of the route
+   * @return the route through every stop
+   * @throws NoSuchElementException if no such route exists
+   */
+  public RouteResult<String> findOptimizedRoute(String startLocation, List<String> stops, String endLocation);
+
+  /**
+   * Returns every location that can be reached from startLocation within each of the given walking
+   * times in seconds (for example 300 for everything within 5 minutes' walk), with the walking time
+   * to each, found with a single search however many times are given.
+   * @param startLocation the location to walk from
+   * @param budgets the walking times in seconds, in any order
+   * @return the locations within each walking time
+   * @throws NoSuchElementException if startLocation is not a known location
+   * @throws IllegalArgumentException if no walking time is given, or one is negative
+   */
+  public Isochrone<String> findReachable(String startLocation, double... budgets);
+
+  /**
+   * Returns up to count different routes from startLocation to endLocation that visit no location
+   * twice, in increasing order of walking time, for offering alternatives to the quickest route.
+   * @param startLocation the start location of the routes
+   * @param endLocation the end location of the routes
+   * @param count the largest number of routes to return
+   * @return the routes, the quickest first
+   * @throws NoSuchElementException if no path between the locations exists
+   * @throws IllegalArgumentException if count is less than 1
+   */
+  public List<RouteResult<String>> findAlternativeRoutes(String startLocation, String endLocation, int count);
+
 }
@@ -1,6 +1,11 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * This BaseGraph class contains stores a set of nodes, along with a set of
@@ -8,11 +13,13 @@ import java.util.NoSuchElementException;
  */
 public class BaseGraph<NodeType, EdgeType extends Number> {
 
-    // Each node contains unique data along with two lists of directed edges
+    // Each node contains unique data along with two lists of directed edges,
+    // which are array-backed so that any edge can be swap-removed from them
     protected class Node {
         public NodeType data;
-        public List<Edge> edgesLeaving = new LinkedList<>();
-        public List<Edge> edgesEntering = new LinkedList<>();
+        public int id; // this node's current position within nodeList
+        public List<Edge> edgesLeaving = new ArrayList<>();
+        public List<Edge> edgesEntering = new ArrayList<>();
 
         public Node(NodeType data) {
             this.data = data;
@@ -22,11 +29,19 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     // Nodes can be retrieved from this map by their unique data
     protected MapADT<NodeType, Node> nodes = null;
 
+    // Nodes can also be retrieved by their dense id, which ranges from 0 to
+    // getNodeCount()-1; removing a node moves the last node into its slot
+    protected ArrayList<Node> nodeList = new ArrayList<>();
+
     // Each edge contains data/weight, and two nodes that it connects
     protected class Edge {
         public EdgeType data; // the weight or cost of this edge
         public Node predecessor;
         public Node successor;
+        // this edge's positions within predecessor.edgesLeaving and
+        // successor.edgesEntering
+        public int leavingIndex;
+        public int enteringIndex;
 
         public Edge(EdgeType data, Node pred, Node succ) {
             this.data = data;
@@ -36,7 +51,12 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     }
 
     protected int edgeCount = 0;
-    // Edges can be retrieved through the edge lists in either connected node
+    // Edges can be retrieved through the edge lists in either connected node,
+    // or, when the edge index is enabled, by edgeKey(pred id, succ id)
+    protected LongHashMap<Edge> edgeIndex = null;
+
+    // incremented by every successful insert, update or removal
+    protected long version = 0;
 
     /**
      * Constructor for BaseGraph that provides the map the graph uses.
@@ -48,6 +68,90 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         this.nodes = map;
     }
 
+    /**
+     * Turns the edge index on or off. With the index on, every edge can be
+     * found from the ids of its nodes in constant time, rather than by
+     * scanning the edges leaving its predecessor, which makes edge lookups,
+     * weight updates and removals fast even at nodes with many edges. The
+     * index costs memory for every edge, and is off by default.
+     * 
+     * @param indexed true to build and maintain the index, or false to drop it
+     */
+    public void setEdgeIndexed(boolean indexed) {
+        if (!indexed) {
+            edgeIndex = null;
+        } else if (edgeIndex == null) {
+            edgeIndex = new LongHashMap<>(edgeCount);
+            for (Node node : nodeList)
+                for (Edge edge : node.edgesLeaving)
+                    edgeIndex.put(edgeKey(node.id, edge.successor.id), edge);
+        }
+    }
+
+    /**
+     * Check whether the edge index is on.
+     * 
+     * @return true if edges are looked up through the index, or false if
+     *         they are found by scanning
+     */
+    public boolean isEdgeIndexed() {
+        return edgeIndex != null;
+    }
+
+    // packs the ids of an edge's nodes into the key it is indexed by
+    protected static long edgeKey(int predId, int succId) {
+        return ((long) predId << 32) | (succId & 0xffffffffL);
+    }
+
+    /**
+     * Returns the edge from pred to succ, through the edge index when it is
+     * on, or by scanning pred's leaving edges for succ otherwise (nodes are
+     * compared by identity, so no equals() calls are needed).
+     * 
+     * @param pred the edge's predecessor node
+     * @param succ the edge's successor node
+     * @return the edge, or null when there is none
+     */
+    protected Edge findEdge(Node pred, Node succ) {
+        if (edgeIndex != null)
+            return edgeIndex.get(edgeKey(pred.id, succ.id));
+        for (Edge edge : pred.edgesLeaving)
+            if (edge.successor == succ)
+                return edge;
+        return null;
+    }
+
+    // appends a new edge to the edge lists of both of its nodes
+    private void linkEdge(Edge edge) {
+        edge.leavingIndex = edge.predecessor.edgesLeaving.size();
+        edge.predecessor.edgesLeaving.add(edge);
+        edge.enteringIndex = edge.successor.edgesEntering.size();
+        edge.successor.edgesEntering.add(edge);
+        if (edgeIndex != null)
+            edgeIndex.put(edgeKey(edge.predecessor.id, edge.successor.id), edge);
+        edgeCount++;
+    }
+
+    // removes an edge from the edge lists of both of its nodes in constant
+    // time, by moving the last edge of each list into its position
+    private void unlinkEdge(Edge edge) {
+        List<Edge> leaving = edge.predecessor.edgesLeaving;
+        Edge last = leaving.remove(leaving.size() - 1);
+        if (last != edge) {
+            last.leavingIndex = edge.leavingIndex;
+            leaving.set(edge.leavingIndex, last);
+        }
+        List<Edge> entering = edge.successor.edgesEntering;
+        last = entering.remove(entering.size() - 1);
+        if (last != edge) {
+            last.enteringIndex = edge.enteringIndex;
+            entering.set(edge.enteringIndex, last);
+        }
+        if (edgeIndex != null)
+            edgeIndex.remove(edgeKey(edge.predecessor.id, edge.successor.id));
+        edgeCount--;
+    }
+
     /**
      * Insert a new node into the graph.
      * 
@@ -59,7 +163,11 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     public boolean insertNode(NodeType data) {
         if (nodes.containsKey(data))
             return false; // throws NPE when data's null
-        nodes.put(data, new Node(data));
+        Node newNode = new Node(data);
+        newNode.id = nodeList.size();
+        nodes.put(data, newNode);
+        nodeList.add(newNode);
+        version++;
         return true;
     }
 
@@ -77,15 +185,42 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         if (!nodes.containsKey(data))
             return false; // throws NPE when data==null
         Node oldNode = nodes.remove(data);
-        // remove all edges entering neighboring nodes from this one
-        for (Edge edge : oldNode.edgesLeaving)
-            edge.successor.edgesEntering.remove(edge);
-        // remove all edges leaving neighboring nodes toward this one
-        for (Edge edge : oldNode.edgesEntering)
-            edge.predecessor.edgesLeaving.remove(edge);
+        // remove all edges leaving this node, and all edges entering it,
+        // taking each from the end of this node's list
+        while (!oldNode.edgesLeaving.isEmpty())
+            unlinkEdge(oldNode.edgesLeaving.get(oldNode.edgesLeaving.size() - 1));
+        while (!oldNode.edgesEntering.isEmpty())
+            unlinkEdge(oldNode.edgesEntering.get(oldNode.edgesEntering.size() - 1));
+        // fill the removed node's id slot with the last node in nodeList
+        Node lastNode = nodeList.remove(nodeList.size() - 1);
+        if (lastNode != oldNode) {
+            if (edgeIndex != null)
+                unindexEdges(lastNode);
+            lastNode.id = oldNode.id;
+            nodeList.set(oldNode.id, lastNode);
+            if (edgeIndex != null)
+                indexEdges(lastNode);
+        }
+        version++;
         return true;
     }
 
+    // removes the index entries of every edge leaving or entering node
+    private void unindexEdges(Node node) {
+        for (Edge edge : node.edgesLeaving)
+            edgeIndex.remove(edgeKey(edge.predecessor.id, edge.successor.id));
+        for (Edge edge : node.edgesEntering)
+            edgeIndex.remove(edgeKey(edge.predecessor.id, edge.successor.id));
+    }
+
+    // indexes every edge leaving or entering node under its current id
+    private void indexEdges(Node node) {
+        for (Edge edge : node.edgesLeaving)
+            edgeIndex.put(edgeKey(edge.predecessor.id, edge.successor.id), edge);
+        for (Edge edge : node.edgesEntering)
+            edgeIndex.put(edgeKey(edge.predecessor.id, edge.successor.id), edge);
+    }
+
     /**
      * Check whether the graph contains a node with the provided data.
      * 
@@ -119,22 +254,21 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      */
     public boolean insertEdge(NodeType pred, NodeType succ, EdgeType weight) {
         // find nodes associated with node data, and return false when not found
+        if (!nodes.containsKey(pred) || !nodes.containsKey(succ))
+            return false;
         Node predNode = nodes.get(pred);
         Node succNode = nodes.get(succ);
-        if (predNode == null || succNode == null)
-            return false;
-        try {
-            // when an edge alread exists within the graph, update its weight
-            Edge existingEdge = getEdgeHelper(pred, succ);
-            existingEdge.data = weight;
-        } catch (NoSuchElementException e) {
-            // otherwise create a new edges
-            Edge newEdge = new Edge(weight, predNode, succNode);
-            this.edgeCount++;
-            // and insert it into each of its adjacent nodes' respective lists
-            predNode.edgesLeaving.add(newEdge);
-            succNode.edgesEntering.add(newEdge);
+        // when an edge alread exists within the graph, update its weight
+        Edge edge = findEdge(predNode, succNode);
+        if (edge != null) {
+            edge.data = weight;
+            version++;
+            return true;
         }
+        // otherwise create a new edge, and insert it into each of its
+        // adjacent nodes' respective lists
+        linkEdge(new Edge(weight, predNode, succNode));
+        version++;
         return true;
     }
 
@@ -147,19 +281,97 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      *         false if such an edge is not found in the graph
      */
     public boolean removeEdge(NodeType pred, NodeType succ) {
-        try {
-            // when an edge exists
-            Edge oldEdge = getEdgeHelper(pred, succ);
-            // remove it from the edge lists of each adjacent node
-            oldEdge.predecessor.edgesLeaving.remove(oldEdge);
-            oldEdge.successor.edgesEntering.remove(oldEdge);
-            // and decrement the edge count before removing
-            this.edgeCount--;
-            return true;
-        } catch (NoSuchElementException e) {
-            // when no such edge exists, return false instead
+        // when no such edge exists, return false
+        Edge oldEdge = edgeOrNull(pred, succ);
+        if (oldEdge == null)
             return false;
+        // otherwise remove it from the edge lists of each adjacent node
+        unlinkEdge(oldEdge);
+        version++;
+        return true;
+    }
+
+    /**
+     * Applies a batch of edge insertions, weight updates and removals as a
+     * single change, which increments the version once. When several updates
+     * name the same edge, the last one wins, just as if they had been applied
+     * one at a time.
+     *
+     * Every update finds its edge in constant time: through the edge index
+     * when it is on, or otherwise by indexing each predecessor's leaving
+     * edges once by successor for the whole batch.
+     * 
+     * @param updates the changes to apply
+     * @return the data items in every node that gained, lost or reweighted a
+     *         leaving or entering edge
+     * @throws NoSuchElementException if an update names a node that is not
+     *                                in the graph, in which case none of the
+     *                                updates are applied
+     */
+    public Set<NodeType> applyEdgeUpdates(List<EdgeUpdate<NodeType, EdgeType>> updates) {
+        // find every node before changing anything, keeping only the last
+        // update to each edge, grouped by predecessor
+        Map<Node, Map<Node, EdgeUpdate<NodeType, EdgeType>>> byPred = new LinkedHashMap<>();
+        for (EdgeUpdate<NodeType, EdgeType> update : updates) {
+            for (NodeType data : List.of(update.getPred(), update.getSucc()))
+                if (!nodes.containsKey(data))
+                    throw new NoSuchElementException("No node " + data + " in this graph");
+            Node predNode = nodes.get(update.getPred());
+            Node succNode = nodes.get(update.getSucc());
+            byPred.computeIfAbsent(predNode, node -> new LinkedHashMap<>()).put(succNode, update);
+        }
+
+        Set<NodeType> affected = new LinkedHashSet<>();
+        for (Map.Entry<Node, Map<Node, EdgeUpdate<NodeType, EdgeType>>> group : byPred.entrySet()) {
+            Node predNode = group.getKey();
+            Map<Node, Edge> leaving = null;
+            if (edgeIndex == null) {
+                leaving = new HashMap<>();
+                for (Edge edge : predNode.edgesLeaving)
+                    leaving.put(edge.successor, edge);
+            }
+
+            for (Map.Entry<Node, EdgeUpdate<NodeType, EdgeType>> entry : group.getValue().entrySet()) {
+                Node succNode = entry.getKey();
+                EdgeUpdate<NodeType, EdgeType> update = entry.getValue();
+                Edge edge = leaving != null ? leaving.get(succNode) : findEdge(predNode, succNode);
+                if (update.isRemoval()) {
+                    if (edge == null)
+                        continue;
+                    unlinkEdge(edge);
+                    edgeUpdated(predNode, succNode, edge.data, null);
+                } else if (edge == null) {
+                    linkEdge(new Edge(update.getWeight(), predNode, succNode));
+                    edgeUpdated(predNode, succNode, null, update.getWeight());
+                } else if (!edge.data.equals(update.getWeight())) {
+                    EdgeType oldWeight = edge.data;
+                    edge.data = update.getWeight();
+                    edgeUpdated(predNode, succNode, oldWeight, update.getWeight());
+                } else {
+                    continue; // the weight is unchanged
+                }
+                affected.add(predNode.data);
+                affected.add(succNode.data);
+            }
         }
+
+        if (!affected.isEmpty())
+            version++;
+        return affected;
+    }
+
+    /**
+     * Called by applyEdgeUpdates for every edge it changes, so that
+     * subclasses can keep derived data up to date. Does nothing by default.
+     * 
+     * @param pred      the edge's predecessor node
+     * @param succ      the edge's successor node
+     * @param oldWeight the weight before the change, or null if the edge was
+     *                  inserted
+     * @param newWeight the weight after the change, or null if the edge was
+     *                  removed
+     */
+    protected void edgeUpdated(Node pred, Node succ, EdgeType oldWeight, EdgeType newWeight) {
     }
 
     /**
@@ -170,12 +382,7 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
      * @return true if the edge is found in the graph, or false other
      */
     public boolean containsEdge(NodeType pred, NodeType succ) {
-        try {
-            getEdgeHelper(pred, succ);
-            return true;
-        } catch (NoSuchElementException e) {
-            return false;
-        }
+        return edgeOrNull(pred, succ) != null;
     }
 
     /**
@@ -192,15 +399,20 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
     }
 
     protected Edge getEdgeHelper(NodeType pred, NodeType succ) {
-        Node predNode = nodes.get(pred);
-        // search for edge through the predecessor's list of leaving edges
-        for (Edge edge : predNode.edgesLeaving)
-            // compare succ to the data in each leaving edge's successor
-            if (edge.successor.data.equals(succ))
-                return edge;
+        Edge edge = edgeOrNull(pred, succ);
         // when no such edge can be found, throw NSE
-        throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
-                succ.toString());
+        if (edge == null)
+            throw new NoSuchElementException("No edge from " + pred.toString() + " to " +
+                    succ.toString());
+        return edge;
+    }
+
+    // returns the edge between the nodes containing pred and succ, or null
+    // when either node or the edge between them is not in this graph
+    private Edge edgeOrNull(NodeType pred, NodeType succ) {
+        if (!nodes.containsKey(pred) || !nodes.containsKey(succ))
+            return null;
+        return findEdge(nodes.get(pred), nodes.get(succ));
     }
 
     /**
@@ -212,4 +424,45 @@ public class BaseGraph<NodeType, EdgeType extends Number> {
         return this.edgeCount;
     }
 
+    /**
+     * Return the version of the graph, which changes whenever a node or edge
+     * is inserted, updated or removed.
+     * 
+     * @return the number of modifications made to the graph so far
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Compiles the current contents of this graph into an immutable
+     * compressed-sparse-row snapshot. Later changes to this graph are not
+     * reflected in the returned snapshot.
+     * 
+     * @return a CSRGraph containing the same nodes and edges as this graph
+     */
+    public CSRGraph<NodeType> freeze() {
+        int nodeCount = nodeList.size();
+        Object[] data = new Object[nodeCount];
+        int[] offsets = new int[nodeCount + 1];
+        // count the edges leaving each node to find where its run begins
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = nodeList.get(i);
+            data[i] = node.data;
+            offsets[i + 1] = offsets[i] + node.edgesLeaving.size();
+        }
+        // then copy each node's leaving edges into its run of the arrays
+        int[] targets = new int[offsets[nodeCount]];
+        double[] weights = new double[offsets[nodeCount]];
+        for (int i = 0; i < nodeCount; i++) {
+            int slot = offsets[i];
+            for (Edge edge : nodeList.get(i).edgesLeaving) {
+                targets[slot] = edge.successor.id;
+                weights[slot] = edge.data.doubleValue();
+                slot++;
+            }
+        }
+        return new CSRGraph<>(data, offsets, targets, weights);
+    }
+
 }
@@ -0,0 +1,486 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * This CSRGraph class is an immutable snapshot of a BaseGraph stored in
+ * compressed-sparse-row form. Each node is identified by a dense int id, and
+ * the edges leaving node i are stored in the positions offsets[i] (inclusive)
+ * through offsets[i+1] (exclusive) of the targets and weights arrays. Because
+ * the snapshot never changes, the shortest path queries below run directly
+ * over these primitive arrays.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class CSRGraph<NodeType> {
+
+    // node data indexed by id, along with the reverse mapping from data to id
+    protected final Object[] data;
+    protected final MapADT<NodeType, Integer> ids;
+    // the hash code of each node's data, for PathOrder tie keys
+    protected final int[] hashes;
+
+    // the edges leaving each node, grouped by their predecessor's id
+    protected final int[] offsets;
+    protected final int[] targets;
+    protected final double[] weights;
+
+    // the same edges grouped by their successor's id, so that searches can
+    // also follow edges backwards: reverseTargets holds each predecessor
+    protected final int[] reverseOffsets;
+    protected final int[] reverseTargets;
+    protected final double[] reverseWeights;
+
+    // each thread reuses its own search state for every snapshot it
+    // searches, growing it to the largest one, so that a thread does not
+    // allocate new state for each snapshot a ConcurrentGraph publishes
+    protected static final ThreadLocal<SearchScratch> SCRATCH = ThreadLocal.withInitial(
+            () -> new SearchScratch(0, 4));
+
+    /**
+     * Constructor for a CSRGraph over already compiled arrays. This is
+     * normally called through BaseGraph.freeze().
+     *
+     * @param data    the data item stored at each node, indexed by id
+     * @param offsets the start of each node's run of edges, with one extra
+     *                trailing entry holding the total number of edges
+     * @param targets the id of the successor node of each edge
+     * @param weights the non-negative weight of each edge
+     */
+    @SuppressWarnings("unchecked")
+    public CSRGraph(Object[] data, int[] offsets, int[] targets, double[] weights) {
+        this.data = data;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.ids = new OpenHashtableMap<>(data.length * 2 + 1);
+        this.hashes = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            ids.put((NodeType) data[i], i);
+            hashes[i] = data[i].hashCode();
+        }
+
+        // transpose the edges by counting how many enter each node
+        this.reverseOffsets = new int[data.length + 1];
+        this.reverseTargets = new int[targets.length];
+        this.reverseWeights = new double[targets.length];
+        for (int e = 0; e < targets.length; e++)
+            reverseOffsets[targets[e] + 1]++;
+        for (int i = 0; i < data.length; i++)
+            reverseOffsets[i + 1] += reverseOffsets[i];
+        int[] next = Arrays.copyOf(reverseOffsets, data.length);
+        for (int u = 0; u < data.length; u++) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int slot = next[targets[e]]++;
+                reverseTargets[slot] = u;
+                reverseWeights[slot] = weights[e];
+            }
+        }
+    }
+
+    /**
+     * Return the number of nodes in this snapshot.
+     *
+     * @return the number of nodes in this snapshot
+     */
+    public int getNodeCount() {
+        return data.length;
+    }
+
+    /**
+     * Return the number of edges in this snapshot.
+     *
+     * @return the number of edges in this snapshot
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Check whether this snapshot contains a node with the provided data.
+     *
+     * @param data the node contents to check for
+     * @return true if data item is stored in a node of this snapshot
+     */
+    public boolean containsNode(NodeType data) {
+        return ids.containsKey(data);
+    }
+
+    /**
+     * Return the dense id of the node containing the provided data.
+     *
+     * @param data the node contents to look up
+     * @return the id of that node
+     * @throws NoSuchElementException if no node contains data
+     */
+    public int idOf(NodeType data) {
+        if (data == null || !ids.containsKey(data))
+            throw new NoSuchElementException("No node " + data + " in this snapshot");
+        return ids.get(data);
+    }
+
+    /**
+     * Check if an edge is in this snapshot.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return true if the edge is found in this snapshot, or false otherwise
+     */
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        return containsNode(pred) && containsNode(succ)
+                && edgeIndex(idOf(pred), idOf(succ)) >= 0;
+    }
+
+    /**
+     * Return the weight of a specific edge.
+     *
+     * @param pred the data item contained in the source node for the edge
+     * @param succ the data item contained in the target node for the edge
+     * @return the weight of the edge between those nodes
+     * @throws NoSuchElementException if either node or the edge between them
+     *                                are not found within this snapshot
+     */
+    public double getEdge(NodeType pred, NodeType succ) {
+        int e = edgeIndex(idOf(pred), idOf(succ));
+        if (e < 0)
+            throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+        return weights[e];
+    }
+
+    // returns the position of the edge u -> v within targets, or -1
+    protected int edgeIndex(int u, int v) {
+        for (int e = offsets[u]; e < offsets[u + 1]; e++)
+            if (targets[e] == v)
+                return e;
+        return -1;
+    }
+
+    /**
+     * Return the data stored at the node with the provided id.
+     *
+     * @param id the id of the node, between 0 and getNodeCount()-1
+     * @return the data item stored at that node
+     */
+    @SuppressWarnings("unchecked")
+    public NodeType dataOf(int id) {
+        return (NodeType) data[id];
+    }
+
+    /**
+     * Return the position of the first edge leaving a node. The edges
+     * leaving node id are those from getEdgeStart(id) (inclusive) to
+     * getEdgeStart(id + 1) (exclusive).
+     *
+     * @param id the id of the node, between 0 and getNodeCount()
+     * @return the position of its first leaving edge
+     */
+    public int getEdgeStart(int id) {
+        return offsets[id];
+    }
+
+    /**
+     * Return the id of the successor node of the edge at a position.
+     *
+     * @param edge the position of the edge, below getEdgeCount()
+     * @return the id of the node that edge enters
+     */
+    public int getEdgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * Return the weight of the edge at a position.
+     *
+     * @param edge the position of the edge, below getEdgeCount()
+     * @return the weight of that edge
+     */
+    public double getEdgeWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from source until target is settled, and no
+     * path that ties with its path could still be found. Ties are broken
+     * with PathOrder, so that the path is the one DijkstraGraph returns. The
+     * cost and predecessor of each node reached are left in the calling
+     * thread's SearchScratch, which is returned.
+     *
+     * @param source the id of the starting node
+     * @param target the id of the destination node
+     * @return the search state, holding the path from source to target
+     * @throws NoSuchElementException when target cannot be reached
+     */
+    protected SearchScratch computeShortestPath(int source, int target) {
+        SearchScratch search = SCRATCH.get();
+        search.reset(data.length);
+        IndexedMinHeap toVisit = search.heap;
+
+        search.setPath(source, 0, -1, 0, 0, 0);
+        toVisit.insertOrDecrease(source, 0);
+        while (!search.isFinished(target)) {
+            int u = toVisit.poll();
+            search.settle(u);
+            if (u == target)
+                continue;
+
+            double cost = search.getDist(u);
+            int hops = search.getHops(u) + 1;
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                double newCost = cost + weights[e];
+                int order = search.compareCost(v, newCost);
+                if (order > 0)
+                    continue;
+                long key = search.getTieKey(u) + PathOrder.edgeKey(hashes[u], hashes[v]);
+                // only queue paths preferred to the best one known so far,
+                // which re-opens a settled node on a tie it loses
+                if (order < 0 || search.improves(v, newCost, hops, key)) {
+                    search.setPath(v, newCost, u, weights[e], hops, key);
+                    toVisit.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+        if (search.isSettled(target))
+            return search;
+        throw new NoSuchElementException("No path from start to end");
+    }
+
+    /**
+     * Computes the shortest path from the node containing the start data to
+     * every node that can be reached from it, with a single search, and
+     * stores the result in a previously returned tree to reuse its arrays.
+     *
+     * @param start the data item in the starting node for the paths
+     * @param reuse the tree to overwrite with the result
+     * @return reuse, holding the tree of shortest paths from start
+     * @throws NoSuchElementException when start is not in this snapshot
+     */
+    public ShortestPathTree<NodeType> shortestPathTree(NodeType start,
+            ShortestPathTree<NodeType> reuse) {
+        int source = idOf(start);
+        reuse.reset(source, data.length, this::dataOf,
+                node -> ids.containsKey(node) ? ids.get(node) : -1);
+        double[] dist = reuse.dist;
+        int[] parent = reuse.parent;
+        double[] parentWeight = reuse.parentWeight;
+
+        SearchScratch search = SCRATCH.get();
+        search.reset(data.length);
+        IndexedMinHeap toVisit = search.heap;
+        dist[source] = 0;
+        reuse.hops[source] = 0;
+        reuse.tieKey[source] = 0;
+        search.setPath(source, 0, -1, 0, 0, 0);
+        toVisit.insertOrDecrease(source, 0);
+        while (!toVisit.isEmpty()) {
+            int u = toVisit.poll();
+            search.settle(u);
+            int hops = search.getHops(u) + 1;
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                double cost = dist[u] + weights[e];
+                int order = search.compareCost(v, cost);
+                if (order > 0)
+                    continue;
+                long key = search.getTieKey(u) + PathOrder.edgeKey(hashes[u], hashes[v]);
+                // ties are broken as computeShortestPath breaks them
+                if (order < 0 || search.improves(v, cost, hops, key)) {
+                    search.setPath(v, cost, u, weights[e], hops, key);
+                    dist[v] = cost;
+                    parent[v] = u;
+                    parentWeight[v] = weights[e];
+                    reuse.hops[v] = hops;
+                    reuse.tieKey[v] = key;
+                    toVisit.insertOrDecrease(v, cost);
+                }
+            }
+        }
+        return reuse;
+    }
+
+    /**
+     * Computes the shortest path from the node containing the start data to
+     * every node that can be reached from it, with a single search.
+     *
+     * @param start the data item in the starting node for the paths
+     * @return the tree of shortest paths from start
+     * @throws NoSuchElementException when start is not in this snapshot
+     */
+    public ShortestPathTree<NodeType> shortestPathTree(NodeType start) {
+        return shortestPathTree(start, new ShortestPathTree<>());
+    }
+
+    /**
+     * Finds every node that can be reached from the node containing the
+     * start data within each of the provided budgets, with a single search
+     * that never queues a path costing more than the largest budget, as
+     * DijkstraGraph.isochrone does.
+     *
+     * @param start   the data item in the starting node
+     * @param budgets the largest cost of a path to each node found, for one
+     *                or more isochrones, in any order
+     * @return the nodes within each budget, with the cost of each
+     * @throws NoSuchElementException   when start is not in this snapshot
+     * @throws IllegalArgumentException if there are no budgets, or one is
+     *                                  negative or NaN
+     */
+    public Isochrone<NodeType> isochrone(NodeType start, double... budgets) {
+        double[] sorted = Isochrone.sortBudgets(budgets);
+        double limit = sorted[sorted.length - 1];
+        int source = idOf(start);
+
+        SearchScratch search = SCRATCH.get();
+        search.reset(data.length);
+        IndexedMinHeap toVisit = search.heap;
+        int[] settled = new int[16];
+        int count = 0;
+        search.setPath(source, 0, -1, 0, 0, 0);
+        toVisit.insertOrDecrease(source, 0);
+        while (!toVisit.isEmpty()) {
+            int u = toVisit.poll();
+            if (!search.isSettled(u)) {
+                if (count == settled.length)
+                    settled = Arrays.copyOf(settled, settled.length * 2);
+                settled[count++] = u;
+            }
+            search.settle(u);
+            double cost = search.getDist(u);
+            int hops = search.getHops(u) + 1;
+
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                double newCost = cost + weights[e];
+                // paths that tie with the limit are queued, since they may
+                // be preferred to a path just within it
+                if (PathOrder.exceeds(newCost, limit))
+                    continue;
+                int order = search.compareCost(v, newCost);
+                if (order > 0)
+                    continue;
+                long key = search.getTieKey(u) + PathOrder.edgeKey(hashes[u], hashes[v]);
+                // ties are broken as computeShortestPath breaks them
+                if (order < 0 || search.improves(v, newCost, hops, key)) {
+                    search.setPath(v, newCost, u, weights[e], hops, key);
+                    toVisit.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+        return Isochrone.fromSearch(start, sorted, settled, count, search, this::dataOf);
+    }
+
+    /**
+     * Computes the cost of the shortest path from the node with the provided
+     * id to every node in this snapshot.
+     *
+     * @param source the id of the starting node
+     * @return the cost to reach each node, indexed by id, with
+     *         Double.POSITIVE_INFINITY for nodes that cannot be reached
+     */
+    public double[] distancesFrom(int source) {
+        return computeDistances(source, offsets, targets, weights);
+    }
+
+    /**
+     * Computes the cost of the shortest path from every node in this
+     * snapshot to the node with the provided id.
+     *
+     * @param target the id of the destination node
+     * @return the cost from each node, indexed by id, with
+     *         Double.POSITIVE_INFINITY for nodes that cannot reach target
+     */
+    public double[] distancesTo(int target) {
+        return computeDistances(target, reverseOffsets, reverseTargets, reverseWeights);
+    }
+
+    // runs Dijkstra's algorithm from source to exhaustion over the provided edges
+    private double[] computeDistances(int source, int[] edgeOffsets,
+            int[] edgeTargets, double[] edgeWeights) {
+        SearchScratch search = SCRATCH.get();
+        search.reset(data.length);
+        IndexedMinHeap toVisit = search.heap;
+        double[] dist = new double[data.length];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+
+        search.setPath(source, 0, -1);
+        toVisit.insertOrDecrease(source, 0);
+        while (!toVisit.isEmpty()) {
+            int u = toVisit.poll();
+            search.settle(u);
+            dist[u] = search.getDist(u);
+            for (int e = edgeOffsets[u]; e < edgeOffsets[u + 1]; e++) {
+                int v = edgeTargets[e];
+                double cost = dist[u] + edgeWeights[e];
+                if (cost < search.getDist(v) && !search.isSettled(v)) {
+                    search.setPath(v, cost, u);
+                    toVisit.insertOrDecrease(v, cost);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path
+     * from the node with the provided start value through the node with the
+     * provided end value, in the same way as GraphADT.shortestPathData.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        int target = idOf(end);
+        SearchScratch search = computeShortestPath(idOf(start), target);
+
+        LinkedList<NodeType> path = new LinkedList<>();
+        for (int id = target; id != -1; id = search.getParent(id))
+            path.addFirst(dataOf(id));
+        return path;
+    }
+
+    /**
+     * Returns the cost of the shortest path from the node containing the
+     * start data to the node containing the end data, in the same way as
+     * GraphADT.shortestPathCost.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        int target = idOf(end);
+        return computeShortestPath(idOf(start), target).getDist(target);
+    }
+
+    /**
+     * Returns the route along the shortest path from the node containing the
+     * start data to the node containing the end data, in the same way as
+     * GraphADT.shortestPathRoute.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the route along the shortest path between these nodes
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end) {
+        int target = idOf(end);
+        SearchScratch search = computeShortestPath(idOf(start), target);
+
+        List<NodeType> nodes = new ArrayList<>();
+        List<Double> times = new ArrayList<>();
+        for (int id = target; id != -1; id = search.getParent(id)) {
+            nodes.add(dataOf(id));
+            if (search.getParent(id) != -1)
+                times.add(search.getParentWeight(id));
+        }
+        Collections.reverse(nodes);
+        Collections.reverse(times);
+        return new RouteResult<>(nodes, times, search.getDist(target));
+    }
+
+}
@@ -0,0 +1,416 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * This CompactGraph class is a mutable GraphADT that stores its edges in
+ * primitive arrays instead of Node and Edge objects. Each node has a dense
+ * int id, and the edges leaving node u are kept in the first outDegree[u]
+ * positions of its own growable arrays outTargets[u] and outWeights[u] (and
+ * likewise for the edges entering it, so that removals and reverse
+ * traversals need not scan the whole graph). An edge therefore costs about
+ * 24 bytes, plus the unused capacity of its arrays, instead of two objects,
+ * two list entries and a boxed weight, and searches read each node's edges
+ * from contiguous memory.
+ *
+ * Like BaseGraph, removing a node moves the last node into its id. Edge
+ * lookups scan the predecessor's targets, which are plain ints, so they are
+ * fast for the node degrees found in road networks.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class CompactGraph<NodeType> implements GraphADT<NodeType, Double> {
+
+    // the smallest capacity given to a node's edge arrays once it has edges
+    protected static final int MIN_EDGE_CAPACITY = 2;
+
+    // node data indexed by id, along with the reverse mapping from data to id
+    protected Object[] data = new Object[16];
+    protected MapADT<NodeType, Integer> ids = new OpenHashtableMap<>();
+    protected int nodeCount = 0;
+
+    // the edges leaving each node: the successor ids and weights of node u's
+    // edges are in the first outDegree[u] positions of its arrays
+    protected int[][] outTargets = new int[16][];
+    protected double[][] outWeights = new double[16][];
+    protected int[] outDegree = new int[16];
+
+    // the same edges, held by their successor: inSources[v] holds the
+    // predecessor ids of the edges entering node v
+    protected int[][] inSources = new int[16][];
+    protected double[][] inWeights = new double[16][];
+    protected int[] inDegree = new int[16];
+
+    protected int edgeCount = 0;
+
+    // incremented by every successful insert, update or removal
+    protected long version = 0;
+
+    // the per-node search state reused across searches, created on first use
+    protected SearchScratch scratch = null;
+
+    // shared by every node without edges, until it gets its first one
+    private static final int[] NO_IDS = new int[0];
+    private static final double[] NO_WEIGHTS = new double[0];
+
+    /**
+     * Return the id of the node containing the provided data.
+     *
+     * @param data the node contents to look up
+     * @return the id of that node, or -1 when there is no such node
+     */
+    public int idOf(NodeType data) {
+        return data != null && ids.containsKey(data) ? ids.get(data) : -1;
+    }
+
+    /**
+     * Return the data stored in the node with the provided id.
+     *
+     * @param id the id of the node, between 0 and getNodeCount()-1
+     * @return the data stored in that node
+     */
+    @SuppressWarnings("unchecked")
+    public NodeType dataOf(int id) {
+        return (NodeType) data[id];
+    }
+
+    @Override
+    public boolean insertNode(NodeType data) {
+        if (ids.containsKey(data))
+            return false; // throws NPE when data's null
+        if (nodeCount == this.data.length) {
+            int capacity = nodeCount * 2;
+            this.data = Arrays.copyOf(this.data, capacity);
+            outTargets = Arrays.copyOf(outTargets, capacity);
+            outWeights = Arrays.copyOf(outWeights, capacity);
+            outDegree = Arrays.copyOf(outDegree, capacity);
+            inSources = Arrays.copyOf(inSources, capacity);
+            inWeights = Arrays.copyOf(inWeights, capacity);
+            inDegree = Arrays.copyOf(inDegree, capacity);
+        }
+        int id = nodeCount++;
+        this.data[id] = data;
+        outTargets[id] = NO_IDS;
+        outWeights[id] = NO_WEIGHTS;
+        inSources[id] = NO_IDS;
+        inWeights[id] = NO_WEIGHTS;
+        ids.put(data, id);
+        version++;
+        return true;
+    }
+
+    @Override
+    public boolean removeNode(NodeType data) {
+        if (!ids.containsKey(data))
+            return false; // throws NPE when data==null
+        int id = ids.remove(data);
+        // remove every edge leaving or entering the node, from the end of
+        // its own arrays so that they shrink without moving anything
+        while (outDegree[id] > 0)
+            unlinkEdge(id, outTargets[id][outDegree[id] - 1]);
+        while (inDegree[id] > 0)
+            unlinkEdge(inSources[id][inDegree[id] - 1], id);
+
+        // fill the removed node's id with the last node, and point the
+        // edges of its neighbors at its new id
+        int last = --nodeCount;
+        if (last != id) {
+            moveNode(last, id);
+            ids.remove(dataOf(id));
+            ids.put(dataOf(id), id);
+        }
+        this.data[last] = null;
+        outTargets[last] = null;
+        outWeights[last] = null;
+        inSources[last] = null;
+        inWeights[last] = null;
+        outDegree[last] = 0;
+        inDegree[last] = 0;
+        version++;
+        return true;
+    }
+
+    // moves the node with id from into the unused id to
+    private void moveNode(int from, int to) {
+        data[to] = data[from];
+        outTargets[to] = outTargets[from];
+        outWeights[to] = outWeights[from];
+        outDegree[to] = outDegree[from];
+        inSources[to] = inSources[from];
+        inWeights[to] = inWeights[from];
+        inDegree[to] = inDegree[from];
+        for (int i = 0; i < outDegree[to]; i++) {
+            int v = outTargets[to][i];
+            if (v == from) {
+                outTargets[to][i] = to; // a self loop
+                continue;
+            }
+            inSources[v][indexOf(inSources[v], inDegree[v], from)] = to;
+        }
+        for (int i = 0; i < inDegree[to]; i++) {
+            int u = inSources[to][i];
+            if (u == from) {
+                inSources[to][i] = to;
+                continue;
+            }
+            outTargets[u][indexOf(outTargets[u], outDegree[u], from)] = to;
+        }
+    }
+
+    // returns the position of id within the first length entries of ids,
+    // or -1 when it is not there
+    private static int indexOf(int[] ids, int length, int id) {
+        for (int i = 0; i < length; i++)
+            if (ids[i] == id)
+                return i;
+        return -1;
+    }
+
+    @Override
+    public boolean containsNode(NodeType data) {
+        return ids.containsKey(data);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, Double weight) {
+        int u = idOf(pred);
+        int v = idOf(succ);
+        if (u < 0 || v < 0)
+            return false;
+        int i = indexOf(outTargets[u], outDegree[u], v);
+        if (i >= 0) {
+            // update the weight held by both of the edge's nodes
+            outWeights[u][i] = weight;
+            inWeights[v][indexOf(inSources[v], inDegree[v], u)] = weight;
+        } else {
+            linkEdge(u, v, weight);
+        }
+        version++;
+        return true;
+    }
+
+    // appends the edge u -> v to the arrays of both of its nodes
+    private void linkEdge(int u, int v, double weight) {
+        int i = outDegree[u]++;
+        if (i == outTargets[u].length) {
+            int capacity = Math.max(MIN_EDGE_CAPACITY, i + (i >> 1));
+            outTargets[u] = Arrays.copyOf(outTargets[u], capacity);
+            outWeights[u] = Arrays.copyOf(outWeights[u], capacity);
+        }
+        outTargets[u][i] = v;
+        outWeights[u][i] = weight;
+
+        int j = inDegree[v]++;
+        if (j == inSources[v].length) {
+            int capacity = Math.max(MIN_EDGE_CAPACITY, j + (j >> 1));
+            inSources[v] = Arrays.copyOf(inSources[v], capacity);
+            inWeights[v] = Arrays.copyOf(inWeights[v], capacity);
+        }
+        inSources[v][j] = u;
+        inWeights[v][j] = weight;
+        edgeCount++;
+    }
+
+    // removes the edge u -> v from the arrays of both of its nodes, moving
+    // the last edge of each into its position; returns its weight, or NaN
+    // when there is no such edge
+    private double unlinkEdge(int u, int v) {
+        int i = indexOf(outTargets[u], outDegree[u], v);
+        if (i < 0)
+            return Double.NaN;
+        double weight = outWeights[u][i];
+        int last = --outDegree[u];
+        outTargets[u][i] = outTargets[u][last];
+        outWeights[u][i] = outWeights[u][last];
+
+        int j = indexOf(inSources[v], inDegree[v], u);
+        last = --inDegree[v];
+        inSources[v][j] = inSources[v][last];
+        inWeights[v][j] = inWeights[v][last];
+        edgeCount--;
+        return weight;
+    }
+
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        int u = idOf(pred);
+        int v = idOf(succ);
+        if (u < 0 || v < 0 || Double.isNaN(unlinkEdge(u, v)))
+            return false;
+        version++;
+        return true;
+    }
+
+    @Override
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        int u = idOf(pred);
+        int v = idOf(succ);
+        return u >= 0 && v >= 0 && indexOf(outTargets[u], outDegree[u], v) >= 0;
+    }
+
+    @Override
+    public Double getEdge(NodeType pred, NodeType succ) {
+        int u = idOf(pred);
+        int v = idOf(succ);
+        int i = u >= 0 && v >= 0 ? indexOf(outTargets[u], outDegree[u], v) : -1;
+        if (i < 0)
+            throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+        return outWeights[u][i];
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public Set<NodeType> applyEdgeUpdates(List<EdgeUpdate<NodeType, Double>> updates) {
+        // find every node before changing anything, keeping only the last
+        // update to each edge
+        Map<List<Integer>, EdgeUpdate<NodeType, Double>> byEdge = new LinkedHashMap<>();
+        for (EdgeUpdate<NodeType, Double> update : updates) {
+            for (NodeType node : List.of(update.getPred(), update.getSucc()))
+                if (!ids.containsKey(node))
+                    throw new NoSuchElementException("No node " + node + " in this graph");
+            byEdge.put(List.of(ids.get(update.getPred()), ids.get(update.getSucc())), update);
+        }
+
+        Set<NodeType> affected = new LinkedHashSet<>();
+        for (Map.Entry<List<Integer>, EdgeUpdate<NodeType, Double>> entry : byEdge.entrySet()) {
+            int u = entry.getKey().get(0);
+            int v = entry.getKey().get(1);
+            EdgeUpdate<NodeType, Double> update = entry.getValue();
+            int i = indexOf(outTargets[u], outDegree[u], v);
+            if (update.isRemoval()) {
+                if (i < 0)
+                    continue;
+                unlinkEdge(u, v);
+            } else if (i < 0) {
+                linkEdge(u, v, update.getWeight());
+            } else if (outWeights[u][i] != update.getWeight()) {
+                outWeights[u][i] = update.getWeight();
+                inWeights[v][indexOf(inSources[v], inDegree[v], u)] = update.getWeight();
+            } else {
+                continue; // the weight is unchanged
+            }
+            affected.add(dataOf(u));
+            affected.add(dataOf(v));
+        }
+        if (!affected.isEmpty())
+            version++;
+        return affected;
+    }
+
+    /**
+     * Compiles the current contents of this graph into an immutable
+     * compressed-sparse-row snapshot, in the same way as BaseGraph.freeze().
+     *
+     * @return a CSRGraph containing the same nodes and edges as this graph
+     */
+    public CSRGraph<NodeType> freeze() {
+        int[] offsets = new int[nodeCount + 1];
+        for (int u = 0; u < nodeCount; u++)
+            offsets[u + 1] = offsets[u] + outDegree[u];
+        int[] targets = new int[edgeCount];
+        double[] weights = new double[edgeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            System.arraycopy(outTargets[u], 0, targets, offsets[u], outDegree[u]);
+            System.arraycopy(outWeights[u], 0, weights, offsets[u], outDegree[u]);
+        }
+        return new CSRGraph<>(Arrays.copyOf(data, nodeCount), offsets, targets, weights);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm over the edge arrays from the node containing
+     * start until the node containing end is settled, leaving the result in
+     * the reused SearchScratch.
+     */
+    protected SearchScratch computeShortestPath(NodeType start, NodeType end) {
+        int source = idOf(start);
+        int target = idOf(end);
+        if (source < 0 || target < 0)
+            throw new NoSuchElementException("No path from start to end.");
+        if (scratch == null)
+            scratch = new SearchScratch(nodeCount, 4);
+        scratch.reset(nodeCount);
+        IndexedMinHeap toVisit = scratch.heap;
+
+        scratch.setPath(source, 0, -1, 0, 0, 0);
+        toVisit.insertOrDecrease(source, 0);
+        while (!scratch.isFinished(target)) {
+            int u = toVisit.poll();
+            scratch.settle(u);
+            if (u == target)
+                continue;
+
+            double cost = scratch.getDist(u);
+            int hops = scratch.getHops(u) + 1;
+            int[] targets = outTargets[u];
+            double[] weights = outWeights[u];
+            for (int i = 0; i < outDegree[u]; i++) {
+                int v = targets[i];
+                double newCost = cost + weights[i];
+                int order = scratch.compareCost(v, newCost);
+                if (order > 0)
+                    continue;
+                long key = scratch.getTieKey(u) + PathOrder.edgeKey(data[u], data[v]);
+                // ties are broken with PathOrder, as DijkstraGraph breaks them
+                if (order < 0 || scratch.improves(v, newCost, hops, key)) {
+                    scratch.setPath(v, newCost, u, weights[i], hops, key);
+                    toVisit.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+        if (scratch.isSettled(target))
+            return scratch;
+        throw new NoSuchElementException("No path from start to end.");
+    }
+
+    @Override
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        SearchScratch search = computeShortestPath(start, end);
+        LinkedList<NodeType> path = new LinkedList<>();
+        for (int id = idOf(end); id != -1; id = search.getParent(id))
+            path.addFirst(dataOf(id));
+        return path;
+    }
+
+    @Override
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return computeShortestPath(start, end).getDist(idOf(end));
+    }
+
+    @Override
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end) {
+        SearchScratch search = computeShortestPath(start, end);
+        int target = idOf(end);
+        List<NodeType> nodes = new ArrayList<>();
+        List<Double> times = new ArrayList<>();
+        for (int id = target; id != -1; id = search.getParent(id)) {
+            nodes.add(dataOf(id));
+            if (search.getParent(id) != -1)
+                times.add(search.getParentWeight(id));
+        }
+        Collections.reverse(nodes);
+        Collections.reverse(times);
+        return new RouteResult<>(nodes, times, search.getDist(target));
+    }
+
+}
@@ -0,0 +1,141 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress tests a ConcurrentGraph and measures how its query throughput scales
+ * with the number of reader threads, in both of its publishing modes. For
+ * each reader count, one writer thread keeps changing random edge weights,
+ * either publishing every change or publishing them in batches, while the
+ * readers run random shortest path queries through the graph's own methods.
+ *
+ * Every answer is checked: whenever the graph's version is the same before
+ * a route is found and after the weight of each of its edges is looked up,
+ * all of those queries saw one published snapshot, so the route's cost must
+ * equal the sum of the weights. That would fail if a reader ever saw a
+ * half-applied change, or a snapshot that did not match its version.
+ *
+ * Usage: java ConcurrencyBenchmark [dotFile] [secondsPerRun] [maxReaders]
+ */
+public class ConcurrencyBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String filename = args.length > 0 ? args[0] : "campus.dot";
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        int maxReaders = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        ConcurrentGraph<String> graph = new ConcurrentGraph<>();
+        Backend backend = new Backend(graph);
+        backend.loadGraphData(filename);
+        List<String> locations = backend.getListOfAllLocations();
+        System.out.println("Loaded " + graph.getNodeCount() + " nodes and "
+                + graph.getEdgeCount() + " edges from " + filename);
+
+        // collect the edges that the writer will keep changing
+        List<String[]> edges = new ArrayList<>();
+        for (String pred : locations)
+            for (String succ : locations)
+                if (graph.containsEdge(pred, succ))
+                    edges.add(new String[] { pred, succ });
+
+        run(graph, locations, edges, 1, seconds / 2); // warm up the JIT first
+        for (boolean autoPublish : new boolean[] { true, false }) {
+            graph.setAutoPublish(autoPublish);
+            System.out.println(autoPublish ? "Publishing every change (the default):"
+                    : "Deferred publishing, every " + BATCH_SIZE + " changes:");
+            double baseline = 0;
+            for (int readers = 1; readers <= maxReaders; readers *= 2) {
+                double throughput = run(graph, locations, edges, readers, seconds);
+                if (readers == 1)
+                    baseline = throughput;
+                System.out.printf("%2d readers %12.0f queries/s  %5.2fx%n", readers, throughput,
+                        throughput / baseline);
+            }
+        }
+    }
+
+    // the number of changes the writer publishes at once when publishing is deferred
+    private static final int BATCH_SIZE = 16;
+
+    // runs one writer and the given number of readers, returning queries/s
+    private static double run(ConcurrentGraph<String> graph, List<String> locations,
+            List<String[]> edges, int readerCount, double seconds) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong queries = new AtomicLong();
+        AtomicLong checked = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+
+        Thread writer = new Thread(() -> {
+            Random random = new Random(7);
+            while (running.get()) {
+                String[] edge = edges.get(random.nextInt(edges.size()));
+                graph.insertEdge(edge[0], edge[1], 10.0 + random.nextInt(300));
+                // when publishing is deferred, readers only see whole batches
+                if (writes.incrementAndGet() % BATCH_SIZE == 0)
+                    graph.publish();
+                try {
+                    Thread.sleep(1); // updates arrive far less often than queries
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        Thread[] readers = new Thread[readerCount];
+        for (int r = 0; r < readerCount; r++) {
+            long seed = r;
+            readers[r] = new Thread(() -> {
+                Random random = new Random(seed);
+                long count = 0;
+                long consistent = 0;
+                while (running.get()) {
+                    String start = locations.get(random.nextInt(locations.size()));
+                    String end = locations.get(random.nextInt(locations.size()));
+                    long version = graph.getVersion();
+                    try {
+                        RouteResult<String> route = graph.shortestPathRoute(start, end);
+                        List<String> path = route.getNodes();
+                        double sum = 0;
+                        for (int i = 1; i < path.size(); i++)
+                            sum += graph.getEdge(path.get(i - 1), path.get(i));
+                        // a publish in between may have changed the weights
+                        if (graph.getVersion() == version) {
+                            consistent++;
+                            if (Math.abs(sum - route.getCost()) > 1e-9)
+                                failures.incrementAndGet();
+                        }
+                    } catch (NoSuchElementException e) {
+                        // no path between these nodes
+                    }
+                    count++;
+                }
+                queries.addAndGet(count);
+                checked.addAndGet(consistent);
+            });
+        }
+
+        writer.start();
+        for (Thread reader : readers)
+            reader.start();
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        writer.join();
+        for (Thread reader : readers)
+            reader.join();
+
+        if (failures.get() > 0)
+            System.out.println("  " + failures.get() + " INCONSISTENT ANSWERS with "
+                    + readerCount + " readers");
+        graph.publish();
+        System.out.printf("  (%d edge updates published, %d answers checked)%n", writes.get(),
+                checked.get());
+        return queries.get() / seconds;
+    }
+
+}
@@ -0,0 +1,319 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This ConcurrentGraph class is a GraphADT that can be queried by many
+ * threads while another thread changes it. Changes are applied by one writer
+ * at a time to a private DijkstraGraph, under a lock. Queries never touch
+ * that graph: they run against the most recently published CSRGraph
+ * snapshot, which is immutable, so readers need no locks and never observe
+ * a change that is only partly applied.
+ *
+ * A new snapshot is published atomically, along with its version, by
+ * replacing a single volatile reference, and always by a writer: queries
+ * only ever read that reference. A reader that gets the same version before
+ * and after several queries has therefore run them all on one snapshot.
+ * By default every change is published before it returns, so a writer
+ * always reads its own writes, and a call to applyEdgeUpdates publishes its
+ * whole batch at once. That costs a rebuild of the snapshot per change, so
+ * bulk loads can opt in to deferred publishing with setAutoPublish(false):
+ * single insertions and removals then stay pending until the writer calls
+ * publish() or applyEdgeUpdates, and until then queries keep seeing the
+ * graph as it was at the last publish.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class ConcurrentGraph<NodeType> implements GraphADT<NodeType, Double> {
+
+    // the writers' copy of the graph, only accessed while holding writeLock
+    protected final DijkstraGraph<NodeType, Double> graph = new DijkstraGraph<>();
+    protected final ReentrantLock writeLock = new ReentrantLock();
+
+    // the snapshot that queries run against, and the changes it contains
+    protected volatile Published<NodeType> published;
+    protected volatile boolean autoPublish = true;
+
+    // counts the changes made; only accessed while holding writeLock
+    protected long changes = 0;
+
+    // records the latency of each query and publish, when not null
+    protected volatile QueryMetrics metrics = null;
+
+    /**
+     * Constructor for an empty ConcurrentGraph. Its graph keeps an edge index,
+     * since a stream of weight updates looks up one edge per change.
+     */
+    public ConcurrentGraph() {
+        graph.setEdgeIndexed(true);
+        published = new Published<>(graph.freeze(), 0);
+    }
+
+    // a snapshot, and the number of changes made before it was frozen
+    protected static class Published<NodeType> {
+        final CSRGraph<NodeType> snapshot;
+        final long version;
+
+        Published(CSRGraph<NodeType> snapshot, long version) {
+            this.snapshot = snapshot;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Turns auto-publishing on or off. It is on by default, and every change
+     * then publishes a new snapshot before it returns, so queries see it as
+     * soon as it is made. Turning it off defers publishing, which suits bulk
+     * loads: single insertions and removals are then published by the next
+     * call to publish() or applyEdgeUpdates. Turning it back on publishes any
+     * pending changes.
+     *
+     * @param autoPublish true to publish after every change, or false to
+     *                    defer publishing until publish() is called
+     */
+    public void setAutoPublish(boolean autoPublish) {
+        writeLock.lock();
+        try {
+            this.autoPublish = autoPublish;
+            if (autoPublish && changes != published.version)
+                publishLocked();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether every change is published before it returns.
+     *
+     * @return true unless publishing has been deferred with
+     *         setAutoPublish(false)
+     */
+    public boolean isAutoPublish() {
+        return autoPublish;
+    }
+
+    /**
+     * Turns metrics on or off. While on, the latency of every query is
+     * recorded in the provided QueryMetrics, as it is by DijkstraGraph, and
+     * so is the time taken to publish each snapshot. While off, queries only
+     * pay for checking that metrics is null.
+     *
+     * @param metrics the metrics to record queries in, or null to stop
+     *                recording them
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // records the latency of a query that started at started, when metrics
+    // (read once by the query) is not null
+    private static void record(QueryMetrics metrics, String query, long started, boolean failed) {
+        if (metrics == null)
+            return;
+        metrics.record(DijkstraGraph.QUERY_LATENCY, "query", query, System.nanoTime() - started);
+        if (failed)
+            metrics.add(DijkstraGraph.FAILED_QUERIES, "query", query, 1);
+    }
+
+    /**
+     * Publishes a snapshot containing every change made so far, if the
+     * current snapshot does not already. This is called by writers, and
+     * waits for any change in progress to finish.
+     */
+    public void publish() {
+        writeLock.lock();
+        try {
+            if (changes != published.version)
+                publishLocked();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // rebuilds the snapshot; the caller must hold writeLock
+    private void publishLocked() {
+        QueryMetrics metrics = this.metrics;
+        long started = metrics == null ? 0 : System.nanoTime();
+        published = new Published<>(graph.freeze(), changes);
+        if (metrics != null)
+            metrics.record("graph_snapshot_publish_nanoseconds", System.nanoTime() - started);
+    }
+
+    // records a change; the caller must hold writeLock
+    private void changed() {
+        changes++;
+        if (autoPublish)
+            publishLocked();
+    }
+
+    /**
+     * Returns the snapshot that queries currently run against, which holds
+     * every change published so far. Several queries made against the
+     * returned snapshot are guaranteed to see the same graph, even while
+     * other threads keep changing this one.
+     *
+     * @return an immutable snapshot of this graph
+     */
+    public CSRGraph<NodeType> getSnapshot() {
+        return published.snapshot;
+    }
+
+    @Override
+    public boolean insertNode(NodeType data) {
+        writeLock.lock();
+        try {
+            boolean inserted = graph.insertNode(data);
+            if (inserted)
+                changed();
+            return inserted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeNode(NodeType data) {
+        writeLock.lock();
+        try {
+            boolean removed = graph.removeNode(data);
+            if (removed)
+                changed();
+            return removed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, Double weight) {
+        writeLock.lock();
+        try {
+            boolean inserted = graph.insertEdge(pred, succ, weight);
+            if (inserted)
+                changed();
+            return inserted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        writeLock.lock();
+        try {
+            boolean removed = graph.removeEdge(pred, succ);
+            if (removed)
+                changed();
+            return removed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a batch of edge updates under a single hold of the write lock,
+     * and publishes it, along with any pending changes, before returning.
+     * Queries see either none of the batch or all of it, and the snapshot is
+     * rebuilt once.
+     *
+     * @param updates the changes to apply
+     * @return the data items in every node that gained, lost or reweighted a
+     *         leaving or entering edge
+     * @throws NoSuchElementException if an update names a node that is not
+     *                                in the graph
+     */
+    @Override
+    public Set<NodeType> applyEdgeUpdates(List<EdgeUpdate<NodeType, Double>> updates) {
+        writeLock.lock();
+        try {
+            Set<NodeType> affected = graph.applyEdgeUpdates(updates);
+            if (!affected.isEmpty())
+                changes++;
+            if (changes != published.version)
+                publishLocked();
+            return affected;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsNode(NodeType data) {
+        return data != null && getSnapshot().containsNode(data);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return getSnapshot().getNodeCount();
+    }
+
+    @Override
+    public boolean containsEdge(NodeType pred, NodeType succ) {
+        return pred != null && succ != null && getSnapshot().containsEdge(pred, succ);
+    }
+
+    @Override
+    public Double getEdge(NodeType pred, NodeType succ) {
+        return getSnapshot().getEdge(pred, succ);
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return getSnapshot().getEdgeCount();
+    }
+
+    /**
+     * Returns the number of changes that queries can see, which only grows
+     * when a snapshot is published.
+     *
+     * @return the version of the published snapshot
+     */
+    @Override
+    public long getVersion() {
+        return published.version;
+    }
+
+    @Override
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        QueryMetrics metrics = this.metrics;
+        long started = metrics == null ? 0 : System.nanoTime();
+        try {
+            List<NodeType> result = getSnapshot().shortestPathData(start, end);
+            record(metrics, "shortestPathData", started, false);
+            return result;
+        } catch (NoSuchElementException e) {
+            record(metrics, "shortestPathData", started, true);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+    }
+
+    @Override
+    public double shortestPathCost(NodeType start, NodeType end) {
+        QueryMetrics metrics = this.metrics;
+        long started = metrics == null ? 0 : System.nanoTime();
+        try {
+            double result = getSnapshot().shortestPathCost(start, end);
+            record(metrics, "shortestPathCost", started, false);
+            return result;
+        } catch (NoSuchElementException e) {
+            record(metrics, "shortestPathCost", started, true);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+    }
+
+    @Override
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end) {
+        QueryMetrics metrics = this.metrics;
+        long started = metrics == null ? 0 : System.nanoTime();
+        try {
+            RouteResult<NodeType> result = getSnapshot().shortestPathRoute(start, end);
+            record(metrics, "shortestPathRoute", started, false);
+            return result;
+        } catch (NoSuchElementException e) {
+            record(metrics, "shortestPathRoute", started, true);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+    }
+
+}
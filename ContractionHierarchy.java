@@ -0,0 +1,564 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * This ContractionHierarchy class answers point-to-point shortest path
+ * queries over a CSRGraph snapshot using contraction hierarchies.
+ *
+ * Preprocessing contracts the nodes one at a time, in order of their edge
+ * difference: the number of shortcut edges that contracting a node would
+ * add, minus the number of edges it would remove. Contracting a node removes
+ * it from the remaining graph, and adds a shortcut u -> x for each pair of
+ * its neighbors u -> node -> x unless a witness search finds another path
+ * from u to x that is no more expensive. The order of contraction gives each
+ * node a rank.
+ *
+ * A query then runs Dijkstra's algorithm forward from the start node and
+ * backward from the end node, where each search only follows edges towards
+ * nodes of higher rank. The cheapest node where the two searches meet joins
+ * a shortest path, whose shortcuts are finally unpacked into the original
+ * edges they stand for.
+ *
+ * Each edge and shortcut also carries the number of original edges it
+ * stands for and their PathOrder tie key, and witness searches and queries
+ * compare paths with PathOrder rather than by cost alone, so that among
+ * paths that tie on cost a query returns the same one as DijkstraGraph.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class ContractionHierarchy<NodeType> {
+
+    // witness searches give up after settling this many nodes, and add a
+    // shortcut that may not be needed rather than spending more time
+    protected static final int WITNESS_SETTLE_LIMIT = 500;
+
+    // the snapshot this hierarchy was built from
+    protected final CSRGraph<NodeType> graph;
+
+    // the position of each node within the contraction order
+    protected final int[] rank;
+
+    // edges (including shortcuts) leaving each node towards higher ranked
+    // nodes; middle is the node a shortcut bypasses, or -1 for an original edge
+    protected int[] upOffsets;
+    protected int[] upTargets;
+    protected double[] upWeights;
+    protected int[] upMiddles;
+    protected int[] upHops;
+    protected long[] upKeys;
+
+    // edges entering each node from higher ranked nodes, grouped by the
+    // lower ranked node that they enter; downSources holds their predecessors
+    protected int[] downOffsets;
+    protected int[] downSources;
+    protected double[] downWeights;
+    protected int[] downMiddles;
+    protected int[] downHops;
+    protected long[] downKeys;
+
+    // the number of shortcuts added during preprocessing
+    protected int shortcutCount = 0;
+    // the number of nodes settled by the most recent query
+    protected int settledCount = 0;
+
+    // the forward and backward search state of each thread's queries, shared
+    // by every hierarchy so that a query allocates nothing per node
+    private static final ThreadLocal<SearchScratch[]> SCRATCH = ThreadLocal.withInitial(
+            () -> new SearchScratch[] { new SearchScratch(0, 4), new SearchScratch(0, 4) });
+
+    /**
+     * A growable list of edges between one node and its neighbors, used while
+     * contracting nodes, with the number of original edges each stands for
+     * and their tie key.
+     */
+    protected static class Arcs {
+        public int[] neighbor = new int[4];
+        public double[] weight = new double[4];
+        public int[] middle = new int[4];
+        public int[] hops = new int[4];
+        public long[] key = new long[4];
+        public int size = 0;
+
+        public int indexOf(int node) {
+            for (int i = 0; i < size; i++)
+                if (neighbor[i] == node)
+                    return i;
+            return -1;
+        }
+
+        public void add(int node, double w, int mid, int h, long k) {
+            if (size == neighbor.length) {
+                neighbor = Arrays.copyOf(neighbor, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+                middle = Arrays.copyOf(middle, size * 2);
+                hops = Arrays.copyOf(hops, size * 2);
+                key = Arrays.copyOf(key, size * 2);
+            }
+            neighbor[size] = node;
+            weight[size] = w;
+            middle[size] = mid;
+            hops[size] = h;
+            key[size] = k;
+            size++;
+        }
+
+        public void set(int i, double w, int mid, int h, long k) {
+            weight[i] = w;
+            middle[i] = mid;
+            hops[i] = h;
+            key[i] = k;
+        }
+
+        public void remove(int node) {
+            int i = indexOf(node);
+            if (i < 0)
+                return;
+            // move the last edge into the removed edge's place
+            size--;
+            neighbor[i] = neighbor[size];
+            weight[i] = weight[size];
+            middle[i] = middle[size];
+            hops[i] = hops[size];
+            key[i] = key[size];
+        }
+    }
+
+    /**
+     * Constructor that runs the preprocessing for the provided snapshot.
+     *
+     * @param graph the snapshot to build a hierarchy for
+     */
+    public ContractionHierarchy(CSRGraph<NodeType> graph) {
+        this.graph = graph;
+        int nodeCount = graph.getNodeCount();
+        this.rank = new int[nodeCount];
+
+        Arcs[] out = new Arcs[nodeCount];
+        Arcs[] in = new Arcs[nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            out[u] = new Arcs();
+            in[u] = new Arcs();
+        }
+        for (int u = 0; u < nodeCount; u++) {
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int v = graph.targets[e];
+                if (u != v) // loops can never be part of a shortest path
+                    addEdge(out, in, u, v, graph.weights[e], -1, 1,
+                            PathOrder.edgeKey(graph.dataOf(u), graph.dataOf(v)));
+            }
+        }
+        contractAll(out, in);
+
+        // once contracted, each node's remaining edges all lead to higher
+        // ranked nodes, and form the graphs searched by queries
+        upOffsets = new int[nodeCount + 1];
+        downOffsets = new int[nodeCount + 1];
+        for (int v = 0; v < nodeCount; v++) {
+            upOffsets[v + 1] = upOffsets[v] + out[v].size;
+            downOffsets[v + 1] = downOffsets[v] + in[v].size;
+        }
+        upTargets = new int[upOffsets[nodeCount]];
+        upWeights = new double[upOffsets[nodeCount]];
+        upMiddles = new int[upOffsets[nodeCount]];
+        upHops = new int[upOffsets[nodeCount]];
+        upKeys = new long[upOffsets[nodeCount]];
+        downSources = new int[downOffsets[nodeCount]];
+        downWeights = new double[downOffsets[nodeCount]];
+        downMiddles = new int[downOffsets[nodeCount]];
+        downHops = new int[downOffsets[nodeCount]];
+        downKeys = new long[downOffsets[nodeCount]];
+        for (int v = 0; v < nodeCount; v++) {
+            System.arraycopy(out[v].neighbor, 0, upTargets, upOffsets[v], out[v].size);
+            System.arraycopy(out[v].weight, 0, upWeights, upOffsets[v], out[v].size);
+            System.arraycopy(out[v].middle, 0, upMiddles, upOffsets[v], out[v].size);
+            System.arraycopy(out[v].hops, 0, upHops, upOffsets[v], out[v].size);
+            System.arraycopy(out[v].key, 0, upKeys, upOffsets[v], out[v].size);
+            System.arraycopy(in[v].neighbor, 0, downSources, downOffsets[v], in[v].size);
+            System.arraycopy(in[v].weight, 0, downWeights, downOffsets[v], in[v].size);
+            System.arraycopy(in[v].middle, 0, downMiddles, downOffsets[v], in[v].size);
+            System.arraycopy(in[v].hops, 0, downHops, downOffsets[v], in[v].size);
+            System.arraycopy(in[v].key, 0, downKeys, downOffsets[v], in[v].size);
+        }
+    }
+
+    // adds the edge u -> v, or replaces an existing one that PathOrder
+    // prefers it to
+    private static boolean addEdge(Arcs[] out, Arcs[] in, int u, int v, double weight, int middle,
+            int hops, long key) {
+        int i = out[u].indexOf(v);
+        if (i < 0) {
+            out[u].add(v, weight, middle, hops, key);
+            in[v].add(u, weight, middle, hops, key);
+            return true;
+        }
+        if (PathOrder.compare(weight, hops, key, out[u].weight[i], out[u].hops[i], out[u].key[i]) >= 0)
+            return false;
+        out[u].set(i, weight, middle, hops, key);
+        in[v].set(in[v].indexOf(u), weight, middle, hops, key);
+        return true;
+    }
+
+    /**
+     * The state of one run of preprocessing: how many neighbors of each node
+     * are already contracted, and the scratch space used by witness searches.
+     */
+    private class Contractor {
+        final Arcs[] out;
+        final Arcs[] in;
+        final int[] contractedNeighbors;
+        final IndexedMinHeap witnessHeap;
+        final double[] witnessDist;
+        final int[] witnessHops;
+        final long[] witnessKey;
+        final int[] touched;
+        int touchedCount = 0;
+
+        Contractor(Arcs[] out, Arcs[] in) {
+            int nodeCount = out.length;
+            this.out = out;
+            this.in = in;
+            this.contractedNeighbors = new int[nodeCount];
+            this.witnessHeap = new IndexedMinHeap(nodeCount, 4);
+            this.witnessDist = new double[nodeCount];
+            this.witnessHops = new int[nodeCount];
+            this.witnessKey = new long[nodeCount];
+            this.touched = new int[nodeCount];
+            Arrays.fill(witnessDist, Double.POSITIVE_INFINITY);
+        }
+
+        // the edge difference of node, plus its number of contracted neighbors
+        // so that contractions spread evenly through the graph
+        double priority(int node) {
+            int shortcuts = contract(node, true);
+            return shortcuts - in[node].size - out[node].size + contractedNeighbors[node];
+        }
+
+        // finds the shortcuts needed to contract node, and adds them unless
+        // simulate is true; returns the number of shortcuts needed
+        int contract(int node, boolean simulate) {
+            int needed = 0;
+            Arcs into = in[node];
+            Arcs outOf = out[node];
+            for (int i = 0; i < into.size; i++) {
+                int u = into.neighbor[i];
+                double limit = -1;
+                for (int j = 0; j < outOf.size; j++)
+                    if (outOf.neighbor[j] != u)
+                        limit = Math.max(limit, into.weight[i] + outOf.weight[j]);
+                if (limit < 0)
+                    continue;
+                witnessSearch(u, node, limit);
+                for (int j = 0; j < outOf.size; j++) {
+                    int x = outOf.neighbor[j];
+                    double cost = into.weight[i] + outOf.weight[j];
+                    int hops = into.hops[i] + outOf.hops[j];
+                    long key = into.key[i] + outOf.key[j];
+                    if (x == u || PathOrder.compare(witnessDist[x], witnessHops[x], witnessKey[x],
+                            cost, hops, key) <= 0)
+                        continue; // a path avoiding node is at least as good
+                    needed++;
+                    if (!simulate && addEdge(out, in, u, x, cost, node, hops, key))
+                        shortcutCount++;
+                }
+                resetWitness();
+            }
+            return needed;
+        }
+
+        // runs Dijkstra's algorithm from source without passing through
+        // avoid, until every remaining node is more expensive than limit,
+        // keeping the path that PathOrder prefers to each node
+        void witnessSearch(int source, int avoid, double limit) {
+            witnessDist[source] = 0;
+            witnessHops[source] = 0;
+            witnessKey[source] = 0;
+            touched[touchedCount++] = source;
+            witnessHeap.insertOrDecrease(source, 0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && !PathOrder.exceeds(witnessHeap.peekKey(), limit)
+                    && settled < WITNESS_SETTLE_LIMIT) {
+                int u = witnessHeap.poll();
+                settled++;
+                Arcs arcs = out[u];
+                for (int i = 0; i < arcs.size; i++) {
+                    int v = arcs.neighbor[i];
+                    double cost = witnessDist[u] + arcs.weight[i];
+                    int hops = witnessHops[u] + arcs.hops[i];
+                    long key = witnessKey[u] + arcs.key[i];
+                    if (v == avoid || PathOrder.compare(cost, hops, key,
+                            witnessDist[v], witnessHops[v], witnessKey[v]) >= 0)
+                        continue;
+                    if (witnessDist[v] == Double.POSITIVE_INFINITY)
+                        touched[touchedCount++] = v;
+                    witnessDist[v] = cost;
+                    witnessHops[v] = hops;
+                    witnessKey[v] = key;
+                    witnessHeap.insertOrDecrease(v, cost);
+                }
+            }
+        }
+
+        void resetWitness() {
+            for (int i = 0; i < touchedCount; i++)
+                witnessDist[touched[i]] = Double.POSITIVE_INFINITY;
+            touchedCount = 0;
+            witnessHeap.clear();
+        }
+    }
+
+    // contracts every node in order of priority, recording each node's rank
+    private void contractAll(Arcs[] out, Arcs[] in) {
+        int nodeCount = out.length;
+        Contractor contractor = new Contractor(out, in);
+        IndexedMinHeap order = new IndexedMinHeap(nodeCount, 4);
+        for (int v = 0; v < nodeCount; v++)
+            order.update(v, contractor.priority(v));
+
+        int nextRank = 0;
+        while (!order.isEmpty()) {
+            int node = order.poll();
+            // priorities go stale as neighbors are contracted, so recompute
+            // this one and put it back if another node now comes first
+            double priority = contractor.priority(node);
+            if (!order.isEmpty() && priority > order.peekKey()) {
+                order.update(node, priority);
+                continue;
+            }
+            contractor.contract(node, false);
+            rank[node] = nextRank++;
+
+            // detach node from the remaining graph, leaving its own edge lists
+            for (int i = 0; i < in[node].size; i++) {
+                int u = in[node].neighbor[i];
+                out[u].remove(node);
+                contractor.contractedNeighbors[u]++;
+            }
+            for (int i = 0; i < out[node].size; i++) {
+                int x = out[node].neighbor[i];
+                in[x].remove(node);
+                contractor.contractedNeighbors[x]++;
+            }
+            for (int i = 0; i < in[node].size; i++)
+                order.update(in[node].neighbor[i], contractor.priority(in[node].neighbor[i]));
+            for (int i = 0; i < out[node].size; i++)
+                order.update(out[node].neighbor[i], contractor.priority(out[node].neighbor[i]));
+        }
+    }
+
+    /**
+     * Return the number of shortcut edges added during preprocessing.
+     *
+     * @return the number of shortcuts in this hierarchy
+     */
+    public int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    /**
+     * Return the number of nodes settled by the most recent query.
+     *
+     * @return the number of nodes settled by the most recent query
+     */
+    public int getLastSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Runs the forward and backward upward searches between source and
+     * target, and appends the nodes along the shortest path to path.
+     *
+     * @param source the id of the starting node
+     * @param target the id of the destination node
+     * @param path   when not null, receives the data in each node along the
+     *               path, from source to target
+     * @param times  when not null, receives the weight of each edge along
+     *               the path
+     * @return the cost of the shortest path, summed over its original edges
+     *         in order from source to target
+     * @throws NoSuchElementException when target cannot be reached
+     */
+    protected double computeShortestPath(int source, int target, List<NodeType> path,
+            List<Double> times) {
+        settledCount = 0;
+        if (source == target) {
+            settledCount = 1;
+            if (path != null)
+                path.add(graph.dataOf(source));
+            return 0;
+        }
+        SearchScratch[] scratch = SCRATCH.get();
+        SearchScratch forwardSearch = scratch[0];
+        SearchScratch backwardSearch = scratch[1];
+        forwardSearch.reset(rank.length);
+        backwardSearch.reset(rank.length);
+        IndexedMinHeap forwardHeap = forwardSearch.heap;
+        IndexedMinHeap backwardHeap = backwardSearch.heap;
+
+        forwardSearch.setPath(source, 0, -1, 0, 0, 0);
+        forwardHeap.insertOrDecrease(source, 0);
+        backwardSearch.setPath(target, 0, -1, 0, 0, 0);
+        backwardHeap.insertOrDecrease(target, 0);
+        double best = Double.POSITIVE_INFINITY;
+        int bestHops = 0;
+        long bestKey = 0;
+        int meetingNode = -1;
+
+        while (true) {
+            // a search stops once its cheapest node cannot tie with best
+            boolean forwardOpen = !forwardHeap.isEmpty() && !PathOrder.exceeds(forwardHeap.peekKey(), best);
+            boolean backwardOpen = !backwardHeap.isEmpty() && !PathOrder.exceeds(backwardHeap.peekKey(), best);
+            if (!forwardOpen && !backwardOpen)
+                break;
+            boolean forward = forwardOpen
+                    && (!backwardOpen || forwardHeap.peekKey() <= backwardHeap.peekKey());
+
+            SearchScratch search = forward ? forwardSearch : backwardSearch;
+            SearchScratch other = forward ? backwardSearch : forwardSearch;
+            int[] offsets = forward ? upOffsets : downOffsets;
+            int[] neighbors = forward ? upTargets : downSources;
+            double[] weights = forward ? upWeights : downWeights;
+            int[] hops = forward ? upHops : downHops;
+            long[] keys = forward ? upKeys : downKeys;
+
+            int u = search.heap.poll();
+            settledCount++;
+            double cost = search.getDist(u);
+            if (other.isReached(u)) {
+                double through = cost + other.getDist(u);
+                int throughHops = search.getHops(u) + other.getHops(u);
+                long throughKey = search.getTieKey(u) + other.getTieKey(u);
+                if (PathOrder.compare(through, throughHops, throughKey, best, bestHops, bestKey) < 0) {
+                    best = through;
+                    bestHops = throughHops;
+                    bestKey = throughKey;
+                    meetingNode = u;
+                }
+            }
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = neighbors[e];
+                double newCost = cost + weights[e];
+                int newHops = search.getHops(u) + hops[e];
+                long newKey = search.getTieKey(u) + keys[e];
+                if (search.improves(v, newCost, newHops, newKey)) {
+                    search.setPath(v, newCost, u, weights[e], newHops, newKey);
+                    search.heap.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+
+        if (meetingNode == -1)
+            throw new NoSuchElementException("No path from start to end");
+
+        // unpack the forward half from source to the meeting node, then the
+        // backward half from the meeting node on to target. The cost is
+        // summed over the original edges in that order, rather than taken
+        // from best, so that it equals the sum of the route's times exactly
+        List<Integer> half = new ArrayList<>();
+        for (int v = meetingNode; v != source; v = forwardSearch.getParent(v))
+            half.add(v);
+        if (path != null)
+            path.add(graph.dataOf(source));
+        double cost = 0;
+        for (int i = half.size() - 1; i >= 0; i--) {
+            int v = half.get(i);
+            int e = upEdge(forwardSearch.getParent(v), v);
+            cost = unpack(forwardSearch.getParent(v), v, upMiddles[e], upWeights[e], cost, path, times);
+        }
+        for (int v = meetingNode; v != target; v = backwardSearch.getParent(v)) {
+            int e = downEdge(backwardSearch.getParent(v), v);
+            cost = unpack(v, backwardSearch.getParent(v), downMiddles[e], downWeights[e], cost, path,
+                    times);
+        }
+        return cost;
+    }
+
+    // returns the position of the edge from -> to within the up arrays
+    private int upEdge(int from, int to) {
+        for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++)
+            if (upTargets[e] == to)
+                return e;
+        return -1;
+    }
+
+    // returns the position of the edge from -> to within the down arrays
+    private int downEdge(int to, int from) {
+        for (int e = downOffsets[to]; e < downOffsets[to + 1]; e++)
+            if (downSources[e] == from)
+                return e;
+        return -1;
+    }
+
+    // appends the nodes along the (possibly shortcut) edge from -> to, except
+    // for from itself, to path, and the weights of the original edges it
+    // stands for to times, when they are not null; returns cost plus those
+    // weights, added in order
+    private double unpack(int from, int to, int middle, double weight, double cost,
+            List<NodeType> path, List<Double> times) {
+        if (middle == -1) {
+            if (times != null)
+                times.add(weight);
+            if (path != null)
+                path.add(graph.dataOf(to));
+            return cost + weight;
+        }
+        // both halves of a shortcut are edges of the bypassed middle node:
+        // from -> middle enters it from above, and middle -> to leaves it
+        int first = downEdge(middle, from);
+        int second = upEdge(middle, to);
+        cost = unpack(from, middle, downMiddles[first], downWeights[first], cost, path, times);
+        return unpack(middle, to, upMiddles[second], upWeights[second], cost, path, times);
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path
+     * from the node with the provided start value through the node with the
+     * provided end value, in the same way as GraphADT.shortestPathData.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        List<NodeType> path = new LinkedList<>();
+        computeShortestPath(graph.idOf(start), graph.idOf(end), path, null);
+        return path;
+    }
+
+    /**
+     * Returns the cost of the shortest path from the node containing the
+     * start data to the node containing the end data, in the same way as
+     * GraphADT.shortestPathCost. The shortcuts are still unpacked, to sum
+     * the cost over the original edges, but no path is built.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    public double shortestPathCost(NodeType start, NodeType end) {
+        return computeShortestPath(graph.idOf(start), graph.idOf(end), null, null);
+    }
+
+    /**
+     * Returns the route along the shortest path from the node containing the
+     * start data to the node containing the end data, in the same way as
+     * GraphADT.shortestPathRoute. The weight of each original edge is
+     * recorded while the shortcuts are unpacked.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the route along the shortest path between these nodes
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end) {
+        List<NodeType> nodes = new ArrayList<>();
+        List<Double> times = new ArrayList<>();
+        double cost = computeShortestPath(graph.idOf(start), graph.idOf(end), nodes, times);
+        return new RouteResult<>(nodes, times, cost);
+    }
+
+}
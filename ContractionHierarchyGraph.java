@@ -0,0 +1,153 @@
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * This class extends DijkstraGraph so that its shortestPathData and
+ * shortestPathCost methods are answered by a ContractionHierarchy instead of
+ * by Dijkstra's algorithm. The hierarchy is built from a snapshot of the
+ * graph the first time it is queried, and is discarded whenever a node or
+ * edge changes, so that it is rebuilt by the next query. This suits graphs
+ * that are loaded once and then queried many times, such as the one built by
+ * Backend.loadGraphData.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class ContractionHierarchyGraph<NodeType> extends DijkstraGraph<NodeType, Double> {
+
+    // the hierarchy for the current contents of this graph, or null when it
+    // must be rebuilt before the next query
+    protected ContractionHierarchy<NodeType> hierarchy = null;
+
+    /**
+     * Builds the contraction hierarchy for the current contents of this
+     * graph, instead of waiting for the next query to build it.
+     *
+     * @return the hierarchy used to answer queries
+     */
+    public ContractionHierarchy<NodeType> preprocess() {
+        if (hierarchy == null) {
+            long started = startTimer();
+            hierarchy = new ContractionHierarchy<>(freeze());
+            if (metrics != null)
+                metrics.record("graph_preprocess_nanoseconds", System.nanoTime() - started);
+        }
+        return hierarchy;
+    }
+
+    @Override
+    public boolean insertNode(NodeType data) {
+        boolean inserted = super.insertNode(data);
+        if (inserted)
+            hierarchy = null;
+        return inserted;
+    }
+
+    @Override
+    public boolean removeNode(NodeType data) {
+        boolean removed = super.removeNode(data);
+        if (removed)
+            hierarchy = null;
+        return removed;
+    }
+
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, Double weight) {
+        boolean inserted = super.insertEdge(pred, succ, weight);
+        if (inserted)
+            hierarchy = null;
+        return inserted;
+    }
+
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        boolean removed = super.removeEdge(pred, succ);
+        if (removed)
+            hierarchy = null;
+        return removed;
+    }
+
+    @Override
+    public Set<NodeType> applyEdgeUpdates(List<EdgeUpdate<NodeType, Double>> updates) {
+        Set<NodeType> affected = super.applyEdgeUpdates(updates);
+        if (!affected.isEmpty())
+            hierarchy = null;
+        return affected;
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path
+     * from the node with the provided start value through the node with the
+     * provided end value, found through the contraction hierarchy.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     */
+    @Override
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        // the hierarchy is built before the query is timed
+        ContractionHierarchy<NodeType> built = preprocess();
+        long started = startTimer();
+        List<NodeType> result;
+        try {
+            result = built.shortestPathData(start, end);
+        } catch (NoSuchElementException e) {
+            recordFailure("shortestPathData", started);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+        recordLatency("shortestPathData", started);
+        return result;
+    }
+
+    /**
+     * Returns the cost of the shortest path from the node containing the
+     * start data to the node containing the end data, found through the
+     * contraction hierarchy.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     */
+    @Override
+    public double shortestPathCost(NodeType start, NodeType end) {
+        // the hierarchy is built before the query is timed
+        ContractionHierarchy<NodeType> built = preprocess();
+        long started = startTimer();
+        double result;
+        try {
+            result = built.shortestPathCost(start, end);
+        } catch (NoSuchElementException e) {
+            recordFailure("shortestPathCost", started);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+        recordLatency("shortestPathCost", started);
+        return result;
+    }
+
+    /**
+     * Returns the route along the shortest path from the node containing the
+     * start data to the node containing the end data, found through the
+     * contraction hierarchy.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the route along the shortest path between these nodes
+     */
+    @Override
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end) {
+        // the hierarchy is built before the query is timed
+        ContractionHierarchy<NodeType> built = preprocess();
+        long started = startTimer();
+        RouteResult<NodeType> result;
+        try {
+            result = built.shortestPathRoute(start, end);
+        } catch (NoSuchElementException e) {
+            recordFailure("shortestPathRoute", started);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+        recordLatency("shortestPathRoute", started);
+        return result;
+    }
+
+}
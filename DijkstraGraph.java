@@ -1,5 +1,8 @@
 package application;
 import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
@@ -21,7 +24,11 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * field. The total cost of this path is stored in its cost field. And the
      * predecessor SearchNode within this path is referened by the predecessor
      * field (this field is null within the SearchNode containing the starting
-     * node in its node field).
+     * node in its node field). The weight of the edge from the predecessor to
+     * this node is kept in its weight field, so that the weight of every edge
+     * along a path is known without looking the edges up again. The number
+     * of edges along the path and its PathOrder tie key are kept in the hops
+     * and key fields, for choosing between paths that tie on cost.
      *
      * SearchNodes are Comparable and are sorted by cost so that the lowest cost
      * SearchNode has the highest priority within a java.util.PriorityQueue.
@@ -30,11 +37,26 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         public Node node;
         public double cost;
         public SearchNode predecessor;
+        public double weight;
+        public int hops;
+        public long key;
 
         public SearchNode(Node node, double cost, SearchNode predecessor) {
+            this(node, cost, predecessor, 0);
+        }
+
+        public SearchNode(Node node, double cost, SearchNode predecessor, double weight) {
             this.node = node;
             this.cost = cost;
             this.predecessor = predecessor;
+            this.weight = weight;
+        }
+
+        public SearchNode(Node node, double cost, SearchNode predecessor, double weight,
+                int hops, long key) {
+            this(node, cost, predecessor, weight);
+            this.hops = hops;
+            this.key = key;
         }
 
         public int compareTo(SearchNode other) {
@@ -46,11 +68,251 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
         }
     }
 
+    /**
+     * The kinds of priority queue that computeShortestPath can use to hold
+     * its frontier. LAZY_QUEUE adds a new SearchNode to a
+     * java.util.PriorityQueue for every edge it relaxes, and skips stale
+     * entries as they are removed. BINARY_HEAP and FOUR_ARY_HEAP hold each
+     * node at most once in an IndexedMinHeap, and lower its cost in place
+     * whenever a cheaper path to it is found.
+     */
+    public enum Frontier {
+        LAZY_QUEUE, BINARY_HEAP, FOUR_ARY_HEAP
+    }
+
+    // the kind of frontier used by computeShortestPath
+    protected Frontier frontier = Frontier.FOUR_ARY_HEAP;
+    // the per-node search state reused across searches, created on first use
+    protected SearchScratch scratch = null;
+    protected SearchScratch reverseScratch = null;
+
+    // whether point-to-point searches run from both ends at once
+    protected boolean bidirectional = false;
+
+    // the number of nodes settled by the most recent search
+    protected int settledCount = 0;
+    // the number of times the most recent search lowered a node's cost, the
+    // number of outdated queue entries it skipped, and the most nodes its
+    // frontier held at once
+    protected int relaxedCount = 0;
+    protected int staleCount = 0;
+    protected int peakFrontierSize = 0;
+
+    // records the latency and counters of each query, when not null
+    protected QueryMetrics metrics = null;
+
+    // the metrics recorded for each query
+    protected static final String QUERY_LATENCY = "graph_query_nanoseconds";
+    protected static final String PHASE_LATENCY = "graph_query_phase_nanoseconds";
+    protected static final String FAILED_QUERIES = "graph_queries_failed_total";
+
     /**
      * Constructor that sets the map that the graph uses.
      */
     public DijkstraGraph() {
-        super(new HashtableMap<>());
+        super(new OpenHashtableMap<>());
+    }
+
+    /**
+     * Constructor for a DijkstraGraph that stores its nodes in the provided
+     * map, such as a HashtableMap or an OpenHashtableMap.
+     *
+     * @param map the map the graph uses to map a data object to the node
+     *            object it is stored in
+     */
+    public DijkstraGraph(MapADT<NodeType, Node> map) {
+        super(map);
+    }
+
+    /**
+     * Selects the kind of priority queue used by later shortest path searches.
+     *
+     * @param frontier the kind of priority queue to use
+     * @throws NullPointerException if frontier is null
+     */
+    public void setFrontier(Frontier frontier) {
+        if (frontier == null)
+            throw new NullPointerException("frontier must not be null");
+        if (frontier != this.frontier) {
+            this.scratch = null;
+            this.reverseScratch = null;
+        }
+        this.frontier = frontier;
+    }
+
+    /**
+     * Return the kind of priority queue used by shortest path searches.
+     *
+     * @return the kind of priority queue in use
+     */
+    public Frontier getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * Turns bidirectional search on or off for later shortest path queries.
+     * A bidirectional search grows one frontier forward from the start node
+     * along edgesLeaving and another backward from the end node along
+     * edgesEntering, and stops once the two frontiers can no longer improve
+     * on the cheapest path connecting them. It finds paths with the same
+     * cost as a forward search, while typically settling far fewer nodes.
+     *
+     * @param bidirectional true to search from both ends, or false to only
+     *                      search forward from the start node
+     */
+    public void setBidirectional(boolean bidirectional) {
+        this.bidirectional = bidirectional;
+    }
+
+    /**
+     * Check whether shortest path queries search from both ends.
+     *
+     * @return true if bidirectional search is turned on, or false otherwise
+     */
+    public boolean isBidirectional() {
+        return bidirectional;
+    }
+
+    /**
+     * Return the number of nodes settled (removed from the frontier for the
+     * last time) by the most recent shortest path search.
+     *
+     * @return the number of nodes settled by the most recent search
+     */
+    public int getLastSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Return the number of times the most recent shortest path search found
+     * a cheaper path to a node than the one it had, and queued the node with
+     * that cost.
+     *
+     * @return the number of edges relaxed by the most recent search
+     */
+    public int getLastRelaxedCount() {
+        return relaxedCount;
+    }
+
+    /**
+     * Return the number of outdated entries the most recent shortest path
+     * search removed from its frontier and skipped, because their node was
+     * already settled through a cheaper path. Only a LAZY_QUEUE frontier
+     * holds outdated entries: the other frontiers lower a node's cost in
+     * place instead.
+     *
+     * @return the number of stale entries skipped by the most recent search
+     */
+    public int getLastStaleCount() {
+        return staleCount;
+    }
+
+    /**
+     * Return the most entries that the frontier of the most recent shortest
+     * path search held at once (in both frontiers together, for a
+     * bidirectional search).
+     *
+     * @return the peak size of the frontier of the most recent search
+     */
+    public int getLastPeakFrontierSize() {
+        return peakFrontierSize;
+    }
+
+    // starts counting the work of a new search
+    private void resetCounts() {
+        settledCount = 0;
+        relaxedCount = 0;
+        staleCount = 0;
+        peakFrontierSize = 0;
+    }
+
+    /**
+     * Turns metrics on or off for later queries. While on, each query records
+     * its latency (in total, and split between its search and the building
+     * of its result) and the counts of its search in the provided
+     * QueryMetrics. While off, queries only pay for checking that metrics
+     * is null.
+     *
+     * @param metrics the metrics to record queries in, or null to stop
+     *                recording them
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Return the metrics that queries are recorded in.
+     *
+     * @return the metrics in use, or null when metrics are off
+     */
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    // returns the time to measure a query from, when metrics are on
+    protected long startTimer() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records the latency of a query that succeeded, and the counts of the
+     * search it ran, when metrics are on.
+     *
+     * @param query    the name of the query
+     * @param started  the time the query started, from startTimer
+     * @param searched the time its search finished, from startTimer
+     */
+    protected void recordQuery(String query, long started, long searched) {
+        if (metrics == null)
+            return;
+        long finished = System.nanoTime();
+        metrics.record(QUERY_LATENCY, "query", query, finished - started);
+        metrics.record(PHASE_LATENCY, "phase", "search", searched - started);
+        metrics.record(PHASE_LATENCY, "phase", "result", finished - searched);
+        metrics.record("graph_search_settled_nodes", settledCount);
+        metrics.record("graph_search_relaxed_edges", relaxedCount);
+        metrics.record("graph_search_stale_entries", staleCount);
+        metrics.record("graph_search_peak_frontier", peakFrontierSize);
+    }
+
+    /**
+     * Records the latency of a query that succeeded without running a search
+     * of this graph, when metrics are on.
+     *
+     * @param query   the name of the query
+     * @param started the time the query started, from startTimer
+     */
+    protected void recordLatency(String query, long started) {
+        if (metrics != null)
+            metrics.record(QUERY_LATENCY, "query", query, System.nanoTime() - started);
+    }
+
+    /**
+     * Records the latency of a query that failed, when metrics are on.
+     *
+     * @param query   the name of the query
+     * @param started the time the query started, from startTimer
+     */
+    protected void recordFailure(String query, long started) {
+        if (metrics == null)
+            return;
+        metrics.record(QUERY_LATENCY, "query", query, System.nanoTime() - started);
+        metrics.add(FAILED_QUERIES, "query", query, 1);
+    }
+
+    /**
+     * Returns a SearchScratch that is reset for a new search over every node
+     * of this graph, reusing the provided one when there is one.
+     *
+     * @param reuse a previously created SearchScratch, or null
+     * @return a SearchScratch with room for every node id
+     */
+    protected SearchScratch prepareScratch(SearchScratch reuse) {
+        int nodeCount = nodeList.size();
+        if (reuse == null)
+            reuse = new SearchScratch(nodeCount, frontier == Frontier.BINARY_HEAP ? 2 : 4);
+        reuse.reset(nodeCount);
+        return reuse;
     }
 
     /**
@@ -60,6 +322,9 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      * shortest path that is found: it's cost is the cost of that shortest path,
      * and the nodes linked together through predecessor references represent
      * all of the nodes along that shortest path (ordered from end to start).
+     * When several shortest paths tie on cost, every search in this class
+     * returns the one that PathOrder prefers, so they keep going until no
+     * node left in their frontier could tie with the path they found.
      *
      * @param start the data item in the starting node for the path
      * @param end   the data item in the destination node for the path
@@ -77,39 +342,463 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
             throw new NoSuchElementException("Start and end nodes must be in the graph");
         }
 
+        resetCounts();
+        if (bidirectional)
+            return computeShortestPathBidirectional(nodes.get(start), nodes.get(end));
+        if (frontier != Frontier.LAZY_QUEUE)
+            return computeShortestPathIndexed(nodes.get(start), nodes.get(end));
+
         PriorityQueue<SearchNode> toVisit = new PriorityQueue<>();
-        HashtableMap<NodeType, Boolean> visited = new HashtableMap<>();
+        // the best path found to each node is recorded in the scratch space,
+        // and a queued SearchNode for any other path is stale
+        scratch = prepareScratch(scratch);
 
         Node startNode = nodes.get(start);
+        int endId = nodes.get(end).id;
+        scratch.setPath(startNode.id, 0, -1, 0, 0, 0);
         toVisit.add(new SearchNode(startNode, 0, null)); //cost is 0 since already there
+        SearchNode found = null;
 
         // While there are nodes we have not visited yet (and can visit from cur node)
         while (!toVisit.isEmpty()) {
+            if (found != null && PathOrder.exceeds(toVisit.peek().cost, found.cost))
+                break; // nothing left could tie with the path found
+            peakFrontierSize = Math.max(peakFrontierSize, toVisit.size());
             SearchNode current = toVisit.poll(); //get node off top of queue
 
-            if (visited.containsKey(current.node.data)) {
+            int id = current.node.id;
+            if (current.cost != scratch.getDist(id) || current.hops != scratch.getHops(id)
+                    || current.key != scratch.getTieKey(id)) {
+                staleCount++;
                 continue;
             }
 
-            visited.put(current.node.data, true);
+            scratch.settle(id);
+            settledCount++;
 
-            if (current.node.data.equals(end)) {
-                return current;
+            if (id == endId) {
+                found = current;
+                continue;
             }
 
             for (Edge edge : current.node.edgesLeaving) {
                 Node neighbor = edge.successor;
-                double cost = current.cost + edge.data.doubleValue();
+                double weight = edge.data.doubleValue();
+                double cost = current.cost + weight;
+                int hops = current.hops + 1;
+                long key = current.key + PathOrder.edgeKey(current.node.data, neighbor.data);
 
                 //Add a potential new path to the priority queue
-                toVisit.add(new SearchNode(neighbor, cost, current));
+                if (scratch.improves(neighbor.id, cost, hops, key)) {
+                    scratch.setPath(neighbor.id, cost, id, weight, hops, key);
+                    toVisit.add(new SearchNode(neighbor, cost, current, weight, hops, key));
+                    relaxedCount++;
+                }
+            }
+        }
+
+        if (found != null)
+            return found;
+        // If here then there is no path from start to end
+        throw new NoSuchElementException("No path from start to end");
+    }
+
+    /**
+     * This helper method performs the same search as computeShortestPath,
+     * but holds its frontier in an IndexedMinHeap keyed by node id. Each node
+     * is queued at most once, so the heap never grows beyond the number of
+     * nodes in the graph, and SearchNodes are only created for the nodes
+     * along the returned path.
+     *
+     * @param startNode the node to start searching from
+     * @param endNode   the node the path must end at
+     * @return SearchNode for the final end node within the shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    protected SearchNode computeShortestPathIndexed(Node startNode, Node endNode) {
+        scratch = prepareScratch(scratch);
+        IndexedMinHeap toVisit = scratch.heap;
+
+        scratch.setPath(startNode.id, 0, -1, 0, 0, 0);
+        toVisit.insertOrDecrease(startNode.id, 0);
+        while (!scratch.isFinished(endNode.id)) {
+            peakFrontierSize = Math.max(peakFrontierSize, toVisit.size());
+            int id = toVisit.poll();
+            scratch.settle(id);
+            settledCount++;
+            if (id == endNode.id)
+                continue;
+
+            Node current = nodeList.get(id);
+            double cost = scratch.getDist(id);
+            int hops = scratch.getHops(id) + 1;
+            for (Edge edge : current.edgesLeaving) {
+                int neighbor = edge.successor.id;
+                double weight = edge.data.doubleValue();
+                double newCost = cost + weight;
+                long key = scratch.getTieKey(id) + PathOrder.edgeKey(current.data, edge.successor.data);
+                // only record this path when it is preferred to the queued
+                // one, which re-opens a settled node on a tie it loses
+                if (scratch.improves(neighbor, newCost, hops, key)) {
+                    scratch.setPath(neighbor, newCost, id, weight, hops, key);
+                    toVisit.insertOrDecrease(neighbor, newCost);
+                    relaxedCount++;
+                }
+            }
+        }
+
+        if (scratch.isSettled(endNode.id))
+            return buildSearchPath(endNode.id, scratch);
+        // If here then there is no path from start to end
+        throw new NoSuchElementException("No path from start to end");
+    }
+
+    /**
+     * This helper method rebuilds the chain of SearchNodes along a path that
+     * was recorded in a SearchScratch, from the node with id endId back to
+     * the node whose parent is -1.
+     *
+     * @param endId   the id of the final node within the path
+     * @param scratch holds the cost and predecessor of each node on the path
+     * @return SearchNode for the final node within the path
+     */
+    protected SearchNode buildSearchPath(int endId, SearchScratch scratch) {
+        SearchNode first = null;
+        SearchNode last = null;
+        for (int i = endId; i != -1; i = scratch.getParent(i)) {
+            SearchNode next = new SearchNode(nodeList.get(i), scratch.getDist(i), null,
+                    scratch.getParentWeight(i));
+            if (last == null)
+                first = next;
+            else
+                last.predecessor = next;
+            last = next;
+        }
+        return first;
+    }
+
+    /**
+     * This helper method computes the same shortest path as
+     * computeShortestPath using A* search. Nodes are removed from the
+     * frontier in order of their path cost plus the heuristic's estimate of
+     * the remaining cost to the end node, so the search is drawn towards the
+     * end node and settles fewer nodes than Dijkstra's algorithm. The path
+     * found is a shortest path as long as the heuristic never overestimates.
+     *
+     * @param start     the data item in the starting node for the path
+     * @param end       the data item in the destination node for the path
+     * @param heuristic estimates the cost from any node to the end node
+     * @return SearchNode for the final end node within the shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     *                                or when either start or end data do not
+     *                                correspond to a graph node
+     */
+    protected SearchNode computeShortestPath(NodeType start, NodeType end,
+            Heuristic<NodeType> heuristic) {
+        if (start == null || end == null) {
+            throw new NoSuchElementException("Start and end nodes must not be null");
+        }
+
+        if (!nodes.containsKey(start) || !nodes.containsKey(end)) {
+            throw new NoSuchElementException("Start and end nodes must be in the graph");
+        }
+
+        resetCounts();
+        scratch = prepareScratch(scratch);
+        IndexedMinHeap toVisit = scratch.heap;
+
+        int startId = nodes.get(start).id;
+        int endId = nodes.get(end).id;
+        double startEstimate = heuristic.estimate(start, end);
+        scratch.setPath(startId, 0, -1, 0, 0, 0);
+        scratch.setEstimate(startId, startEstimate);
+        if (startEstimate < Double.POSITIVE_INFINITY)
+            toVisit.insertOrDecrease(startId, startEstimate);
+        while (!scratch.isFinished(endId)) {
+            peakFrontierSize = Math.max(peakFrontierSize, toVisit.size());
+            int id = toVisit.poll();
+            scratch.settle(id);
+            settledCount++;
+            if (id == endId)
+                continue;
+
+            Node current = nodeList.get(id);
+            double cost = scratch.getDist(id);
+            int hops = scratch.getHops(id) + 1;
+            for (Edge edge : current.edgesLeaving) {
+                Node neighbor = edge.successor;
+                double weight = edge.data.doubleValue();
+                double newCost = cost + weight;
+                long key = scratch.getTieKey(id) + PathOrder.edgeKey(current.data, neighbor.data);
+                // a preferred path re-opens its node, in case it was already
+                // removed through an estimate that was not consistent
+                if (scratch.improves(neighbor.id, newCost, hops, key)) {
+                    // each node's estimate is computed once, when first reached
+                    if (!scratch.isReached(neighbor.id))
+                        scratch.setEstimate(neighbor.id, heuristic.estimate(neighbor.data, end));
+                    scratch.setPath(neighbor.id, newCost, id, weight, hops, key);
+                    // skip nodes that the heuristic knows cannot reach the end
+                    double estimate = scratch.getEstimate(neighbor.id);
+                    if (estimate < Double.POSITIVE_INFINITY)
+                        toVisit.insertOrDecrease(neighbor.id, newCost + estimate);
+                    relaxedCount++;
+                }
             }
         }
 
+        if (scratch.isSettled(endId))
+            return buildSearchPath(endId, scratch);
         // If here then there is no path from start to end
         throw new NoSuchElementException("No path from start to end");
     }
 
+    /**
+     * This helper method performs the same search as computeShortestPath,
+     * but grows a forward frontier from the start node along edgesLeaving
+     * and a reverse frontier from the end node along edgesEntering. Each
+     * step expands whichever frontier has the cheaper next node. Whenever an
+     * edge connects a node reached forward with a node reached in reverse,
+     * the cost of the path through that edge is compared with the cheapest
+     * such meeting path found so far. The search stops as soon as the
+     * cheapest nodes left in both frontiers together cost at least as much as
+     * that meeting path, since no unexplored path can then be cheaper.
+     *
+     * @param startNode the node to start searching from
+     * @param endNode   the node the path must end at
+     * @return SearchNode for the final end node within the shortest path
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    protected SearchNode computeShortestPathBidirectional(Node startNode, Node endNode) {
+        if (startNode == endNode) {
+            settledCount = 1;
+            return new SearchNode(startNode, 0, null);
+        }
+        // the forward scratch records each node's predecessor, and the
+        // reverse scratch records each node's successor towards the end
+        SearchScratch forward = scratch = prepareScratch(scratch);
+        SearchScratch reverse = reverseScratch = prepareScratch(reverseScratch);
+
+        forward.setPath(startNode.id, 0, -1, 0, 0, 0);
+        forward.heap.insertOrDecrease(startNode.id, 0);
+        reverse.setPath(endNode.id, 0, -1, 0, 0, 0);
+        reverse.heap.insertOrDecrease(endNode.id, 0);
+
+        // the cheapest complete path found so far passes through meetingNode
+        double best = Double.POSITIVE_INFINITY;
+        int bestHops = 0;
+        long bestKey = 0;
+        int meetingNode = -1;
+
+        while (!forward.heap.isEmpty() && !reverse.heap.isEmpty()) {
+            // keep going while an unexplored path could still tie with best
+            if (PathOrder.exceeds(forward.heap.peekKey() + reverse.heap.peekKey(), best))
+                break;
+            peakFrontierSize = Math.max(peakFrontierSize, forward.heap.size() + reverse.heap.size());
+            boolean isForward = forward.heap.peekKey() <= reverse.heap.peekKey();
+            SearchScratch side = isForward ? forward : reverse;
+            SearchScratch other = isForward ? reverse : forward;
+
+            int id = side.heap.poll();
+            side.settle(id);
+            settledCount++;
+
+            double cost = side.getDist(id);
+            int hops = side.getHops(id) + 1;
+            Node current = nodeList.get(id);
+            for (Edge edge : isForward ? current.edgesLeaving : current.edgesEntering) {
+                int neighbor = (isForward ? edge.successor : edge.predecessor).id;
+                double weight = edge.data.doubleValue();
+                double newCost = cost + weight;
+                long key = side.getTieKey(id)
+                        + PathOrder.edgeKey(edge.predecessor.data, edge.successor.data);
+                if (side.improves(neighbor, newCost, hops, key)) {
+                    side.setPath(neighbor, newCost, id, weight, hops, key);
+                    side.heap.insertOrDecrease(neighbor, newCost);
+                    relaxedCount++;
+                }
+                // check whether this edge joins the two searches more cheaply
+                if (!other.isReached(neighbor))
+                    continue;
+                double through = side.getDist(neighbor) + other.getDist(neighbor);
+                int throughHops = side.getHops(neighbor) + other.getHops(neighbor);
+                long throughKey = side.getTieKey(neighbor) + other.getTieKey(neighbor);
+                if (PathOrder.compare(through, throughHops, throughKey, best, bestHops, bestKey) < 0) {
+                    best = through;
+                    bestHops = throughHops;
+                    bestKey = throughKey;
+                    meetingNode = neighbor;
+                }
+            }
+        }
+
+        if (meetingNode == -1)
+            throw new NoSuchElementException("No path from start to end");
+
+        // link SearchNodes forward from the start node to the meeting node,
+        // then continue from the meeting node to the end node. Each cost is
+        // summed along the path in forward order, rather than taken from
+        // best, so that it equals the sum of the path's edge weights exactly
+        SearchNode path = buildSearchPath(meetingNode, forward);
+        for (int previous = meetingNode, i = reverse.getParent(meetingNode); i != -1;
+                previous = i, i = reverse.getParent(i)) {
+            // the reverse scratch records the weight of the edge previous -> i
+            double weight = reverse.getParentWeight(previous);
+            path = new SearchNode(nodeList.get(i), path.cost + weight, path, weight);
+        }
+        return path;
+    }
+
+    /**
+     * Computes the shortest path from the node containing the start data to
+     * every node that can be reached from it, with a single search.
+     *
+     * @param start the data item in the starting node for the paths
+     * @return the tree of shortest paths from start
+     * @throws NoSuchElementException when start is not in the graph
+     */
+    public ShortestPathTree<NodeType> shortestPathTree(NodeType start) {
+        return shortestPathTree(start, new ShortestPathTree<>());
+    }
+
+    /**
+     * Computes the shortest path from the node containing the start data to
+     * every node that can be reached from it, with a single search, and
+     * stores the result in a previously returned tree to reuse its arrays.
+     *
+     * @param start the data item in the starting node for the paths
+     * @param reuse the tree to overwrite with the result
+     * @return reuse, holding the tree of shortest paths from start
+     * @throws NoSuchElementException when start is not in the graph
+     */
+    public ShortestPathTree<NodeType> shortestPathTree(NodeType start,
+            ShortestPathTree<NodeType> reuse) {
+        long started = startTimer();
+        if (start == null || !nodes.containsKey(start)) {
+            recordFailure("shortestPathTree", started);
+            throw new NoSuchElementException("Start node must be in the graph");
+        }
+
+        int startId = nodes.get(start).id;
+        reuse.reset(startId, nodeList.size(), id -> nodeList.get(id).data,
+                data -> nodes.containsKey(data) ? nodes.get(data).id : -1);
+        double[] dist = reuse.dist;
+        int[] parent = reuse.parent;
+        double[] parentWeight = reuse.parentWeight;
+
+        resetCounts();
+        scratch = prepareScratch(scratch);
+        IndexedMinHeap toVisit = scratch.heap;
+        dist[startId] = 0;
+        reuse.hops[startId] = 0;
+        reuse.tieKey[startId] = 0;
+        scratch.setPath(startId, 0, -1, 0, 0, 0);
+        toVisit.insertOrDecrease(startId, 0);
+        // search until every reachable node is settled
+        while (!toVisit.isEmpty()) {
+            peakFrontierSize = Math.max(peakFrontierSize, toVisit.size());
+            int id = toVisit.poll();
+            scratch.settle(id);
+            settledCount++;
+            Node current = nodeList.get(id);
+            int hops = scratch.getHops(id) + 1;
+            for (Edge edge : current.edgesLeaving) {
+                int neighbor = edge.successor.id;
+                double weight = edge.data.doubleValue();
+                double newCost = dist[id] + weight;
+                int order = scratch.compareCost(neighbor, newCost);
+                if (order > 0)
+                    continue;
+                long key = scratch.getTieKey(id) + PathOrder.edgeKey(current.data, edge.successor.data);
+                // ties are broken as the point to point searches break them
+                if (order < 0 || scratch.improves(neighbor, newCost, hops, key)) {
+                    scratch.setPath(neighbor, newCost, id, weight, hops, key);
+                    dist[neighbor] = newCost;
+                    parent[neighbor] = id;
+                    parentWeight[neighbor] = weight;
+                    reuse.hops[neighbor] = hops;
+                    reuse.tieKey[neighbor] = key;
+                    toVisit.insertOrDecrease(neighbor, newCost);
+                    relaxedCount++;
+                }
+            }
+        }
+        recordQuery("shortestPathTree", started, startTimer());
+        return reuse;
+    }
+
+    /**
+     * Finds every node that can be reached from the node containing the
+     * start data within each of the provided budgets, such as every
+     * location within 5, 10 and 15 minutes' walk, with a single search.
+     * Paths that cost more than the largest budget are never queued, so the
+     * search ends as soon as its frontier would pass that budget, and only
+     * visits the nodes it finds and the edges leaving them, however large
+     * the graph is.
+     *
+     * @param start   the data item in the starting node
+     * @param budgets the largest cost of a path to each node found, for one
+     *                or more isochrones, in any order
+     * @return the nodes within each budget, with the cost of each
+     * @throws NoSuchElementException   when start is not in the graph
+     * @throws IllegalArgumentException if there are no budgets, or one is
+     *                                  negative or NaN
+     */
+    public Isochrone<NodeType> isochrone(NodeType start, double... budgets) {
+        double[] sorted = Isochrone.sortBudgets(budgets);
+        long started = startTimer();
+        if (start == null || !nodes.containsKey(start)) {
+            recordFailure("isochrone", started);
+            throw new NoSuchElementException("Start node must be in the graph");
+        }
+        double limit = sorted[sorted.length - 1];
+
+        resetCounts();
+        scratch = prepareScratch(scratch);
+        IndexedMinHeap toVisit = scratch.heap;
+        int[] settled = new int[16];
+        int startId = nodes.get(start).id;
+        scratch.setPath(startId, 0, -1, 0, 0, 0);
+        toVisit.insertOrDecrease(startId, 0);
+        while (!toVisit.isEmpty()) {
+            peakFrontierSize = Math.max(peakFrontierSize, toVisit.size());
+            int id = toVisit.poll();
+            // a node re-opened on a tie is only listed once
+            if (!scratch.isSettled(id)) {
+                if (settledCount == settled.length)
+                    settled = Arrays.copyOf(settled, settled.length * 2);
+                settled[settledCount++] = id;
+            }
+            scratch.settle(id);
+            double cost = scratch.getDist(id);
+            Node current = nodeList.get(id);
+            int hops = scratch.getHops(id) + 1;
+
+            for (Edge edge : current.edgesLeaving) {
+                int neighbor = edge.successor.id;
+                double weight = edge.data.doubleValue();
+                double newCost = cost + weight;
+                // paths that tie with the limit are queued, since they may
+                // be preferred to a path just within it
+                if (PathOrder.exceeds(newCost, limit))
+                    continue;
+                int order = scratch.compareCost(neighbor, newCost);
+                if (order > 0)
+                    continue;
+                long key = scratch.getTieKey(id) + PathOrder.edgeKey(current.data, edge.successor.data);
+                if (order < 0 || scratch.improves(neighbor, newCost, hops, key)) {
+                    scratch.setPath(neighbor, newCost, id, weight, hops, key);
+                    toVisit.insertOrDecrease(neighbor, newCost);
+                    relaxedCount++;
+                }
+            }
+        }
+        long searched = startTimer();
+        Isochrone<NodeType> isochrone = Isochrone.fromSearch(start, sorted, settled, settledCount,
+                scratch, id -> nodeList.get(id).data);
+        recordQuery("isochrone", started, searched);
+        return isochrone;
+    }
+
     /**
      * Returns the list of data values from nodes along the shortest path
      * from the node with the provided start value through the node with the
@@ -124,18 +813,23 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      */
     public List<NodeType> shortestPathData(NodeType start, NodeType end) {
         List <NodeType> path = new LinkedList<>();
+        long started = startTimer();
+        long searched;
 
         try {
             SearchNode current = computeShortestPath(start, end);
+            searched = startTimer();
 
             while (current != null) {
                 path.add(0, current.node.data);
                 current = current.predecessor;
             }
         } catch (NoSuchElementException e) {
+            recordFailure("shortestPathData", started);
             throw new NoSuchElementException("No path from start to end.");
         }
 
+        recordQuery("shortestPathData", started, searched);
         return path;
 	}
 
@@ -151,15 +845,146 @@ public class DijkstraGraph<NodeType, EdgeType extends Number>
      */
     public double shortestPathCost(NodeType start, NodeType end) {
         double cost = 0.0;
+        long started = startTimer();
 
         try {
             cost = computeShortestPath(start, end).cost;
         } catch (NoSuchElementException e) {
+            recordFailure("shortestPathCost", started);
             throw new NoSuchElementException("No path from start to end.");
         }
 
+        recordQuery("shortestPathCost", started, startTimer());
         return cost;
     }
 
-    
+    /**
+     * Returns the route along the shortest path from the node containing the
+     * start data to the node containing the end data. The nodes, the weight
+     * of each edge and the total cost are all collected while unwinding the
+     * SearchNodes of a single search.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the route along the shortest path between these nodes
+     */
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end) {
+        long started = startTimer();
+        SearchNode last;
+        try {
+            last = computeShortestPath(start, end);
+        } catch (NoSuchElementException e) {
+            recordFailure("shortestPathRoute", started);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+        long searched = startTimer();
+        RouteResult<NodeType> route = buildRoute(last);
+        recordQuery("shortestPathRoute", started, searched);
+        return route;
+    }
+
+    /**
+     * This helper method unwinds the SearchNodes along a path into a
+     * RouteResult, collecting each node's data and the weight of the edge
+     * leading to it.
+     *
+     * @param last SearchNode for the final node within the path
+     * @return the route along that path
+     */
+    protected RouteResult<NodeType> buildRoute(SearchNode last) {
+        List<NodeType> nodes = new ArrayList<>();
+        List<Double> times = new ArrayList<>();
+        for (SearchNode current = last; current != null; current = current.predecessor) {
+            nodes.add(current.node.data);
+            if (current.predecessor != null)
+                times.add(current.weight);
+        }
+        Collections.reverse(nodes);
+        Collections.reverse(times);
+        return new RouteResult<>(nodes, times, last.cost);
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path
+     * from the node with the provided start value through the node with the
+     * provided end value, found using A* search with the provided heuristic.
+     *
+     * @param start     the data item in the starting node for the path
+     * @param end       the data item in the destination node for the path
+     * @param heuristic a lower bound on the cost from any node to the end
+     * @return list of data item from node along this shortest path
+     */
+    public List<NodeType> shortestPathData(NodeType start, NodeType end,
+            Heuristic<NodeType> heuristic) {
+        List<NodeType> path = new LinkedList<>();
+        long started = startTimer();
+        long searched;
+
+        try {
+            SearchNode current = computeShortestPath(start, end, heuristic);
+            searched = startTimer();
+
+            while (current != null) {
+                path.add(0, current.node.data);
+                current = current.predecessor;
+            }
+        } catch (NoSuchElementException e) {
+            recordFailure("shortestPathDataAStar", started);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+
+        recordQuery("shortestPathDataAStar", started, searched);
+        return path;
+    }
+
+    /**
+     * Returns the cost of the shortest path from the node containing the
+     * start data to the node containing the end data, found using A* search
+     * with the provided heuristic.
+     *
+     * @param start     the data item in the starting node for the path
+     * @param end       the data item in the destination node for the path
+     * @param heuristic a lower bound on the cost from any node to the end
+     * @return the cost of the shortest path between these nodes
+     */
+    public double shortestPathCost(NodeType start, NodeType end,
+            Heuristic<NodeType> heuristic) {
+        long started = startTimer();
+        double cost;
+        try {
+            cost = computeShortestPath(start, end, heuristic).cost;
+        } catch (NoSuchElementException e) {
+            recordFailure("shortestPathCostAStar", started);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+        recordQuery("shortestPathCostAStar", started, startTimer());
+        return cost;
+    }
+
+    /**
+     * Returns the route along the shortest path from the node containing the
+     * start data to the node containing the end data, found using A* search
+     * with the provided heuristic.
+     *
+     * @param start     the data item in the starting node for the path
+     * @param end       the data item in the destination node for the path
+     * @param heuristic a lower bound on the cost from any node to the end
+     * @return the route along the shortest path between these nodes
+     */
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end,
+            Heuristic<NodeType> heuristic) {
+        long started = startTimer();
+        SearchNode last;
+        try {
+            last = computeShortestPath(start, end, heuristic);
+        } catch (NoSuchElementException e) {
+            recordFailure("shortestPathRouteAStar", started);
+            throw new NoSuchElementException("No path from start to end.");
+        }
+        long searched = startTimer();
+        RouteResult<NodeType> route = buildRoute(last);
+        recordQuery("shortestPathRouteAStar", started, searched);
+        return route;
+    }
+
 }
@@ -0,0 +1,185 @@
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes matrices of shortest path costs between every source and every
+ * target within a CSRGraph snapshot. Instead of running one search per
+ * (source, target) pair, each row of the matrix is filled from a single
+ * shortest path tree grown from its source, and the rows are computed in
+ * parallel on a ForkJoinPool. Each worker thread reuses its own search
+ * state and tree between rows, so that the work allocates almost nothing.
+ *
+ * Matrices are stored in row-major order: the cost from sources.get(i) to
+ * targets.get(j) is stored at index i * targets.size() + j, and is
+ * Double.POSITIVE_INFINITY when there is no path.
+ */
+public class DistanceMatrix {
+
+    // rows are split between tasks until each task has at most this many
+    protected static final int ROWS_PER_TASK = 4;
+
+    /**
+     * Receives each finished row of a matrix. Rows may be delivered by
+     * several threads at once, and in any order.
+     */
+    protected interface RowSink {
+        public void accept(int row, ShortestPathTree<?> tree, int[] targetIds) throws IOException;
+    }
+
+    /**
+     * Computes the matrix of shortest path costs from every source to every
+     * target on the common ForkJoinPool.
+     *
+     * @param graph   the snapshot to search
+     * @param sources the data items in the start nodes, one per row
+     * @param targets the data items in the destination nodes, one per column
+     * @return the costs in row-major order
+     * @throws java.util.NoSuchElementException if any source or target is
+     *                                          not in the snapshot
+     */
+    public static <NodeType> double[] compute(CSRGraph<NodeType> graph,
+            List<NodeType> sources, List<NodeType> targets) {
+        return compute(graph, sources, targets, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the matrix of shortest path costs from every source to every
+     * target, fanning the rows out across the provided pool.
+     *
+     * @param graph   the snapshot to search
+     * @param sources the data items in the start nodes, one per row
+     * @param targets the data items in the destination nodes, one per column
+     * @param pool    the pool whose threads compute the rows
+     * @return the costs in row-major order
+     * @throws java.util.NoSuchElementException if any source or target is
+     *                                          not in the snapshot
+     */
+    public static <NodeType> double[] compute(CSRGraph<NodeType> graph,
+            List<NodeType> sources, List<NodeType> targets, ForkJoinPool pool) {
+        int columns = targets.size();
+        double[] matrix = new double[sources.size() * columns];
+        try {
+            run(graph, sources, targets, pool, (row, tree, targetIds) -> {
+                for (int j = 0; j < columns; j++)
+                    matrix[row * columns + j] = tree.getCostById(targetIds[j]);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not thrown by an in-memory sink
+        }
+        return matrix;
+    }
+
+    /**
+     * Computes the matrix of shortest path costs from every source to every
+     * target, and writes it to a file through memory-mapped buffers, so that
+     * matrices larger than the heap can be produced. The file holds the
+     * costs as big-endian doubles in row-major order, with no header.
+     *
+     * @param graph    the snapshot to search
+     * @param sources  the data items in the start nodes, one per row
+     * @param targets  the data items in the destination nodes, one per column
+     * @param pool     the pool whose threads compute the rows
+     * @param filename the path of the file to write
+     * @throws IOException if there was a problem writing the file
+     */
+    public static <NodeType> void computeToFile(CSRGraph<NodeType> graph,
+            List<NodeType> sources, List<NodeType> targets, ForkJoinPool pool,
+            String filename) throws IOException {
+        int columns = targets.size();
+        long rowBytes = (long) columns * Double.BYTES;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // each row is mapped separately, so no single mapping exceeds 2GB
+            run(graph, sources, targets, pool, (row, tree, targetIds) -> {
+                DoubleBuffer out = channel.map(FileChannel.MapMode.READ_WRITE,
+                        row * rowBytes, rowBytes).asDoubleBuffer();
+                for (int j = 0; j < columns; j++)
+                    out.put(j, tree.getCostById(targetIds[j]));
+            });
+        }
+    }
+
+    // computes one shortest path tree per source and passes each to sink
+    private static <NodeType> void run(CSRGraph<NodeType> graph, List<NodeType> sources,
+            List<NodeType> targets, ForkJoinPool pool, RowSink sink) throws IOException {
+        int[] targetIds = new int[targets.size()];
+        for (int j = 0; j < targetIds.length; j++)
+            targetIds[j] = graph.idOf(targets.get(j));
+        Object[] sourceData = sources.toArray();
+        for (Object source : sourceData)
+            graph.idOf(cast(source)); // fail before starting on unknown sources
+
+        ThreadLocal<ShortestPathTree<NodeType>> trees = ThreadLocal.withInitial(ShortestPathTree::new);
+        RowTask<NodeType> task = new RowTask<>(graph, sourceData, targetIds, sink, trees,
+                0, sourceData.length);
+        pool.invoke(task);
+        if (task.failure != null)
+            throw task.failure;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <NodeType> NodeType cast(Object data) {
+        return (NodeType) data;
+    }
+
+    /**
+     * Computes the rows from first (inclusive) to last (exclusive), splitting
+     * the range in half until it is small enough to compute directly.
+     */
+    private static class RowTask<NodeType> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // tasks are never serialized, so the fields whose types are not
+        // Serializable are transient
+        final transient CSRGraph<NodeType> graph;
+        final transient Object[] sources;
+        final int[] targetIds;
+        final transient RowSink sink;
+        final transient ThreadLocal<ShortestPathTree<NodeType>> trees;
+        final int first;
+        final int last;
+        IOException failure = null;
+
+        RowTask(CSRGraph<NodeType> graph, Object[] sources, int[] targetIds, RowSink sink,
+                ThreadLocal<ShortestPathTree<NodeType>> trees, int first, int last) {
+            this.graph = graph;
+            this.sources = sources;
+            this.targetIds = targetIds;
+            this.sink = sink;
+            this.trees = trees;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > ROWS_PER_TASK) {
+                int middle = (first + last) >>> 1;
+                RowTask<NodeType> left = new RowTask<>(graph, sources, targetIds, sink, trees,
+                        first, middle);
+                RowTask<NodeType> right = new RowTask<>(graph, sources, targetIds, sink, trees,
+                        middle, last);
+                invokeAll(left, right);
+                failure = left.failure != null ? left.failure : right.failure;
+                return;
+            }
+            ShortestPathTree<NodeType> tree = trees.get();
+            try {
+                for (int row = first; row < last; row++) {
+                    graph.shortestPathTree(DistanceMatrix.<NodeType>cast(sources[row]), tree);
+                    sink.accept(row, tree, targetIds);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+}
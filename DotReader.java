@@ -0,0 +1,575 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A DotReader is a streaming reader for graphs written in the DOT language.
+ * It reads a file through a FileChannel into a reusable buffer, tokenizes the
+ * bytes directly, and reports every node and weighted edge it finds to a
+ * Handler. Node names are interned as they are read: each distinct name is
+ * decoded into a String only once, the first time it appears, and given the
+ * next dense int id, so that the Handler can build a graph using ids alone.
+ * Edge weights are parsed straight from the bytes of the weight attribute
+ * (seconds=...), without creating a String in the common case.
+ *
+ * Names may be unquoted IDs, numerals, quoted strings or HTML strings, as in
+ * the DOT grammar. Within quoted strings, \" stands for a quote, a backslash
+ * before a line break continues the string on the next line, and quoted
+ * strings joined with + are concatenated. Names may contain any other
+ * character, including commas. Edges without a weight attribute are skipped,
+ * edges to and from subgraphs are not expanded, and every other statement
+ * (graph, node and edge attributes) is ignored.
+ *
+ * The header (digraph name {) is optional, so that a DotReader can also read
+ * a part of a file that starts at the beginning of any line between two
+ * statements.
+ */
+public class DotReader implements Closeable {
+
+    /**
+     * Receives the nodes and edges read from a DOT file, in file order.
+     */
+    public interface Handler {
+        /**
+         * Called the first time a node name appears.
+         *
+         * @param id   the id given to the node, which is the number of
+         *             nodes reported before it
+         * @param name the name of the node
+         */
+        public void node(int id, String name);
+
+        /**
+         * Called for each weighted edge.
+         *
+         * @param from   the id of the source node
+         * @param to     the id of the target node
+         * @param weight the value of the weight attribute
+         */
+        public void edge(int from, int to, double weight);
+    }
+
+    // the attribute holding each edge's weight
+    protected static final byte[] WEIGHT_ATTRIBUTE = "seconds".getBytes(StandardCharsets.US_ASCII);
+
+    // exact powers of ten, for parsing short decimals without rounding twice
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    // token types returned by nextToken()
+    private static final int EOF = -1;
+    private static final int ID = 0;
+    private static final int ARROW = 1; // -> in digraphs
+    private static final int LINE = 2; // -- in undirected graphs
+    private static final int OTHER = 3; // any punctuation, returned as the char
+
+    // the region of the channel being read
+    protected final FileChannel channel;
+    protected final boolean ownsChannel;
+    protected long position;
+    protected final long end;
+
+    // the bytes read from the channel that have not been consumed yet
+    private final byte[] buffer = new byte[1 << 16];
+    private final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+    private int next = 0;
+    private int limit = 0;
+    private int line = 1;
+
+    // IDs are read into alternating buffers, so that the previous ID is still
+    // available after reading the next one
+    private byte[][] tokens = { new byte[64], new byte[64] };
+    private int[] tokenLengths = new int[2];
+    private boolean[] tokenQuoted = new boolean[2];
+    private int current = 0;
+    private int punctuation; // the character of the last OTHER token
+    private int lastToken = EOF;
+    private int pushedBack = -2; // a token to return again, or -2 for none
+
+    // the interned names: slots holds id + 1 for each used slot of an open
+    // addressing table, and the bytes of name id are arena[nameStart[id]..
+    // nameStart[id + 1])
+    private int[] slots = new int[1024];
+    private int[] nameHashes = new int[256];
+    private int[] nameStart = new int[257];
+    private byte[] arena = new byte[4096];
+    private String[] names = new String[256];
+    private int nameCount = 0;
+
+    /**
+     * Constructor for a DotReader over a whole file.
+     *
+     * @param filename the path of the file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public DotReader(String filename) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        this.ownsChannel = true;
+        this.position = 0;
+        this.end = channel.size();
+    }
+
+    /**
+     * Constructor for a DotReader over part of an open channel. The region
+     * should start at the beginning of a line and end at the end of one,
+     * without cutting a statement in two. The channel is not closed by
+     * close(), and can be shared by several DotReaders on different threads.
+     *
+     * @param channel the channel to read from
+     * @param start   the position of the first byte to read
+     * @param end     the position after the last byte to read
+     */
+    public DotReader(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.ownsChannel = false;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Return the number of distinct node names read so far.
+     *
+     * @return the number of node ids in use
+     */
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    /**
+     * Return the name of the node with the provided id.
+     *
+     * @param id the id of the node
+     * @return the name that was given that id
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Reads every statement up to the end of the region, passing each node
+     * and weighted edge to handler.
+     *
+     * @param handler receives the nodes and edges
+     * @throws IOException if there was a problem reading the file, or if
+     *                     a weight is not a number
+     */
+    public void read(Handler handler) throws IOException {
+        int[] chain = new int[4];
+        boolean directed = true;
+        int t;
+        while ((t = nextToken()) != EOF) {
+            if (t != ID)
+                continue; // braces and separators between statements
+            int slot = current;
+            if (!tokenQuoted[slot] && isKeyword(slot, "strict"))
+                continue;
+            if (!tokenQuoted[slot] && (isKeyword(slot, "digraph") || isKeyword(slot, "graph")
+                    || isKeyword(slot, "subgraph"))) {
+                boolean header = !isKeyword(slot, "subgraph");
+                boolean undirected = isKeyword(slot, "graph");
+                if ((t = nextToken()) == OTHER && punctuation == '[') {
+                    readWeight(); // graph [attributes] rather than a header
+                    continue;
+                }
+                if (header)
+                    directed = !undirected;
+                if (t != ID)
+                    pushBack(); // the graph's name is optional
+                continue;
+            }
+            if (!tokenQuoted[slot] && (isKeyword(slot, "node") || isKeyword(slot, "edge"))) {
+                if ((t = nextToken()) == OTHER && punctuation == '[')
+                    readWeight();
+                else
+                    pushBack();
+                continue;
+            }
+
+            t = nextToken();
+            if (t == OTHER && punctuation == '=') {
+                nextToken(); // a graph attribute, not a node
+                continue;
+            }
+            chain[0] = intern(slot, handler);
+            int length = 1;
+            t = skipPort(t);
+            boolean undirected = false;
+            while (t == ARROW || t == LINE) {
+                undirected |= t == LINE;
+                if (nextToken() != ID) {
+                    pushBack(); // such as an edge to a subgraph
+                    break;
+                }
+                if (length == chain.length)
+                    chain = Arrays.copyOf(chain, length * 2);
+                chain[length++] = intern(current, handler);
+                t = skipPort(nextToken());
+            }
+
+            double weight = Double.NaN;
+            while (t == OTHER && punctuation == '[') {
+                double value = readWeight();
+                if (!Double.isNaN(value))
+                    weight = value;
+                t = nextToken();
+            }
+            pushBack();
+
+            if (!Double.isNaN(weight)) {
+                for (int i = 1; i < length; i++) {
+                    handler.edge(chain[i - 1], chain[i], weight);
+                    if (undirected || !directed)
+                        handler.edge(chain[i], chain[i - 1], weight);
+                }
+            }
+        }
+    }
+
+    // skips a :port or :port:compass suffix, returning the token after it
+    private int skipPort(int t) throws IOException {
+        while (t == OTHER && punctuation == ':') {
+            nextToken();
+            t = nextToken();
+        }
+        return t;
+    }
+
+    // reads an attribute list after its [, returning the weight, or NaN
+    private double readWeight() throws IOException {
+        double weight = Double.NaN;
+        int t;
+        while ((t = nextToken()) != EOF) {
+            if (t == OTHER && punctuation == ']')
+                break;
+            if (t != ID)
+                continue; // separators between attributes
+            int key = current;
+            if ((t = nextToken()) != OTHER || punctuation != '=') {
+                pushBack();
+                continue;
+            }
+            if (nextToken() != ID)
+                throw new IOException("Missing attribute value on line " + line);
+            if (matches(key, WEIGHT_ATTRIBUTE))
+                weight = parseWeight(current);
+        }
+        return weight;
+    }
+
+    private boolean isKeyword(int slot, String keyword) {
+        int length = tokenLengths[slot];
+        if (length != keyword.length())
+            return false;
+        byte[] token = tokens[slot];
+        for (int i = 0; i < length; i++)
+            if (Character.toLowerCase(token[i]) != keyword.charAt(i))
+                return false;
+        return true;
+    }
+
+    private boolean matches(int slot, byte[] name) {
+        return Arrays.equals(tokens[slot], 0, tokenLengths[slot], name, 0, name.length);
+    }
+
+    /**
+     * Parses the token in the provided slot as a number. Plain decimals with
+     * up to 15 digits are computed exactly from their digits; anything else
+     * (more digits, exponents) falls back to Double.parseDouble, so that the
+     * result always matches it. Weights that are negative, NaN or infinite
+     * are rejected, since no shortest path search can use them.
+     */
+    private double parseWeight(int slot) throws IOException {
+        byte[] token = tokens[slot];
+        int length = tokenLengths[slot];
+        int i = 0;
+        boolean negative = length > 0 && token[0] == '-';
+        if (negative || (length > 0 && token[0] == '+'))
+            i++;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < length; i++) {
+            int c = token[i];
+            if (isDigit(c)) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (point)
+                    scale++;
+                if (++digits > 15)
+                    break;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        double weight;
+        if (i == length && digits > 0) {
+            weight = negative ? -mantissa / POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[scale];
+        } else {
+            String text = new String(token, 0, length, StandardCharsets.ISO_8859_1);
+            try {
+                weight = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid weight \"" + text + "\" on line " + line);
+            }
+        }
+        // !(weight >= 0) also holds for NaN
+        if (!(weight >= 0) || weight == Double.POSITIVE_INFINITY)
+            throw new IOException("Invalid weight \"" + new String(token, 0, length, StandardCharsets.ISO_8859_1)
+                    + "\" on line " + line + ": weights must be finite and not negative");
+        return weight;
+    }
+
+    /**
+     * Returns the id of the name in the provided token slot, giving it the
+     * next id (and reporting it to handler) the first time it appears.
+     */
+    private int intern(int slot, Handler handler) {
+        byte[] token = tokens[slot];
+        int length = tokenLengths[slot];
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+            hash = 31 * hash + token[i];
+        hash ^= hash >>> 16;
+
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        for (; slots[i] != 0; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (nameHashes[id] == hash && Arrays.equals(arena, nameStart[id], nameStart[id + 1],
+                    token, 0, length))
+                return id;
+        }
+
+        int id = nameCount++;
+        if (id + 1 == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+            nameHashes = Arrays.copyOf(nameHashes, names.length);
+            nameStart = Arrays.copyOf(nameStart, names.length + 1);
+        }
+        int start = nameStart[id];
+        if (start + length > arena.length)
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, start + length));
+        System.arraycopy(token, 0, arena, start, length);
+        nameStart[id + 1] = start + length;
+        nameHashes[id] = hash;
+        names[id] = new String(token, 0, length, StandardCharsets.UTF_8);
+        slots[i] = id + 1;
+        if (nameCount * 2 > slots.length)
+            rehash();
+        handler.node(id, names[id]);
+        return id;
+    }
+
+    // doubles the table of slots
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < nameCount; id++) {
+            int i = nameHashes[id] & mask;
+            while (slots[i] != 0)
+                i = (i + 1) & mask;
+            slots[i] = id + 1;
+        }
+    }
+
+    // makes the next call to nextToken() return the last token again
+    private void pushBack() {
+        pushedBack = lastToken;
+    }
+
+    /**
+     * Reads the next token. IDs are stored in tokens[current], and other
+     * punctuation in punctuation.
+     */
+    private int nextToken() throws IOException {
+        if (pushedBack != -2) {
+            int t = pushedBack;
+            pushedBack = -2;
+            return t;
+        }
+        return lastToken = scanToken();
+    }
+
+    private int scanToken() throws IOException {
+        int c = skipSpace();
+        if (c < 0)
+            return EOF;
+        if (c == '-' && (peek() == '>' || peek() == '-'))
+            return read() == '>' ? ARROW : LINE;
+
+        if (c == '"') {
+            startToken(true);
+            readQuoted();
+            // quoted strings joined with + form one ID
+            while (peekAfterSpace() == '+') {
+                read();
+                if (skipSpace() != '"')
+                    throw new IOException("Expected a quoted string after + on line " + line);
+                readQuoted();
+            }
+            return ID;
+        }
+        if (c == '<') {
+            startToken(true);
+            for (int depth = 1;;) {
+                c = read();
+                if (c < 0)
+                    throw new IOException("Unterminated HTML string on line " + line);
+                if (c == '\n')
+                    line++;
+                if (c == '<')
+                    depth++;
+                else if (c == '>' && --depth == 0)
+                    return ID;
+                append(c);
+            }
+        }
+        if (isIdChar(c) || (c == '-' && (isDigit(peek()) || peek() == '.'))) {
+            startToken(false);
+            append(c);
+            while (isIdChar(peek()))
+                append(read());
+            return ID;
+        }
+        punctuation = c;
+        return OTHER;
+    }
+
+    // reads the rest of a quoted string after its opening quote
+    private void readQuoted() throws IOException {
+        for (;;) {
+            int c = read();
+            if (c < 0)
+                throw new IOException("Unterminated string on line " + line);
+            if (c == '"')
+                return;
+            if (c == '\n')
+                line++;
+            if (c == '\\') {
+                int escaped = peek();
+                if (escaped == '"') {
+                    c = read();
+                } else if (escaped == '\n' || escaped == '\r') {
+                    // a line continuation
+                    if (read() == '\r' && peek() == '\n')
+                        read();
+                    line++;
+                    continue;
+                }
+            }
+            append(c);
+        }
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c)
+                || c == '_' || c == '.' || c >= 0x80;
+    }
+
+    private void startToken(boolean quoted) {
+        current ^= 1;
+        tokenLengths[current] = 0;
+        tokenQuoted[current] = quoted;
+    }
+
+    private void append(int c) {
+        byte[] token = tokens[current];
+        int length = tokenLengths[current];
+        if (length == token.length)
+            tokens[current] = token = Arrays.copyOf(token, length * 2);
+        token[length] = (byte) c;
+        tokenLengths[current] = length + 1;
+    }
+
+    // skips whitespace and comments, returning the next byte read, or -1
+    private int skipSpace() throws IOException {
+        for (;;) {
+            int c = read();
+            if (c == '\n') {
+                line++;
+            } else if (c == '#') {
+                skipLine();
+            } else if (c == '/' && peek() == '/') {
+                skipLine();
+            } else if (c == '/' && peek() == '*') {
+                read();
+                for (int previous = 0; (c = read()) >= 0 && !(previous == '*' && c == '/');) {
+                    if (c == '\n')
+                        line++;
+                    previous = c;
+                }
+            } else if (c != ' ' && c != '\t' && c != '\r' && c != '\f') {
+                return c;
+            }
+        }
+    }
+
+    // skips whitespace, returning the byte after it without consuming it
+    private int peekAfterSpace() throws IOException {
+        for (int c = peek();; c = peek()) {
+            if (c == '\n')
+                line++;
+            else if (c != ' ' && c != '\t' && c != '\r')
+                return c;
+            read();
+        }
+    }
+
+    private void skipLine() throws IOException {
+        for (int c = read(); c >= 0 && c != '\n'; c = read())
+            ;
+        line++;
+    }
+
+    private int read() throws IOException {
+        if (next == limit && !fill())
+            return -1;
+        return buffer[next++] & 0xff;
+    }
+
+    private int peek() throws IOException {
+        if (next == limit && !fill())
+            return -1;
+        return buffer[next] & 0xff;
+    }
+
+    // reads the next block of the region into buffer
+    private boolean fill() throws IOException {
+        if (position >= end)
+            return false;
+        wrapper.clear();
+        wrapper.limit((int) Math.min(buffer.length, end - position));
+        int n = channel.read(wrapper, position);
+        if (n <= 0)
+            return false;
+        position += n;
+        next = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Closes the file, if this DotReader opened it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel)
+            channel.close();
+    }
+
+}
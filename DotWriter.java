@@ -0,0 +1,137 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A DotWriter is a streaming writer for graphs in the DOT language, in the
+ * form that DotReader and Backend.loadGraphData read: one statement per
+ * edge, with the edge's weight in a seconds attribute, as in campus.dot.
+ * It is a DotReader.Handler, so that anything reporting nodes and edges to
+ * a Handler (a DotReader, or the families in GraphGenerator) can be written
+ * straight to disk. Each edge is written as soon as it is reported, so only
+ * the node names are kept in memory: they are stored already quoted, as
+ * UTF-8 bytes packed into a single array, so a node costs only the length
+ * of its name plus 4 bytes, however many edges the file has.
+ *
+ * Nodes without edges are not written, since the DOT language only names a
+ * node in a node statement, which DotReader ignores.
+ */
+public class DotWriter implements DotReader.Handler, Closeable {
+
+    protected static final byte[] ARROW = " -> ".getBytes(StandardCharsets.US_ASCII);
+    protected static final byte[] WEIGHT_START = " [seconds=".getBytes(StandardCharsets.US_ASCII);
+    protected static final byte[] EDGE_END = "];\n".getBytes(StandardCharsets.US_ASCII);
+
+    protected final OutputStream out;
+    // the quoted name of node id is names[nameStarts[id]..nameStarts[id + 1])
+    protected byte[] names = new byte[1 << 16];
+    protected int[] nameStarts = new int[1 << 10];
+    protected int nodeCount = 0;
+    protected long edgeCount = 0;
+
+    /**
+     * Creates a file and writes the header of a graph to it.
+     *
+     * @param filename  the path of the file to write
+     * @param graphName the name of the graph, as in digraph name {
+     * @throws IOException if the file could not be created
+     */
+    public DotWriter(String filename, String graphName) throws IOException {
+        out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+        out.write(("digraph " + quote(graphName) + " {\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    // returns name as a DOT quoted string, in which only quotes are escaped
+    private static String quote(String name) {
+        return "\"" + name.replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * Records the name of a node, for the edges that use it.
+     *
+     * @param id   the id of the node, which must be the number of nodes
+     *             reported before it
+     * @param name the name of the node
+     * @throws IllegalArgumentException if id is not the next id
+     */
+    @Override
+    public void node(int id, String name) {
+        if (id != nodeCount)
+            throw new IllegalArgumentException("Expected node " + nodeCount + " but got " + id);
+        byte[] bytes = quote(name).getBytes(StandardCharsets.UTF_8);
+        if (nodeCount + 2 > nameStarts.length)
+            nameStarts = Arrays.copyOf(nameStarts, nameStarts.length * 2);
+        int start = nameStarts[nodeCount];
+        if (start + bytes.length > names.length)
+            names = Arrays.copyOf(names, Math.max(names.length * 2, start + bytes.length));
+        System.arraycopy(bytes, 0, names, start, bytes.length);
+        nameStarts[++nodeCount] = start + bytes.length;
+    }
+
+    /**
+     * Writes an edge statement.
+     *
+     * @param from   the id of the source node
+     * @param to     the id of the target node
+     * @param weight the weight of the edge, in seconds
+     * @throws IllegalArgumentException if either node has not been reported
+     * @throws UncheckedIOException     if there was a problem writing the file
+     */
+    @Override
+    public void edge(int from, int to, double weight) {
+        if (from < 0 || from >= nodeCount || to < 0 || to >= nodeCount)
+            throw new IllegalArgumentException("No node " + (from < 0 || from >= nodeCount ? from : to));
+        try {
+            out.write('\t');
+            writeName(from);
+            out.write(ARROW);
+            writeName(to);
+            out.write(WEIGHT_START);
+            out.write(Double.toString(weight).getBytes(StandardCharsets.US_ASCII));
+            out.write(EDGE_END);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        edgeCount++;
+    }
+
+    private void writeName(int id) throws IOException {
+        out.write(names, nameStarts[id], nameStarts[id + 1] - nameStarts[id]);
+    }
+
+    /**
+     * Return the number of nodes reported so far.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Return the number of edges written so far.
+     *
+     * @return the number of edges
+     */
+    public long getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Writes the end of the graph and closes the file.
+     *
+     * @throws IOException if there was a problem writing the file
+     */
+    @Override
+    public void close() throws IOException {
+        try (OutputStream closing = out) {
+            closing.write("}\n".getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+}
@@ -0,0 +1,453 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class extends DijkstraGraph to keep a ShortestPathTree up to date for
+ * each of a set of registered sources while edges are inserted, reweighted
+ * and removed. Instead of searching every tree again from scratch, each
+ * change repairs only the part of each tree it affects, in the style of the
+ * dynamic shortest path algorithm of Ramalingam and Reps:
+ *
+ * - When an edge u -> v gets cheaper (or is inserted), v is only affected if
+ *   the edge now gives it a preferred path, and the new paths are spread
+ *   from v by a Dijkstra search that stops wherever no path improves.
+ * - When an edge u -> v gets more expensive (or is removed), only the nodes
+ *   whose shortest paths used that edge are affected, which is the subtree
+ *   below v when u is v's parent. Each node in that subtree is given the
+ *   cheapest path in from a node outside it, and the subtree is then settled
+ *   by a Dijkstra search among its own nodes.
+ *
+ * Paths are compared with PathOrder, as DijkstraGraph compares them, so a
+ * repaired tree holds the same paths that a new search would find.
+ *
+ * A batch of changes made through applyEdgeUpdates is repaired all at once,
+ * with a single search per tree that spreads the costs from every affected
+ * node together.
+ *
+ * Shortest path queries from a registered source are answered directly from
+ * its tree, and queries from other nodes are answered by DijkstraGraph. The
+ * work caused by the most recent change is reported by
+ * getLastUpdateAffectedCount, getLastUpdateSettledCount and
+ * getLastUpdateScannedCount.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class DynamicDijkstraGraph<NodeType> extends DijkstraGraph<NodeType, Double> {
+
+    // the tree maintained for each registered source, in registration order
+    protected Map<NodeType, ShortestPathTree<NodeType>> trees = new LinkedHashMap<>();
+
+    // reused by every repair: the heap of nodes whose costs must be spread,
+    // the nodes in the subtree being repaired, and whether each is in it
+    protected IndexedMinHeap repairHeap = new IndexedMinHeap(0, 4);
+    protected int[] subtree = new int[0];
+    protected boolean[] inSubtree = new boolean[0];
+
+    // the work done to repair every tree after the most recent change
+    protected int lastAffectedCount = 0;
+    protected int lastSettledCount = 0;
+    protected int lastScannedCount = 0;
+
+    /**
+     * Starts maintaining the tree of shortest paths from source, computing
+     * it with a single search.
+     *
+     * @param source the data item in the node to maintain paths from
+     * @return the tree of shortest paths from source, which stays up to date
+     *         as this graph changes
+     * @throws java.util.NoSuchElementException when source is not in the
+     *                                          graph
+     */
+    public ShortestPathTree<NodeType> registerSource(NodeType source) {
+        ShortestPathTree<NodeType> tree = trees.get(source);
+        if (tree == null) {
+            tree = shortestPathTree(source, new ShortestPathTree<>());
+            trees.put(source, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Stops maintaining the tree of shortest paths from source.
+     *
+     * @param source the data item in the node paths were maintained from
+     * @return true if source was registered, or false otherwise
+     */
+    public boolean unregisterSource(NodeType source) {
+        return trees.remove(source) != null;
+    }
+
+    /**
+     * Return the sources whose trees are maintained.
+     *
+     * @return an unmodifiable view of the registered sources
+     */
+    public Set<NodeType> getSources() {
+        return Collections.unmodifiableSet(trees.keySet());
+    }
+
+    /**
+     * Return the number of nodes whose costs were re-evaluated, summed over
+     * every tree, to repair the trees after the most recent change.
+     *
+     * @return the number of affected nodes
+     */
+    public int getLastUpdateAffectedCount() {
+        return lastAffectedCount;
+    }
+
+    /**
+     * Return the number of nodes settled, summed over every tree, to repair
+     * the trees after the most recent change.
+     *
+     * @return the number of nodes settled by the repair
+     */
+    public int getLastUpdateSettledCount() {
+        return lastSettledCount;
+    }
+
+    /**
+     * Return the number of edges examined, summed over every tree, to repair
+     * the trees after the most recent change.
+     *
+     * @return the number of edges scanned by the repair
+     */
+    public int getLastUpdateScannedCount() {
+        return lastScannedCount;
+    }
+
+    @Override
+    public boolean insertNode(NodeType data) {
+        boolean inserted = super.insertNode(data);
+        if (inserted) {
+            // the new node has no edges yet, so it cannot be reached
+            int id = nodeList.size() - 1;
+            for (ShortestPathTree<NodeType> tree : trees.values()) {
+                ensureCapacity(tree, id + 1);
+                tree.dist[id] = Double.POSITIVE_INFINITY;
+                tree.parent[id] = -1;
+                tree.nodeCount = id + 1;
+            }
+            resetWork();
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean removeNode(NodeType data) {
+        if (!nodes.containsKey(data))
+            return false; // throws NPE when data==null
+        Node oldNode = nodes.get(data);
+        trees.remove(data);
+
+        // removing every edge first repairs the trees around the node, and
+        // leaves it unreachable and without children in every tree
+        int affected = 0;
+        int settled = 0;
+        int scanned = 0;
+        for (Edge edge : new ArrayList<>(oldNode.edgesLeaving)) {
+            removeEdge(edge.predecessor.data, edge.successor.data);
+            affected += lastAffectedCount;
+            settled += lastSettledCount;
+            scanned += lastScannedCount;
+        }
+        for (Edge edge : new ArrayList<>(oldNode.edgesEntering)) {
+            if (!removeEdge(edge.predecessor.data, edge.successor.data))
+                continue; // a self loop, already removed as a leaving edge
+            affected += lastAffectedCount;
+            settled += lastSettledCount;
+            scanned += lastScannedCount;
+        }
+
+        int oldId = oldNode.id;
+        int lastId = nodeList.size() - 1;
+        super.removeNode(data);
+        // the last node moves into the removed node's id, so its entries and
+        // its children's parent references move with it
+        for (ShortestPathTree<NodeType> tree : trees.values()) {
+            if (lastId != oldId) {
+                tree.dist[oldId] = tree.dist[lastId];
+                tree.parent[oldId] = tree.parent[lastId];
+                tree.parentWeight[oldId] = tree.parentWeight[lastId];
+                tree.hops[oldId] = tree.hops[lastId];
+                tree.tieKey[oldId] = tree.tieKey[lastId];
+                for (Edge edge : nodeList.get(oldId).edgesLeaving)
+                    if (tree.parent[edge.successor.id] == lastId)
+                        tree.parent[edge.successor.id] = oldId;
+                if (tree.start == lastId)
+                    tree.start = oldId;
+            }
+            tree.nodeCount = lastId;
+        }
+        lastAffectedCount = affected;
+        lastSettledCount = settled;
+        lastScannedCount = scanned;
+        return true;
+    }
+
+
+    // a change to the weight of the edge pred -> succ, where infinity stands
+    // for no edge
+    private static class EdgeChange {
+        final int pred;
+        final int succ;
+        final double oldWeight;
+        final double newWeight;
+
+        EdgeChange(int pred, int succ, double oldWeight, double newWeight) {
+            this.pred = pred;
+            this.succ = succ;
+            this.oldWeight = oldWeight;
+            this.newWeight = newWeight;
+        }
+    }
+
+    // the changes made so far by the batch being applied
+    private List<EdgeChange> batchChanges = new ArrayList<>();
+
+    @Override
+    public boolean insertEdge(NodeType pred, NodeType succ, Double weight) {
+        double oldWeight = weightOf(pred, succ);
+        boolean inserted = super.insertEdge(pred, succ, weight);
+        if (inserted)
+            repair(List.of(new EdgeChange(nodes.get(pred).id, nodes.get(succ).id, oldWeight, weight)));
+        return inserted;
+    }
+
+    @Override
+    public boolean removeEdge(NodeType pred, NodeType succ) {
+        double oldWeight = weightOf(pred, succ);
+        if (oldWeight == Double.POSITIVE_INFINITY)
+            return false; // no such edge
+        int u = nodes.get(pred).id;
+        int v = nodes.get(succ).id;
+        super.removeEdge(pred, succ);
+        repair(List.of(new EdgeChange(u, v, oldWeight, Double.POSITIVE_INFINITY)));
+        return true;
+    }
+
+    /**
+     * Applies a batch of edge updates in the same way as DijkstraGraph, and
+     * then repairs every tree once for the whole batch.
+     *
+     * @param updates the changes to apply
+     * @return the data items in every node that gained, lost or reweighted a
+     *         leaving or entering edge
+     * @throws java.util.NoSuchElementException if an update names a node that
+     *                                          is not in the graph
+     */
+    @Override
+    public Set<NodeType> applyEdgeUpdates(List<EdgeUpdate<NodeType, Double>> updates) {
+        batchChanges.clear();
+        try {
+            Set<NodeType> affected = super.applyEdgeUpdates(updates);
+            repair(batchChanges);
+            return affected;
+        } finally {
+            batchChanges.clear();
+        }
+    }
+
+    @Override
+    protected void edgeUpdated(Node pred, Node succ, Double oldWeight, Double newWeight) {
+        batchChanges.add(new EdgeChange(pred.id, succ.id,
+                oldWeight == null ? Double.POSITIVE_INFINITY : oldWeight,
+                newWeight == null ? Double.POSITIVE_INFINITY : newWeight));
+    }
+
+    // returns the weight of the edge pred -> succ, or infinity when there is
+    // no such edge (so that inserting an edge is a decrease from infinity)
+    private double weightOf(NodeType pred, NodeType succ) {
+        if (pred == null || succ == null || !nodes.containsKey(pred) || !nodes.containsKey(succ))
+            return Double.POSITIVE_INFINITY;
+        Edge edge = findEdge(nodes.get(pred), nodes.get(succ));
+        return edge == null ? Double.POSITIVE_INFINITY : edge.data;
+    }
+
+    private void resetWork() {
+        lastAffectedCount = 0;
+        lastSettledCount = 0;
+        lastScannedCount = 0;
+    }
+
+    /**
+     * Repairs every tree after a set of edge weights changed, where each
+     * edge appears at most once and the graph already holds the new weights.
+     */
+    private void repair(List<EdgeChange> changes) {
+        resetWork();
+        if (changes.isEmpty())
+            return;
+        int nodeCount = nodeList.size();
+        repairHeap.ensureCapacity(nodeCount);
+        if (inSubtree.length < nodeCount) {
+            subtree = new int[nodeCount];
+            inSubtree = new boolean[nodeCount];
+        }
+        for (ShortestPathTree<NodeType> tree : trees.values())
+            repair(tree, changes);
+    }
+
+    /**
+     * Repairs one tree. The subtrees below every tree edge that got more
+     * expensive are detached and given their cheapest paths in from the rest
+     * of the tree, and every edge that got cheaper is tried as a shorter path
+     * to its successor. A single search from all of those nodes then spreads
+     * the new costs, since every edge that could now give a cheaper path
+     * leaves a node that is in the heap.
+     */
+    private void repair(ShortestPathTree<NodeType> tree, List<EdgeChange> changes) {
+        double[] dist = tree.dist;
+        int[] parent = tree.parent;
+
+        // collect the subtrees below the changed tree edges, whose paths all
+        // used one of those edges
+        int size = 0;
+        for (EdgeChange change : changes) {
+            int v = change.succ;
+            if (change.newWeight <= change.oldWeight || parent[v] != change.pred || inSubtree[v])
+                continue;
+            int first = size;
+            subtree[size++] = v;
+            inSubtree[v] = true;
+            for (int i = first; i < size; i++) {
+                for (Edge edge : nodeList.get(subtree[i]).edgesLeaving) {
+                    int child = edge.successor.id;
+                    lastScannedCount++;
+                    if (parent[child] == subtree[i] && !inSubtree[child]) {
+                        inSubtree[child] = true;
+                        subtree[size++] = child;
+                    }
+                }
+            }
+        }
+        lastAffectedCount += size;
+        for (int i = 0; i < size; i++) {
+            dist[subtree[i]] = Double.POSITIVE_INFINITY;
+            parent[subtree[i]] = -1;
+        }
+
+        // give each detached node its preferred path in from outside the
+        // subtrees, whose paths are still valid
+        for (int i = 0; i < size; i++) {
+            int id = subtree[i];
+            for (Edge edge : nodeList.get(id).edgesEntering) {
+                int pred = edge.predecessor.id;
+                lastScannedCount++;
+                if (!inSubtree[pred])
+                    relax(tree, pred, id, edge.data);
+            }
+            if (dist[id] < Double.POSITIVE_INFINITY)
+                repairHeap.insertOrDecrease(id, dist[id]);
+        }
+        for (int i = 0; i < size; i++)
+            inSubtree[subtree[i]] = false;
+
+        // try every cheaper edge as a preferred path to its successor
+        for (EdgeChange change : changes) {
+            if (change.newWeight >= change.oldWeight || change.pred == change.succ)
+                continue;
+            if (relax(tree, change.pred, change.succ, change.newWeight)) {
+                lastAffectedCount++;
+                repairHeap.insertOrDecrease(change.succ, dist[change.succ]);
+            }
+        }
+        spread(tree);
+    }
+
+    // settles the nodes in repairHeap in order of cost, giving their
+    // successors new paths whenever PathOrder prefers them
+    private void spread(ShortestPathTree<NodeType> tree) {
+        while (!repairHeap.isEmpty()) {
+            int id = repairHeap.poll();
+            lastSettledCount++;
+            for (Edge edge : nodeList.get(id).edgesLeaving) {
+                int neighbor = edge.successor.id;
+                lastScannedCount++;
+                if (relax(tree, id, neighbor, edge.data))
+                    repairHeap.insertOrDecrease(neighbor, tree.dist[neighbor]);
+            }
+        }
+    }
+
+    // gives node id the path through pred, which ends with an edge of the
+    // provided weight, if PathOrder prefers it to the path the tree holds
+    private boolean relax(ShortestPathTree<NodeType> tree, int pred, int id, double weight) {
+        if (tree.dist[pred] == Double.POSITIVE_INFINITY)
+            return false; // pred cannot be reached either
+        double cost = tree.dist[pred] + weight;
+        int hops = tree.hops[pred] + 1;
+        long key = tree.tieKey[pred] + PathOrder.edgeKey(nodeList.get(pred).data, nodeList.get(id).data);
+        if (PathOrder.compare(cost, hops, key, tree.dist[id], tree.hops[id], tree.tieKey[id]) >= 0)
+            return false;
+        tree.dist[id] = cost;
+        tree.parent[id] = pred;
+        tree.parentWeight[id] = weight;
+        tree.hops[id] = hops;
+        tree.tieKey[id] = key;
+        return true;
+    }
+
+    // grows the arrays of tree to hold at least capacity node ids
+    private void ensureCapacity(ShortestPathTree<NodeType> tree, int capacity) {
+        if (tree.dist.length >= capacity)
+            return;
+        int newCapacity = Math.max(capacity, tree.dist.length * 2);
+        tree.dist = Arrays.copyOf(tree.dist, newCapacity);
+        tree.parent = Arrays.copyOf(tree.parent, newCapacity);
+        tree.parentWeight = Arrays.copyOf(tree.parentWeight, newCapacity);
+        tree.hops = Arrays.copyOf(tree.hops, newCapacity);
+        tree.tieKey = Arrays.copyOf(tree.tieKey, newCapacity);
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path
+     * from start to end, read from the maintained tree when start is a
+     * registered source, or found by Dijkstra's algorithm otherwise.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return list of data item from node along this shortest path
+     */
+    @Override
+    public List<NodeType> shortestPathData(NodeType start, NodeType end) {
+        ShortestPathTree<NodeType> tree = start == null ? null : trees.get(start);
+        return tree != null ? tree.getPath(end) : super.shortestPathData(start, end);
+    }
+
+    /**
+     * Returns the cost of the shortest path from start to end, read from the
+     * maintained tree when start is a registered source, or found by
+     * Dijkstra's algorithm otherwise.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the cost of the shortest path between these nodes
+     */
+    @Override
+    public double shortestPathCost(NodeType start, NodeType end) {
+        ShortestPathTree<NodeType> tree = start == null ? null : trees.get(start);
+        return tree != null ? tree.getCost(end) : super.shortestPathCost(start, end);
+    }
+
+    /**
+     * Returns the route along the shortest path from start to end, read from
+     * the maintained tree when start is a registered source, or found by
+     * Dijkstra's algorithm otherwise.
+     *
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the route along the shortest path between these nodes
+     */
+    @Override
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end) {
+        ShortestPathTree<NodeType> tree = start == null ? null : trees.get(start);
+        return tree != null ? tree.getRoute(end) : super.shortestPathRoute(start, end);
+    }
+
+}
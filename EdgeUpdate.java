@@ -0,0 +1,97 @@
+/**
+ * An EdgeUpdate describes one change to apply to the edge from a pred node
+ * to a succ node as part of a batch passed to GraphADT.applyEdgeUpdates:
+ * either inserting the edge (or updating its weight, when it already
+ * exists), or removing it. EdgeUpdates are immutable.
+ *
+ * @param NodeType is the data type stored at each graph node
+ * @param EdgeType is the numeric data type stored at each graph edge
+ */
+public class EdgeUpdate<NodeType, EdgeType extends Number> {
+
+    protected final NodeType pred;
+    protected final NodeType succ;
+    protected final EdgeType weight; // null for a removal
+
+    private EdgeUpdate(NodeType pred, NodeType succ, EdgeType weight) {
+        if (pred == null || succ == null)
+            throw new NullPointerException("An edge update needs both of its nodes");
+        this.pred = pred;
+        this.succ = succ;
+        this.weight = weight;
+    }
+
+    /**
+     * Creates an update that inserts the edge from pred to succ, or sets its
+     * weight if it already exists, in the same way as GraphADT.insertEdge.
+     *
+     * @param pred   the data item in the edge's predecessor node
+     * @param succ   the data item in the edge's successor node
+     * @param weight the non-negative weight of the edge
+     * @return the update
+     * @throws NullPointerException if any argument is null
+     */
+    public static <NodeType, EdgeType extends Number> EdgeUpdate<NodeType, EdgeType> insert(
+            NodeType pred, NodeType succ, EdgeType weight) {
+        if (weight == null)
+            throw new NullPointerException("An inserted edge needs a weight");
+        return new EdgeUpdate<>(pred, succ, weight);
+    }
+
+    /**
+     * Creates an update that removes the edge from pred to succ, if there is
+     * one, in the same way as GraphADT.removeEdge.
+     *
+     * @param pred the data item in the edge's predecessor node
+     * @param succ the data item in the edge's successor node
+     * @return the update
+     * @throws NullPointerException if either node is null
+     */
+    public static <NodeType, EdgeType extends Number> EdgeUpdate<NodeType, EdgeType> remove(
+            NodeType pred, NodeType succ) {
+        return new EdgeUpdate<>(pred, succ, null);
+    }
+
+    /**
+     * Return the data item in the edge's predecessor node.
+     *
+     * @return the predecessor of the edge
+     */
+    public NodeType getPred() {
+        return pred;
+    }
+
+    /**
+     * Return the data item in the edge's successor node.
+     *
+     * @return the successor of the edge
+     */
+    public NodeType getSucc() {
+        return succ;
+    }
+
+    /**
+     * Return the weight the edge is given by an insertion.
+     *
+     * @return the new weight, or null for a removal
+     */
+    public EdgeType getWeight() {
+        return weight;
+    }
+
+    /**
+     * Check whether this update removes its edge.
+     *
+     * @return true for a removal, or false for an insertion or update
+     */
+    public boolean isRemoval() {
+        return weight == null;
+    }
+
+    @Override
+    public String toString() {
+        return isRemoval() ? "remove " + pred + " -> " + succ
+                : "insert " + pred + " -> " + succ + " = " + weight;
+    }
+
+}
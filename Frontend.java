@@ -23,6 +23,9 @@ public class Frontend extends Application{
   
   public static void setBackend(BackendInterface back) {
     Frontend.back = back;
+    // a backend over a mapped graph file (Backend.openGraphFile) is already loaded
+    if (!back.getListOfAllLocations().isEmpty())
+      return;
     try {
 		back.loadGraphData("campus.dot");
 	} catch (Exception e) {
@@ -92,13 +95,16 @@ public class Frontend extends Application{
     find.setOnAction(e -> {
     	
     	if(via&&viaText!=null) {
-    		shortestPath = back.findShortestPathVia(start.getText(),viaText.getText() ,end.getText());
-    		timesArray = back.getTravelTimesOnPathVia(start.getText(),viaText.getText() ,end.getText());
+    		// the path and its times both come from a single search
+    		RouteResult<String> route = back.findRouteVia(start.getText(),viaText.getText() ,end.getText());
+    		shortestPath = route.getNodes();
+    		timesArray = route.getTimes();
     		createPathListDisplay(parent);
     	} else {
     		
-    		shortestPath = back.findShortestPath(start.getText(), end.getText());
-    		timesArray = back.getTravelTimesOnPath(start.getText(), end.getText());
+    		RouteResult<String> route = back.findRoute(start.getText(), end.getText());
+    		shortestPath = route.getNodes();
+    		timesArray = route.getTimes();
     		createPathListDisplay(parent);
     	}
     });
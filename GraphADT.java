@@ -1,5 +1,6 @@
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * This ADT represents a directed graph data structure with only positive edge
@@ -98,6 +99,30 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
      */
     public int getEdgeCount();
 
+    /**
+     * Return the version of the graph, which changes whenever a node or edge
+     * is inserted, updated or removed. Results computed from the graph stay
+     * valid for as long as its version stays the same.
+     * 
+     * @return a number that changes with every modification of the graph
+     */
+    public long getVersion();
+
+    /**
+     * Applies a batch of edge insertions, weight updates and removals as a
+     * single change to the graph: the version changes once, and no query sees
+     * only part of the batch. When several updates name the same edge, the
+     * last one wins, just as if they had been applied one at a time.
+     * 
+     * @param updates the changes to apply
+     * @return the data items in every node that gained, lost or reweighted a
+     *         leaving or entering edge, for indexes that need to be updated
+     * @throws NoSuchElementException if an update names a node that is not
+     *                                in the graph, in which case none of the
+     *                                updates are applied
+     */
+    public Set<NodeType> applyEdgeUpdates(List<EdgeUpdate<NodeType, EdgeType>> updates);
+
     /**
      * Returns the list of data values from nodes along the shortest path
      * from the node with the provided start value through the node with the
@@ -124,4 +149,17 @@ public interface GraphADT<NodeType, EdgeType extends Number> {
      */
     public double shortestPathCost(NodeType start, NodeType end);
 
+    /**
+     * Returns the nodes along the shortest path from the node containing the
+     * start data to the node containing the end data, together with the
+     * weight of each edge along it and its total cost, all from a single
+     * search.
+     * 
+     * @param start the data item in the starting node for the path
+     * @param end   the data item in the destination node for the path
+     * @return the route along the shortest path between these nodes
+     * @throws NoSuchElementException when no path from start to end is found
+     */
+    public RouteResult<NodeType> shortestPathRoute(NodeType start, NodeType end);
+
 }
@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Benchmarks graph construction, lookup and shortest path queries, so that
+ * regressions in them can be measured:
+ * - the time and memory allocated to load campus.dot through the Backend,
+ *   and to build grid, random and scale-free graphs of each size
+ * - the latency percentiles of random point-to-point queries
+ * - the throughput of one-to-all shortest path trees
+ * - put and get on HashtableMap, OpenHashtableMap and PlaceholderMap
+ * Every measurement is taken after warmup runs that let the JIT compile the
+ * code being measured, and reports the bytes allocated by the benchmark
+ * thread along with the allocation rate this puts the garbage collector
+ * under.
+ *
+ * Sizes are numbers of edges; the default covers 10K to 1M edges, and
+ * larger sizes such as 10000000 need a larger heap, e.g.
+ * java -Xmx4g GraphBenchmarks campus.dot 10000000.
+ *
+ * Usage: java GraphBenchmarks [dotFile] [edgeCount ...]
+ */
+public class GraphBenchmarks {
+
+    protected static final int WARMUP_ITERATIONS = 2;
+    protected static final int MEASURED_ITERATIONS = 3;
+    protected static final int QUERY_COUNT = 2000;
+    protected static final int TREE_COUNT = 20;
+    // query measurements stop early once they have run this long, so that
+    // large graphs still finish in reasonable time
+    protected static final long TIME_LIMIT_NANOS = 10_000_000_000L;
+
+    // the allocation counters of the current thread
+    protected static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        String filename = args.length > 0 ? args[0] : "campus.dot";
+        long[] sizes = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToLong(Long::parseLong).toArray()
+                : new long[] { 10000, 100000, 1000000 };
+
+        System.out.println("== load ==");
+        System.out.printf("%-30s %12s %12s %12s%n", "graph", "ms/op", "MB/op", "MB/s alloc");
+        measure(filename, () -> {
+            Backend backend = new Backend(new DijkstraGraph<>());
+            backend.loadGraphData(filename);
+            return backend;
+        });
+        for (long size : sizes) {
+            for (String family : new String[] { "grid", "random", "scaleFree" }) {
+                measure(family + " " + size, () -> generate(family, size, new ArrayList<>()));
+            }
+        }
+
+        System.out.println();
+        System.out.println("== queries ==");
+        System.out.printf("%-30s %9s %9s %9s %9s %10s %11s %10s%n", "graph", "p50 us", "p90 us",
+                "p99 us", "max us", "B/query", "trees/s", "B/tree");
+        DijkstraGraph<String, Double> campus = new DijkstraGraph<>();
+        Backend backend = new Backend(campus);
+        backend.loadGraphData(filename);
+        queries(filename, campus, backend.getListOfAllLocations());
+        for (long size : sizes) {
+            for (String family : new String[] { "grid", "random", "scaleFree" }) {
+                List<String> names = new ArrayList<>();
+                queries(family + " " + size, generate(family, size, names), names);
+            }
+        }
+
+        System.out.println();
+        System.out.println("== maps ==");
+        System.out.printf("%-30s %12s %12s %12s %12s%n", "map", "put ns/op", "get ns/op", "B/entry",
+                "MB/s alloc");
+        // HashtableMap.put counts every bucket to find the load factor, so
+        // maps are kept to at most 100K entries to finish in reasonable time
+        long[] mapSizes = Arrays.stream(sizes).map(size -> Math.min(size, 100000)).distinct().toArray();
+        for (long size : mapSizes) {
+            int n = (int) size;
+            maps("HashtableMap " + n, n, HashtableMap::new);
+            maps("OpenHashtableMap " + n, n, OpenHashtableMap::new);
+            maps("PlaceholderMap " + n, n, capacity -> new PlaceholderMap<>());
+        }
+    }
+
+    /**
+     * Builds a synthetic graph of one of the families in GraphGenerator,
+     * with about edgeCount edges.
+     *
+     * @param family    a family accepted by GraphGenerator.generate
+     * @param edgeCount the number of edges to aim for
+     * @param names     the list to add the name of every node to
+     * @return the graph
+     * @throws IOException if the family's input could not be read
+     */
+    public static DijkstraGraph<String, Double> generate(String family, long edgeCount,
+            List<String> names) throws IOException {
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        DotReader.Handler fill = GraphGenerator.into(graph);
+        GraphGenerator.generate(family, edgeCount, 42, new DotReader.Handler() {
+            public void node(int id, String name) {
+                names.add(name);
+                fill.node(id, name);
+            }
+
+            public void edge(int from, int to, double weight) {
+                fill.edge(from, to, weight);
+            }
+        });
+        return graph;
+    }
+
+    // the operation being measured
+    protected interface Operation {
+        Object run() throws IOException;
+    }
+
+    // runs op repeatedly and prints the mean time and allocation of one run
+    private static void measure(String name, Operation op) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            op.run();
+        long time = 0;
+        long bytes = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            op.run();
+            time += System.nanoTime() - start;
+            bytes += allocatedBytes() - allocated;
+        }
+        System.out.printf("%-30s %12.2f %12.2f %12.1f%n", name, time / 1e6 / MEASURED_ITERATIONS,
+                bytes / 1e6 / MEASURED_ITERATIONS, bytes / 1e6 / (time / 1e9));
+    }
+
+    // times random point-to-point queries and one-to-all trees on graph
+    private static void queries(String name, DijkstraGraph<String, Double> graph,
+            List<String> nodes) {
+        Random random = new Random(42);
+        String[] starts = new String[QUERY_COUNT];
+        String[] ends = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            starts[i] = nodes.get(random.nextInt(nodes.size()));
+            ends[i] = nodes.get(random.nextInt(nodes.size()));
+        }
+
+        // warm up on a tenth of the queries, then measure them all
+        for (int i = 0; i < QUERY_COUNT / 10; i++)
+            cost(graph, starts[i], ends[i]);
+        long[] latencies = new long[QUERY_COUNT];
+        int count = 0;
+        long bytes = allocatedBytes();
+        long limit = System.nanoTime() + TIME_LIMIT_NANOS;
+        while (count < QUERY_COUNT && System.nanoTime() < limit) {
+            long start = System.nanoTime();
+            cost(graph, starts[count], ends[count]);
+            latencies[count++] = System.nanoTime() - start;
+        }
+        bytes = allocatedBytes() - bytes;
+        latencies = Arrays.copyOf(latencies, count);
+        Arrays.sort(latencies);
+
+        ShortestPathTree<String> tree = new ShortestPathTree<>();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            graph.shortestPathTree(starts[i], tree);
+        int trees = 0;
+        long treeBytes = allocatedBytes();
+        long time = System.nanoTime();
+        limit = time + TIME_LIMIT_NANOS;
+        while (trees < TREE_COUNT && System.nanoTime() < limit)
+            graph.shortestPathTree(starts[trees++], tree);
+        time = System.nanoTime() - time;
+        treeBytes = allocatedBytes() - treeBytes;
+
+        System.out.printf("%-30s %9.1f %9.1f %9.1f %9.1f %10d %11.1f %10d%n", name,
+                percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.90) / 1e3,
+                percentile(latencies, 0.99) / 1e3, latencies[count - 1] / 1e3,
+                bytes / count, trees / (time / 1e9), treeBytes / trees);
+    }
+
+    // runs one query, counting an unreachable end as a completed search
+    private static double cost(DijkstraGraph<String, Double> graph, String start, String end) {
+        try {
+            return graph.shortestPathCost(start, end);
+        } catch (NoSuchElementException e) {
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    // times n puts and n gets of distinct keys on maps created with capacity n
+    private static void maps(String name, int n, IntFunction<MapADT<String, Integer>> create) {
+        String[] keys = new String[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = "node" + i;
+        Integer value = 1;
+        long putTime = 0;
+        long getTime = 0;
+        long bytes = 0;
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            MapADT<String, Integer> map = create.apply(n);
+            for (String key : keys)
+                map.put(key, value);
+            long put = System.nanoTime() - start;
+            long found = 0;
+            start = System.nanoTime();
+            for (String key : keys)
+                found += map.get(key);
+            long get = System.nanoTime() - start;
+            if (found != n)
+                throw new IllegalStateException(name + " lost " + (n - found) + " keys");
+            if (iteration >= WARMUP_ITERATIONS) {
+                putTime += put;
+                getTime += get;
+                bytes += allocatedBytes() - allocated;
+            }
+        }
+        long ops = (long) n * MEASURED_ITERATIONS;
+        System.out.printf("%-30s %12.1f %12.1f %12.1f %12.1f%n", name, (double) putTime / ops,
+                (double) getTime / ops, (double) bytes / ops, bytes / 1e6 / ((putTime + getTime) / 1e9));
+    }
+
+    // returns the value below which the given fraction of sorted values lie
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+
+    // returns the bytes allocated so far by the current thread
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
@@ -0,0 +1,179 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes graphs in a compact binary format that MappedGraph can serve
+ * queries from without parsing or copying it onto the heap. All values are
+ * big-endian. A file starts with a fixed HEADER_BYTES header:
+ *
+ *   int  magic (FILE_MAGIC)      int  version (FILE_VERSION)
+ *   int  flags (FLOAT_WEIGHTS)   int  nodeCount
+ *   int  edgeCount               int  hashSlots
+ *   long nameBytes               long checksum
+ *
+ * followed by these sections, each starting at a multiple of 8 bytes:
+ *
+ *   int[nodeCount + 1]   nameStarts, the start of each name in the names
+ *   int[hashSlots]       an open addressing table of id + 1 by name hash
+ *   int[nodeCount + 1]   offsets, as in CSRGraph
+ *   int[edgeCount]       targets, as in CSRGraph
+ *   float or double[edgeCount] weights, as in CSRGraph
+ *   byte[nameBytes]      the UTF-8 bytes of every node's name
+ *
+ * The checksum is the CRC32C of every byte after the header.
+ */
+public class GraphFile {
+
+    protected static final int FILE_MAGIC = 0x53504731; // "SPG1"
+    protected static final int FILE_VERSION = 1;
+    protected static final int FLOAT_WEIGHTS = 1;
+    protected static final int HEADER_BYTES = 64;
+
+    /**
+     * Check whether a file was written in this format, by its first bytes.
+     *
+     * @param filename the path of the file to check
+     * @return true if the file starts with FILE_MAGIC
+     */
+    public static boolean isGraphFile(String filename) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            return in.readInt() == FILE_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the current contents of a graph, storing weights as doubles.
+     * Nodes are recorded by their toString() value.
+     *
+     * @param graph    the graph to write
+     * @param filename the path of the file to write
+     * @throws IOException if there was a problem writing the file
+     */
+    public static void write(BaseGraph<?, ?> graph, String filename) throws IOException {
+        write(graph.freeze(), filename, false);
+    }
+
+    /**
+     * Writes a snapshot. Nodes are recorded by their toString() value.
+     *
+     * @param snapshot     the graph to write
+     * @param filename     the path of the file to write
+     * @param floatWeights true to store weights as floats, halving their
+     *                     size at the cost of precision
+     * @throws IOException if there was a problem writing the file
+     */
+    public static void write(CSRGraph<?> snapshot, String filename, boolean floatWeights)
+            throws IOException {
+        int nodeCount = snapshot.getNodeCount();
+        int edgeCount = snapshot.getEdgeCount();
+        byte[][] names = new byte[nodeCount][];
+        int[] nameStarts = new int[nodeCount + 1];
+        for (int id = 0; id < nodeCount; id++) {
+            names[id] = snapshot.dataOf(id).toString().getBytes(StandardCharsets.UTF_8);
+            nameStarts[id + 1] = Math.addExact(nameStarts[id], names[id].length);
+        }
+
+        // index every name by its hash, with at most half of the slots used
+        int hashSlots = Math.max(2, Integer.highestOneBit(Math.max(1, nodeCount * 2 - 1)) << 1);
+        int[] table = new int[hashSlots];
+        for (int id = 0; id < nodeCount; id++) {
+            int slot = hash(names[id], 0, names[id].length) & (hashSlots - 1);
+            while (table[slot] != 0)
+                slot = (slot + 1) & (hashSlots - 1);
+            table[slot] = id + 1;
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_BYTES);
+            CRC32C crc = new CRC32C();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            for (int start : nameStarts)
+                out.writeInt(start);
+            pad(out);
+            for (int slot : table)
+                out.writeInt(slot);
+            pad(out);
+            for (int id = 0; id <= nodeCount; id++)
+                out.writeInt(snapshot.getEdgeStart(id));
+            pad(out);
+            for (int e = 0; e < edgeCount; e++)
+                out.writeInt(snapshot.getEdgeTarget(e));
+            pad(out);
+            for (int e = 0; e < edgeCount; e++) {
+                if (floatWeights)
+                    out.writeFloat((float) snapshot.getEdgeWeight(e));
+                else
+                    out.writeDouble(snapshot.getEdgeWeight(e));
+            }
+            pad(out);
+            for (byte[] name : names)
+                out.write(name);
+            out.flush();
+
+            // the header is written last, once the checksum is known
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(floatWeights ? FLOAT_WEIGHTS : 0)
+                    .putInt(nodeCount).putInt(edgeCount).putInt(hashSlots)
+                    .putLong(nameStarts[nodeCount]).putLong(crc.getValue());
+            header.clear();
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+        }
+    }
+
+    // pads the body out to a multiple of 8 bytes, so that the next section
+    // is aligned
+    private static void pad(DataOutputStream out) throws IOException {
+        while ((HEADER_BYTES + out.size()) % 8 != 0)
+            out.writeByte(0);
+    }
+
+    // returns the 8-byte aligned position after a section of length bytes
+    protected static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Returns the FNV-1a hash of a run of bytes, which indexes names in the
+     * file's hash table.
+     */
+    protected static int hash(byte[] bytes, int start, int end) {
+        int h = 0x811c9dc5;
+        for (int i = start; i < end; i++)
+            h = (h ^ (bytes[i] & 0xff)) * 0x01000193;
+        return h;
+    }
+
+    /**
+     * Converts a DOT file into this format.
+     *
+     * Usage: java GraphFile input.dot output.spg [float]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java GraphFile input.dot output.spg [float]");
+            return;
+        }
+        CSRGraph<String> snapshot = ParallelGraphLoader.load(args[0],
+                Runtime.getRuntime().availableProcessors());
+        write(snapshot, args[1], args.length > 2 && args[2].equals("float"));
+        System.out.println("Wrote " + snapshot.getNodeCount() + " nodes and "
+                + snapshot.getEdgeCount() + " edges to " + args[1]);
+    }
+
+}
@@ -0,0 +1,398 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic graphs for benchmarks and scaling tests. Each family
+ * reports its nodes and edges to a DotReader.Handler, in the same order as
+ * DotReader would report them from a file: every node is reported before
+ * the first edge that uses it, with ids counting up from 0. The handler
+ * decides whether the graph is built (into), written to a DOT file
+ * (DotWriter) or just counted. No family holds its edges in memory, so a
+ * DotWriter can stream graphs of hundreds of millions of edges to disk:
+ * apart from the names kept by the DotWriter, grid and random graphs need
+ * no memory at all, scale-free graphs need a few bytes per node, random
+ * geometric graphs need the points of two rows of cells, and tiled graphs
+ * need one copy of the graph being tiled.
+ *
+ * Weights are walking times in seconds, like those in campus.dot, and every
+ * family is reproducible from its seed.
+ *
+ * Usage: java GraphGenerator family edgeCount output.dot [seed]
+ * where family is grid, random, scaleFree, geometric or campus.
+ */
+public class GraphGenerator {
+
+    // the graph tiled by the campus family
+    protected static final String CAMPUS_FILE = "campus.dot";
+    // walking speed in meters per second, for random geometric graphs
+    protected static final double WALKING_SPEED = 1.4;
+    // the mean distance in meters between neighboring geometric points
+    protected static final double POINT_SPACING = 50;
+    // the number of nodes joining each tile to each of its neighbors
+    protected static final int TILE_LINKS = 4;
+    // the time in seconds to walk from a tile to a neighboring tile
+    protected static final double TILE_DISTANCE = 600;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java GraphGenerator family edgeCount output.dot [seed]");
+            System.out.println("where family is grid, random, scaleFree, geometric or campus");
+            return;
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        long time = System.nanoTime();
+        try (DotWriter writer = new DotWriter(args[2], args[0])) {
+            generate(args[0], Long.parseLong(args[1]), seed, writer);
+            time = System.nanoTime() - time;
+            System.out.printf("Wrote %d nodes and %d edges to %s in %.1f s%n",
+                    writer.getNodeCount(), writer.getEdgeCount(), args[2], time / 1e9);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Generates a graph of one of the families below, sized to have about
+     * edgeCount edges, with an average of 4 to 6 edges leaving each node
+     * (or the degrees of campus.dot, for the campus family).
+     *
+     * @param family    grid, random, scaleFree, geometric or campus
+     * @param edgeCount the number of edges to aim for
+     * @param seed      the seed of the random choices
+     * @param out       the handler to report nodes and edges to
+     * @throws IOException              if campus.dot could not be read
+     * @throws IllegalArgumentException if the family is unknown
+     */
+    public static void generate(String family, long edgeCount, long seed, DotReader.Handler out)
+            throws IOException {
+        switch (family) {
+            case "grid":
+                // each intersection has about 4 edges leaving it
+                int side = (int) Math.max(2, Math.sqrt(edgeCount / 4.0));
+                grid(side, side, seed, out);
+                break;
+            case "random":
+                random((int) Math.max(2, edgeCount / 5), edgeCount, seed, out);
+                break;
+            case "scaleFree":
+                // each node adds 3 edges in each direction
+                scaleFree((int) Math.max(4, edgeCount / 6), 3, seed, out);
+                break;
+            case "geometric":
+                geometric((int) Math.max(2, edgeCount / 6), 6, seed, out);
+                break;
+            case "campus":
+                Tile campus = readTile(CAMPUS_FILE);
+                tile(campus, (int) Math.max(1, edgeCount / campus.weights.size()), out);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown graph family " + family);
+        }
+    }
+
+    /**
+     * Generates a road-like grid of width * height intersections, each
+     * joined to its neighbors in all four directions. Each edge takes about
+     * a minute to walk, jittered by up to 25% in either direction, so that
+     * shortest paths are unique and differ between directions.
+     *
+     * @param width  the number of columns of intersections
+     * @param height the number of rows of intersections
+     * @param seed   the seed of the random weights
+     * @param out    the handler to report nodes and edges to
+     */
+    public static void grid(int width, int height, long seed, DotReader.Handler out) {
+        Random random = new Random(seed);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                int id = row * width + col;
+                out.node(id, "r" + row + "c" + col);
+                // join this intersection to the ones before it, which have
+                // already been reported
+                if (col > 0) {
+                    out.edge(id - 1, id, jitter(random, 60));
+                    out.edge(id, id - 1, jitter(random, 60));
+                }
+                if (row > 0) {
+                    out.edge(id - width, id, jitter(random, 60));
+                    out.edge(id, id - width, jitter(random, 60));
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a uniformly random directed graph: every edge joins two
+     * nodes chosen independently at random, and takes between 10 and 600
+     * seconds to walk. A pair chosen twice keeps its last weight, so the
+     * graph may end up with slightly fewer distinct edges.
+     *
+     * @param nodeCount the number of nodes
+     * @param edgeCount the number of edges to report
+     * @param seed      the seed of the random choices
+     * @param out       the handler to report nodes and edges to
+     */
+    public static void random(int nodeCount, long edgeCount, long seed, DotReader.Handler out) {
+        Random random = new Random(seed);
+        for (int id = 0; id < nodeCount; id++)
+            out.node(id, "n" + id);
+        for (long e = 0; e < edgeCount; e++)
+            out.edge(random.nextInt(nodeCount), random.nextInt(nodeCount), 10 + random.nextInt(591));
+    }
+
+    /**
+     * Generates a Barabasi-Albert scale-free graph: each new node is joined,
+     * in both directions, to edgesPerNode earlier nodes chosen with
+     * probability proportional to their degree, so that a few hubs end up
+     * with very many edges. Each edge takes between 10 and 600 seconds to
+     * walk.
+     *
+     * @param nodeCount    the number of nodes
+     * @param edgesPerNode the number of earlier nodes each node is joined to
+     * @param seed         the seed of the random choices
+     * @param out          the handler to report nodes and edges to
+     */
+    public static void scaleFree(int nodeCount, int edgesPerNode, long seed, DotReader.Handler out) {
+        Random random = new Random(seed);
+        // a Fenwick tree of degrees, so that a node can be picked in
+        // proportion to its degree in O(log n) time and O(n) space
+        long[] degrees = new long[nodeCount + 1];
+        long totalDegree = 0;
+        int[] chosen = new int[edgesPerNode];
+        for (int id = 0; id < nodeCount; id++) {
+            out.node(id, "n" + id);
+            int count = 0;
+            while (count < Math.min(edgesPerNode, id)) {
+                int target = totalDegree == 0 ? 0 : pick(degrees, random.nextLong(totalDegree));
+                // try again when target was already chosen, so each node is
+                // joined to distinct targets
+                boolean repeated = false;
+                for (int i = 0; i < count; i++)
+                    repeated |= chosen[i] == target;
+                if (!repeated)
+                    chosen[count++] = target;
+            }
+            for (int i = 0; i < count; i++) {
+                double weight = 10 + random.nextInt(591);
+                out.edge(id, chosen[i], weight);
+                out.edge(chosen[i], id, weight);
+                addDegree(degrees, id);
+                addDegree(degrees, chosen[i]);
+                totalDegree += 2;
+            }
+        }
+    }
+
+    // adds 1 to the degree of node id in the Fenwick tree
+    private static void addDegree(long[] tree, int id) {
+        for (int i = id + 1; i < tree.length; i += i & -i)
+            tree[i]++;
+    }
+
+    // returns the node whose range of the cumulative degrees contains r
+    private static int pick(long[] tree, long r) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            if (position + step < tree.length && tree[position + step] <= r) {
+                position += step;
+                r -= tree[position];
+            }
+        }
+        return position; // the 0-based id of tree index position + 1
+    }
+
+    /**
+     * Generates a random geometric graph: about nodeCount points scattered
+     * uniformly over a square, POINT_SPACING meters apart on average, with
+     * every two points within walking range of each other joined in both
+     * directions. The range is chosen to give each point about
+     * averageDegree neighbors, and each edge takes the time to walk its
+     * length at WALKING_SPEED. Unlike a grid, these graphs have the uneven
+     * density and the dead ends of real paths.
+     *
+     * The square is divided into cells as wide as the range, and points are
+     * generated and joined one cell at a time, in rows, so that only the
+     * points of the current and the previous row are kept in memory.
+     *
+     * @param nodeCount     the number of points to aim for
+     * @param averageDegree the number of neighbors each point should have,
+     *                      on average
+     * @param seed          the seed of the random points
+     * @param out           the handler to report nodes and edges to
+     */
+    public static void geometric(int nodeCount, double averageDegree, long seed,
+            DotReader.Handler out) {
+        Random random = new Random(seed);
+        double side = POINT_SPACING * Math.sqrt(nodeCount);
+        double range = POINT_SPACING * Math.sqrt(averageDegree / Math.PI);
+        int cells = (int) Math.max(1, side / range);
+        double cellSize = side / cells;
+        double pointsPerCell = (double) nodeCount / cells / cells;
+
+        Cell[] previous = new Cell[cells];
+        Cell[] current = new Cell[cells];
+        int nextId = 0;
+        for (int cy = 0; cy < cells; cy++) {
+            for (int cx = 0; cx < cells; cx++) {
+                Cell cell = new Cell(nextId, poisson(random, pointsPerCell));
+                for (int i = 0; i < cell.xs.length; i++) {
+                    cell.xs[i] = (cx + random.nextDouble()) * cellSize;
+                    cell.ys[i] = (cy + random.nextDouble()) * cellSize;
+                    out.node(nextId++, "p" + (cell.firstId + i));
+                }
+                current[cx] = cell;
+                // join to the points in this cell and in the neighboring
+                // cells that have already been reported
+                join(cell, cell, range, out);
+                if (cx > 0)
+                    join(cell, current[cx - 1], range, out);
+                if (cy > 0) {
+                    for (int nx = Math.max(0, cx - 1); nx <= Math.min(cells - 1, cx + 1); nx++)
+                        join(cell, previous[nx], range, out);
+                }
+            }
+            Cell[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+    }
+
+    // the points generated in one cell of a random geometric graph
+    private static class Cell {
+        final int firstId;
+        final double[] xs;
+        final double[] ys;
+
+        Cell(int firstId, int count) {
+            this.firstId = firstId;
+            this.xs = new double[count];
+            this.ys = new double[count];
+        }
+    }
+
+    // joins every point of cell to the points of other within range, taking
+    // each pair only once when cell and other are the same
+    private static void join(Cell cell, Cell other, double range, DotReader.Handler out) {
+        for (int i = 0; i < cell.xs.length; i++) {
+            int end = cell == other ? i : other.xs.length;
+            for (int j = 0; j < end; j++) {
+                double distance = Math.hypot(cell.xs[i] - other.xs[j], cell.ys[i] - other.ys[j]);
+                if (distance <= range) {
+                    double weight = Math.round(distance / WALKING_SPEED * 10) / 10.0;
+                    out.edge(cell.firstId + i, other.firstId + j, weight);
+                    out.edge(other.firstId + j, cell.firstId + i, weight);
+                }
+            }
+        }
+    }
+
+    // returns a random count with a Poisson distribution of the given mean
+    private static int poisson(Random random, double mean) {
+        if (mean > 30) // close enough to normal, and exp(-mean) would underflow
+            return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        double limit = Math.exp(-mean);
+        int count = 0;
+        for (double product = random.nextDouble(); product > limit; product *= random.nextDouble())
+            count++;
+        return count;
+    }
+
+    /**
+     * Generates copies of a graph read from a DOT file, laid out as tiles of
+     * a square, as if a campus were repeated across a city. Copy 0 keeps the
+     * original names, and copy k appends " #k" to them. Each tile is joined
+     * to the tiles to its left and above it through TILE_LINKS of its nodes,
+     * in both directions, each link taking TILE_DISTANCE seconds to walk, so
+     * the whole graph stays connected when the original is.
+     *
+     * @param filename the path of the DOT file to tile
+     * @param copies   the number of copies
+     * @param out      the handler to report nodes and edges to
+     * @throws IOException if there was a problem reading the file
+     */
+    public static void tiled(String filename, int copies, DotReader.Handler out) throws IOException {
+        tile(readTile(filename), copies, out);
+    }
+
+    // the nodes and edges of a graph to tile
+    private static class Tile {
+        final List<String> names = new ArrayList<>();
+        final List<Integer> froms = new ArrayList<>();
+        final List<Integer> tos = new ArrayList<>();
+        final List<Double> weights = new ArrayList<>();
+    }
+
+    private static Tile readTile(String filename) throws IOException {
+        Tile tile = new Tile();
+        try (DotReader reader = new DotReader(filename)) {
+            reader.read(new DotReader.Handler() {
+                public void node(int id, String name) {
+                    tile.names.add(name);
+                }
+
+                public void edge(int from, int to, double weight) {
+                    tile.froms.add(from);
+                    tile.tos.add(to);
+                    tile.weights.add(weight);
+                }
+            });
+        }
+        return tile;
+    }
+
+    private static void tile(Tile tile, int copies, DotReader.Handler out) {
+        int n = tile.names.size();
+        int columns = (int) Math.ceil(Math.sqrt(copies));
+        for (int copy = 0; copy < copies; copy++) {
+            int first = copy * n;
+            for (int i = 0; i < n; i++)
+                out.node(first + i, copy == 0 ? tile.names.get(i) : tile.names.get(i) + " #" + copy);
+            for (int e = 0; e < tile.weights.size(); e++)
+                out.edge(first + tile.froms.get(e), first + tile.tos.get(e), tile.weights.get(e));
+            if (copy % columns > 0)
+                link(first, first - n, n, out);
+            if (copy >= columns)
+                link(first, first - columns * n, n, out);
+        }
+    }
+
+    // joins the tiles starting at ids first and other through evenly
+    // spaced nodes
+    private static void link(int first, int other, int n, DotReader.Handler out) {
+        for (int k = 0; k < Math.min(TILE_LINKS, n); k++) {
+            int i = k * n / Math.min(TILE_LINKS, n);
+            out.edge(first + i, other + i, TILE_DISTANCE);
+            out.edge(other + i, first + i, TILE_DISTANCE);
+        }
+    }
+
+    // returns base varied by up to 25% either way, rounded to a tenth
+    private static double jitter(Random random, double base) {
+        return Math.round(base * (0.75 + 0.5 * random.nextDouble()) * 10) / 10.0;
+    }
+
+    /**
+     * Returns a handler that inserts every node and edge it receives into a
+     * graph.
+     *
+     * @param graph the graph to fill
+     * @return the handler
+     */
+    public static DotReader.Handler into(GraphADT<String, Double> graph) {
+        List<String> names = new ArrayList<>();
+        return new DotReader.Handler() {
+            public void node(int id, String name) {
+                names.add(name);
+                graph.insertNode(name);
+            }
+
+            public void edge(int from, int to, double weight) {
+                graph.insertEdge(names.get(from), names.get(to), weight);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,21 @@
+/**
+ * A Heuristic estimates the cost of the cheapest path between two nodes of a
+ * graph, to guide an A* search towards its destination. Estimates must never
+ * be larger than the true cost of the cheapest path (they must be
+ * admissible), or else A* may return a path that is not the shortest one.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public interface Heuristic<NodeType> {
+
+    /**
+     * Returns a lower bound on the cost of any path from node to target.
+     *
+     * @param node   the data item in the node to estimate from
+     * @param target the data item in the destination node
+     * @return a non-negative lower bound on the cost from node to target, or
+     *         Double.POSITIVE_INFINITY when target cannot be reached from node
+     */
+    public double estimate(NodeType node, NodeType target);
+
+}
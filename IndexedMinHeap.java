@@ -0,0 +1,240 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This IndexedMinHeap class is a d-ary min-heap of int ids, each prioritized
+ * by a double key. Every id appears in the heap at most once, and the heap
+ * tracks the position of each id so that its key can be lowered in place
+ * (decrease-key) instead of inserting a duplicate entry. Ids must lie between
+ * 0 and the heap's capacity-1.
+ *
+ * The heap is stored in primitive arrays and does not allocate while
+ * inserting, decreasing or polling, so a single instance can be reused across
+ * many shortest path searches.
+ */
+public class IndexedMinHeap {
+
+    // heap[i] is the id stored at position i, and keys[i] is that id's key
+    protected int[] heap;
+    protected double[] keys;
+    // position[id] is the index of id within heap, or -1 when id is absent
+    protected int[] position;
+    protected int size = 0;
+
+    // each position i has children at (i << shift) + 1 through (i+1) << shift
+    protected final int shift;
+
+    /**
+     * Constructor for an IndexedMinHeap.
+     *
+     * @param capacity the number of distinct ids this heap can hold
+     * @param arity    the number of children of each heap position, which
+     *                 must be a power of two (2 for a binary heap, 4 for a
+     *                 4-ary heap)
+     * @throws IllegalArgumentException if arity is not a power of two >= 2
+     */
+    public IndexedMinHeap(int capacity, int arity) {
+        if (arity < 2 || Integer.bitCount(arity) != 1)
+            throw new IllegalArgumentException("Arity must be a power of two, not " + arity);
+        this.shift = Integer.numberOfTrailingZeros(arity);
+        this.heap = new int[capacity];
+        this.keys = new double[capacity];
+        this.position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Constructor for a binary IndexedMinHeap.
+     *
+     * @param capacity the number of distinct ids this heap can hold
+     */
+    public IndexedMinHeap(int capacity) {
+        this(capacity, 2);
+    }
+
+    /**
+     * Grows this heap so that it can hold ids up to capacity-1. The current
+     * contents of the heap are kept.
+     *
+     * @param capacity the number of distinct ids this heap must be able to hold
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= position.length)
+            return;
+        int oldCapacity = position.length;
+        int newCapacity = Math.max(capacity, oldCapacity * 2);
+        heap = Arrays.copyOf(heap, newCapacity);
+        keys = Arrays.copyOf(keys, newCapacity);
+        position = Arrays.copyOf(position, newCapacity);
+        Arrays.fill(position, oldCapacity, newCapacity, -1);
+    }
+
+    /**
+     * Return the number of ids stored in this heap.
+     *
+     * @return the number of ids stored in this heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether this heap is empty.
+     *
+     * @return true if this heap holds no ids, or false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check whether an id is currently stored in this heap.
+     *
+     * @param id the id to check for
+     * @return true if id is in this heap, or false otherwise
+     */
+    public boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    /**
+     * Return the key of an id that is stored in this heap.
+     *
+     * @param id the id to look up
+     * @return the current key of that id
+     * @throws NoSuchElementException if id is not stored in this heap
+     */
+    public double keyOf(int id) {
+        if (position[id] < 0)
+            throw new NoSuchElementException("Id " + id + " is not in the heap");
+        return keys[position[id]];
+    }
+
+    /**
+     * Inserts id with the provided key, or lowers the key of id when it is
+     * already stored with a larger key. Nothing changes when id is already
+     * stored with a key that is less than or equal to the provided one.
+     *
+     * @param id  the id to insert or update
+     * @param key the new key for that id
+     * @return true if id was inserted or its key was lowered, or false
+     *         otherwise
+     */
+    public boolean insertOrDecrease(int id, double key) {
+        int i = position[id];
+        if (i < 0)
+            i = size++; // new ids start at the bottom of the heap
+        else if (key >= keys[i])
+            return false;
+        siftUp(i, id, key);
+        return true;
+    }
+
+    /**
+     * Inserts id with the provided key, or changes the key of id to the
+     * provided one when it is already stored, whether that raises or lowers
+     * its key.
+     *
+     * @param id  the id to insert or update
+     * @param key the new key for that id
+     */
+    public void update(int id, double key) {
+        int i = position[id];
+        if (i < 0)
+            siftUp(size++, id, key);
+        else if (key < keys[i])
+            siftUp(i, id, key);
+        else
+            siftDown(i, id, key);
+    }
+
+    /**
+     * Return the smallest key in this heap without removing it.
+     *
+     * @return the smallest key in this heap
+     * @throws NoSuchElementException if this heap is empty
+     */
+    public double peekKey() {
+        if (size == 0)
+            throw new NoSuchElementException("The heap is empty");
+        return keys[0];
+    }
+
+    /**
+     * Return the id with the smallest key in this heap without removing it.
+     *
+     * @return the id with the smallest key
+     * @throws NoSuchElementException if this heap is empty
+     */
+    public int peek() {
+        if (size == 0)
+            throw new NoSuchElementException("The heap is empty");
+        return heap[0];
+    }
+
+    /**
+     * Removes and returns the id with the smallest key in this heap.
+     *
+     * @return the id with the smallest key
+     * @throws NoSuchElementException if this heap is empty
+     */
+    public int poll() {
+        if (size == 0)
+            throw new NoSuchElementException("The heap is empty");
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if (size > 0)
+            siftDown(0, heap[size], keys[size]);
+        return min;
+    }
+
+    /**
+     * Removes every id from this heap. This takes time proportional to the
+     * number of ids currently stored, rather than to the heap's capacity.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            position[heap[i]] = -1;
+        size = 0;
+    }
+
+    // moves id towards the root from position i until its parent's key is smaller
+    private void siftUp(int i, int id, double key) {
+        while (i > 0) {
+            int parent = (i - 1) >>> shift;
+            if (keys[parent] <= key)
+                break;
+            place(i, heap[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, id, key);
+    }
+
+    // moves id towards the leaves from position i until no child's key is smaller
+    private void siftDown(int i, int id, double key) {
+        while (true) {
+            int first = (i << shift) + 1;
+            if (first >= size)
+                break;
+            // find the child with the smallest key
+            int last = Math.min(first + (1 << shift), size);
+            int best = first;
+            for (int child = first + 1; child < last; child++)
+                if (keys[child] < keys[best])
+                    best = child;
+            if (keys[best] >= key)
+                break;
+            place(i, heap[best], keys[best]);
+            i = best;
+        }
+        place(i, id, key);
+    }
+
+    private void place(int i, int id, double key) {
+        heap[i] = id;
+        keys[i] = key;
+        position[id] = i;
+    }
+
+}
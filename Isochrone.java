@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * An Isochrone holds every node that can be reached from a start node within
+ * one or more budgets (such as 5, 10 and 15 minutes' walk), with the cost of
+ * the shortest path to each. Nodes are held in the order a single search
+ * settled them, which is in increasing order of cost, so the nodes within
+ * each budget are a prefix of the nodes within the next larger one, and a
+ * search for several budgets only has to run as far as the largest.
+ * Isochrones are immutable.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class Isochrone<NodeType> {
+
+    protected final NodeType start;
+    protected final double[] budgets;
+    protected final List<NodeType> nodes;
+    protected final double[] costs;
+    // ends[i] is the number of nodes within budgets[i]
+    protected final int[] ends;
+
+    /**
+     * Constructor for an Isochrone. The list and arrays are not copied, and
+     * must not be changed afterwards.
+     *
+     * @param start   the data in the start node
+     * @param budgets the budgets, in increasing order
+     * @param nodes   the data in every node within the largest budget, in
+     *                order of cost
+     * @param costs   the cost of the shortest path to each of those nodes,
+     *                in the same order
+     * @throws IllegalArgumentException if there is not one cost per node, or
+     *                                  the costs are not in increasing order
+     */
+    public Isochrone(NodeType start, double[] budgets, List<NodeType> nodes, double[] costs) {
+        if (costs.length != nodes.size())
+            throw new IllegalArgumentException("An isochrone needs one cost per node");
+        for (int i = 1; i < costs.length; i++) {
+            if (costs[i] < costs[i - 1])
+                throw new IllegalArgumentException("An isochrone's nodes must be in order of cost");
+        }
+        this.start = start;
+        this.budgets = budgets;
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.costs = costs;
+        this.ends = new int[budgets.length];
+        int end = 0;
+        for (int i = 0; i < budgets.length; i++) {
+            while (end < costs.length && costs[end] <= budgets[i])
+                end++;
+            ends[i] = end;
+        }
+    }
+
+    /**
+     * Builds an Isochrone from a search that recorded its paths in a
+     * SearchScratch with PathOrder, so that the cost of each node is the
+     * cost of the path that shortestPathCost finds. A node that the search
+     * re-opened on a tie may end up costing a rounding error more than nodes
+     * settled after it, so the nodes are put back in order of cost.
+     *
+     * @param start   the data in the start node
+     * @param budgets the budgets, in increasing order
+     * @param settled the ids of the nodes the search settled, in the order
+     *                it first settled them
+     * @param count   the number of ids in settled
+     * @param search  the state of the search, holding the cost of each node
+     * @param dataOf  returns the data in the node with an id
+     * @return the nodes within the largest budget, with the cost of each
+     */
+    public static <NodeType> Isochrone<NodeType> fromSearch(NodeType start, double[] budgets,
+            int[] settled, int count, SearchScratch search, IntFunction<NodeType> dataOf) {
+        double limit = budgets[budgets.length - 1];
+        int[] ids = new int[count];
+        double[] costs = new double[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            double cost = search.getDist(settled[i]);
+            if (cost > limit)
+                continue;
+            // the nodes are almost in order, so this only moves a few
+            int position = found++;
+            while (position > 0 && costs[position - 1] > cost) {
+                ids[position] = ids[position - 1];
+                costs[position] = costs[position - 1];
+                position--;
+            }
+            ids[position] = settled[i];
+            costs[position] = cost;
+        }
+        List<NodeType> nodes = new ArrayList<>(found);
+        for (int i = 0; i < found; i++)
+            nodes.add(dataOf.apply(ids[i]));
+        return new Isochrone<>(start, budgets, nodes, Arrays.copyOf(costs, found));
+    }
+
+    /**
+     * Returns a sorted copy of the provided budgets, checking that they can
+     * be searched for.
+     *
+     * @param budgets the budgets to check
+     * @return the budgets, in increasing order
+     * @throws IllegalArgumentException if there are no budgets, or one is
+     *                                  negative or NaN
+     */
+    public static double[] sortBudgets(double... budgets) {
+        if (budgets.length == 0)
+            throw new IllegalArgumentException("An isochrone needs at least one budget");
+        double[] sorted = budgets.clone();
+        Arrays.sort(sorted);
+        // NaN sorts last, so only the first and last can be out of range
+        if (sorted[0] < 0 || Double.isNaN(sorted[sorted.length - 1]))
+            throw new IllegalArgumentException("Budgets must be non-negative numbers");
+        return sorted;
+    }
+
+    /**
+     * Return the data in the node the isochrone was searched from.
+     *
+     * @return the data in the start node
+     */
+    public NodeType getStart() {
+        return start;
+    }
+
+    /**
+     * Return the number of budgets this isochrone was searched for.
+     *
+     * @return the number of budgets
+     */
+    public int getBudgetCount() {
+        return budgets.length;
+    }
+
+    /**
+     * Return one of the budgets, in increasing order.
+     *
+     * @param index the position of the budget, below getBudgetCount()
+     * @return the budget at that position
+     */
+    public double getBudget(int index) {
+        return budgets[index];
+    }
+
+    /**
+     * Return every node within the largest budget, including the start
+     * node, in increasing order of cost.
+     *
+     * @return unmodifiable list of node data
+     */
+    public List<NodeType> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Return the nodes within one of the budgets, in increasing order of
+     * cost.
+     *
+     * @param index the position of the budget, below getBudgetCount()
+     * @return unmodifiable list of the data in each node whose cost is at
+     *         most that budget
+     */
+    public List<NodeType> getNodesWithin(int index) {
+        return nodes.subList(0, ends[index]);
+    }
+
+    /**
+     * Return the nodes that are within one budget but not within the next
+     * smaller one: the ring that the budget adds to the isochrone.
+     *
+     * @param index the position of the budget, below getBudgetCount()
+     * @return unmodifiable list of the data in each node whose cost is more
+     *         than the previous budget and at most this one
+     */
+    public List<NodeType> getBand(int index) {
+        return nodes.subList(index == 0 ? 0 : ends[index - 1], ends[index]);
+    }
+
+    /**
+     * Return the nodes within one of the budgets with the cost of each.
+     *
+     * @param index the position of the budget, below getBudgetCount()
+     * @return a new map from the data in each node within that budget to
+     *         its cost, iterating in increasing order of cost
+     */
+    public Map<NodeType, Double> getCostsWithin(int index) {
+        Map<NodeType, Double> within = new LinkedHashMap<>();
+        for (int i = 0; i < ends[index]; i++)
+            within.put(nodes.get(i), costs[i]);
+        return within;
+    }
+
+    /**
+     * Return the cost of the shortest path to the node at a position.
+     *
+     * @param position the position of the node within getNodes()
+     * @return the cost of the path to that node
+     */
+    public double getCostAt(int position) {
+        return costs[position];
+    }
+
+    /**
+     * Return the cost of the shortest path to a node within the largest
+     * budget. This takes time proportional to the number of nodes.
+     *
+     * @param target the data in the node
+     * @return the cost of the path to target
+     * @throws NoSuchElementException if target is not within the largest
+     *                                budget
+     */
+    public double getCost(NodeType target) {
+        int position = nodes.indexOf(target);
+        if (position < 0)
+            throw new NoSuchElementException(target + " is not within " + budgets[budgets.length - 1]);
+        return costs[position];
+    }
+
+    /**
+     * Return the number of nodes within the largest budget.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("isochrone from " + start + ":");
+        for (int i = 0; i < budgets.length; i++)
+            text.append(' ').append(ends[i]).append(" within ").append(budgets[i]);
+        return text.toString();
+    }
+
+}
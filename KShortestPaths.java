@@ -0,0 +1,307 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Finds the k shortest loopless paths between two nodes of a CSRGraph
+ * snapshot with Yen's algorithm, for offering alternatives to the shortest
+ * route.
+ *
+ * Yen's algorithm finds each path after the first by deviating from a path
+ * already found: for every node along it (the spur node), it searches for
+ * the shortest path from the spur node to the end that avoids the nodes
+ * before the spur node and the edges that the paths found so far take out
+ * of it. Those nodes and edges are masked with a BitSet of node ids and a
+ * BitSet of edge positions that only this query sees, so the snapshot is
+ * never changed and may be searched by other threads at the same time.
+ *
+ * Every spur search is guided by a single reverse shortest path tree,
+ * grown once per query from the end: its cost from each node to the end is
+ * an A* estimate that is never too high, since masking only removes
+ * paths. A spur search stops as soon as it settles a node whose path in
+ * the tree avoids every masked node, because that path is then the
+ * cheapest way to finish, so most spur searches settle only a handful of
+ * nodes. Spurs before the node where a path deviated from the one it was
+ * found from only find paths already found, and are skipped (Lawler's
+ * refinement).
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class KShortestPaths<NodeType> {
+
+    protected final CSRGraph<NodeType> graph;
+
+    /**
+     * Constructor for a search for paths within a snapshot.
+     *
+     * @param graph the snapshot to find paths within
+     */
+    public KShortestPaths(CSRGraph<NodeType> graph) {
+        this.graph = graph;
+    }
+
+    // a loopless path to the end of a query, as the ids of its nodes
+    protected static class Path implements Comparable<Path> {
+        final int[] nodes;
+        final double[] times;
+        final double cost;
+        // the position of the spur node this path was found from
+        final int deviation;
+
+        Path(int[] nodes, double[] times, int deviation) {
+            this.nodes = nodes;
+            this.times = times;
+            this.deviation = deviation;
+            double cost = 0;
+            for (double time : times)
+                cost += time;
+            this.cost = cost;
+        }
+
+        // cheaper paths first, and of paths that cost the same, shorter ones
+        @Override
+        public int compareTo(Path other) {
+            int order = Double.compare(cost, other.cost);
+            return order != 0 ? order : Integer.compare(nodes.length, other.nodes.length);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Path && Arrays.equals(nodes, ((Path) other).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes);
+        }
+    }
+
+    /**
+     * Returns the k shortest paths from the node containing the start data
+     * to the node containing the end data that visit no node more than
+     * once, in increasing order of cost. Fewer than k paths are returned
+     * when there are no more.
+     *
+     * @param start the data item in the starting node for the paths
+     * @param end   the data item in the destination node for the paths
+     * @param k     the largest number of paths to return
+     * @return the route along each path, the shortest first
+     * @throws NoSuchElementException   when start or end is not in the
+     *                                  snapshot, or no path from start to
+     *                                  end is found
+     * @throws IllegalArgumentException if k is less than 1
+     */
+    public List<RouteResult<NodeType>> shortestPaths(NodeType start, NodeType end, int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("At least one path must be asked for");
+        Query query = new Query(graph.idOf(start), graph.idOf(end));
+        List<RouteResult<NodeType>> routes = new ArrayList<>();
+        for (Path path : query.run(k)) {
+            List<NodeType> nodes = new ArrayList<>(path.nodes.length);
+            for (int id : path.nodes)
+                nodes.add(graph.dataOf(id));
+            List<Double> times = new ArrayList<>(path.times.length);
+            for (double time : path.times)
+                times.add(time);
+            routes.add(new RouteResult<>(nodes, times, path.cost));
+        }
+        return routes;
+    }
+
+    // the state of one query, shared by all of its spur searches
+    private class Query {
+        final int source;
+        final int target;
+
+        // the reverse tree: the cost of the shortest path from each node to
+        // the target, and the next node and edge weight along it
+        final double[] toTarget;
+        final int[] next;
+        final double[] nextWeight;
+
+        // the nodes and edges the current spur search must avoid
+        final BitSet bannedNodes;
+        final BitSet bannedEdges;
+
+        // whether the tree path from each node avoids them, valid for nodes
+        // stamped with the current spur search
+        final int[] cleanStamp;
+        final boolean[] clean;
+        int stamp = 0;
+
+        Query(int source, int target) {
+            this.source = source;
+            this.target = target;
+            int n = graph.getNodeCount();
+            toTarget = new double[n];
+            next = new int[n];
+            nextWeight = new double[n];
+            bannedNodes = new BitSet(n);
+            bannedEdges = new BitSet(graph.getEdgeCount());
+            cleanStamp = new int[n];
+            clean = new boolean[n];
+            growReverseTree();
+        }
+
+        // runs Dijkstra's algorithm backwards from the target to exhaustion
+        private void growReverseTree() {
+            Arrays.fill(toTarget, Double.POSITIVE_INFINITY);
+            Arrays.fill(next, -1);
+            SearchScratch search = CSRGraph.SCRATCH.get();
+            search.reset(toTarget.length);
+            IndexedMinHeap toVisit = search.heap;
+            toTarget[target] = 0;
+            toVisit.insertOrDecrease(target, 0);
+            while (!toVisit.isEmpty()) {
+                int u = toVisit.poll();
+                search.settle(u);
+                for (int e = graph.reverseOffsets[u]; e < graph.reverseOffsets[u + 1]; e++) {
+                    int v = graph.reverseTargets[e];
+                    double cost = toTarget[u] + graph.reverseWeights[e];
+                    if (cost < toTarget[v] && !search.isSettled(v)) {
+                        toTarget[v] = cost;
+                        next[v] = u;
+                        nextWeight[v] = graph.reverseWeights[e];
+                        toVisit.insertOrDecrease(v, cost);
+                    }
+                }
+            }
+        }
+
+        List<Path> run(int k) {
+            if (toTarget[source] == Double.POSITIVE_INFINITY)
+                throw new NoSuchElementException("No path from start to end");
+            List<Path> accepted = new ArrayList<>();
+            PriorityQueue<Path> candidates = new PriorityQueue<>();
+            Set<Path> seen = new HashSet<>();
+            Path shortest = join(new Path(new int[] { source }, new double[0], 0), 0, source, null);
+            candidates.add(shortest);
+            seen.add(shortest);
+
+            while (accepted.size() < k && !candidates.isEmpty()) {
+                Path path = candidates.poll();
+                accepted.add(path);
+                if (accepted.size() == k)
+                    break;
+
+                for (int i = 0; i < path.deviation; i++)
+                    bannedNodes.set(path.nodes[i]);
+                for (int i = path.deviation; i < path.nodes.length - 1; i++) {
+                    int spur = path.nodes[i];
+                    // every path found so far that shares this root has
+                    // already taken its next edge out of the spur node
+                    for (Path other : accepted) {
+                        if (other.nodes.length > i + 1
+                                && Arrays.equals(other.nodes, 0, i + 1, path.nodes, 0, i + 1))
+                            bannedEdges.set(graph.edgeIndex(spur, other.nodes[i + 1]));
+                    }
+                    Path found = spur(path, i);
+                    if (found != null && seen.add(found))
+                        candidates.add(found);
+                    bannedEdges.clear(graph.offsets[spur], graph.offsets[spur + 1]);
+                    bannedNodes.set(spur);
+                }
+                for (int i = 0; i < path.nodes.length - 1; i++)
+                    bannedNodes.clear(path.nodes[i]);
+            }
+            return accepted;
+        }
+
+        // finds the shortest path that follows path up to its node at
+        // spurIndex and then avoids the banned nodes and edges, or null
+        private Path spur(Path path, int spurIndex) {
+            int spur = path.nodes[spurIndex];
+            stamp++;
+            SearchScratch search = CSRGraph.SCRATCH.get();
+            search.reset(toTarget.length);
+            IndexedMinHeap toVisit = search.heap;
+            search.setPath(spur, 0, -1);
+            toVisit.insertOrDecrease(spur, toTarget[spur]);
+            while (!toVisit.isEmpty()) {
+                int u = toVisit.poll();
+                search.settle(u);
+                // no unexplored path can finish for less than the tree does
+                if (isClean(u, spur))
+                    return join(path, spurIndex, u, search);
+
+                double cost = search.getDist(u);
+                for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                    int v = graph.targets[e];
+                    if (bannedEdges.get(e) || bannedNodes.get(v) || toTarget[v] == Double.POSITIVE_INFINITY)
+                        continue;
+                    double newCost = cost + graph.weights[e];
+                    if (newCost < search.getDist(v) && !search.isSettled(v)) {
+                        search.setPath(v, newCost, u, graph.weights[e]);
+                        toVisit.insertOrDecrease(v, newCost + toTarget[v]);
+                    }
+                }
+            }
+            return null;
+        }
+
+        // checks whether the tree path from node to the target avoids the
+        // spur node and every banned node, remembering the answer for every
+        // node along the way until the next spur search
+        private boolean isClean(int node, int spur) {
+            int v = node;
+            boolean result;
+            while (true) {
+                if (cleanStamp[v] == stamp) {
+                    result = clean[v];
+                    break;
+                }
+                if (v == spur || bannedNodes.get(v)) {
+                    result = false;
+                    break;
+                }
+                if (v == target) {
+                    result = true;
+                    break;
+                }
+                v = next[v];
+            }
+            for (int w = node; w != v; w = next[w]) {
+                cleanStamp[w] = stamp;
+                clean[w] = result;
+            }
+            cleanStamp[v] = stamp;
+            clean[v] = result;
+            return result;
+        }
+
+        // builds the path made of root up to its node at spurIndex, then the
+        // spur search's path from there to meet, then the tree path from
+        // meet to the target
+        private Path join(Path root, int spurIndex, int meet, SearchScratch search) {
+            int spur = root.nodes[spurIndex];
+            int spurLength = 0;
+            for (int v = meet; v != spur; v = search.getParent(v))
+                spurLength++;
+            int treeLength = 0;
+            for (int v = meet; v != target; v = next[v])
+                treeLength++;
+
+            int meetIndex = spurIndex + spurLength;
+            int[] nodes = Arrays.copyOf(root.nodes, meetIndex + treeLength + 1);
+            double[] times = Arrays.copyOf(root.times, meetIndex + treeLength);
+            int position = meetIndex;
+            for (int v = meet; v != spur; v = search.getParent(v)) {
+                nodes[position] = v;
+                times[--position] = search.getParentWeight(v);
+            }
+            position = meetIndex;
+            for (int v = meet; v != target; v = next[v]) {
+                times[position] = nextWeight[v];
+                nodes[++position] = next[v];
+            }
+            nodes[meetIndex] = meet;
+            return new Path(nodes, times, spurIndex);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache that evicts its least recently used entry once it holds
+ * more than its capacity. Entries are kept in a LinkedHashMap in access
+ * order, so that every lookup and eviction takes constant time. The cache
+ * counts its hits, misses and evictions, and is safe to share between
+ * threads.
+ *
+ * @param KeyType   is the type of the keys entries are looked up by
+ * @param ValueType is the type of the cached values
+ */
+public class LRUCache<KeyType, ValueType> {
+
+    protected final int capacity;
+    protected final LinkedHashMap<KeyType, ValueType> entries;
+
+    protected long hits = 0;
+    protected long misses = 0;
+    protected long evictions = 0;
+    protected long invalidations = 0;
+
+    /**
+     * Constructor for an empty cache holding at most capacity entries.
+     *
+     * @param capacity the largest number of entries to keep
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public LRUCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<KeyType, ValueType>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<KeyType, ValueType> eldest) {
+                if (size() <= LRUCache.this.capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the value cached for a key, marking it as the most recently
+     * used entry.
+     *
+     * @param key the key to look up
+     * @return the cached value, or null when there is none
+     */
+    public synchronized ValueType get(KeyType key) {
+        ValueType value = entries.get(key);
+        if (value == null)
+            misses++;
+        else
+            hits++;
+        return value;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entry if the cache
+     * is full.
+     *
+     * @param key   the key to store the value under
+     * @param value the value to cache
+     */
+    public synchronized void put(KeyType key, ValueType value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Removes every entry. The statistics are not reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Removes every entry because the data they were computed from has
+     * changed, counting the invalidation.
+     */
+    public synchronized void invalidate() {
+        entries.clear();
+        invalidations++;
+    }
+
+    /**
+     * Return the number of entries currently cached.
+     *
+     * @return the number of entries
+     */
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Return the largest number of entries this cache keeps.
+     *
+     * @return the capacity of the cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Return the number of lookups that found a cached value.
+     *
+     * @return the number of hits so far
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Return the number of lookups that found no cached value.
+     *
+     * @return the number of misses so far
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Return the number of entries removed to make room for newer ones.
+     *
+     * @return the number of evictions so far
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Return the number of times the whole cache was invalidated.
+     *
+     * @return the number of invalidations so far
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LRUCache[size=" + entries.size() + "/" + capacity + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions
+                + ", invalidations=" + invalidations + "]";
+    }
+
+}
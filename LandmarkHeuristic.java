@@ -0,0 +1,222 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This LandmarkHeuristic class implements the ALT (A*, landmarks and triangle
+ * inequality) lower bounds for A* search. During preprocessing, a small set
+ * of landmark nodes is chosen, and the cost of the shortest path from each
+ * landmark to every node and from every node to each landmark is stored in a
+ * table. For any landmark L, the triangle inequality guarantees that the cost
+ * from v to t is at least d(L,t) - d(L,v) and at least d(v,L) - d(t,L), and
+ * the largest of these bounds over all landmarks is used as the estimate.
+ *
+ * The estimates are only valid for the graph that was preprocessed: after
+ * edges are removed or made more expensive they may overestimate, so the
+ * table should be rebuilt whenever the graph changes.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class LandmarkHeuristic<NodeType> implements Heuristic<NodeType> {
+
+    // identifies files written by save()
+    protected static final int FILE_MAGIC = 0x414c5431; // "ALT1"
+
+    // the preprocessed nodes indexed by id, and the mapping from data to id
+    protected final Object[] data;
+    protected final MapADT<NodeType, Integer> ids;
+
+    // the ids of the landmark nodes
+    protected final int[] landmarks;
+    // fromLandmark[i][v] is the cost from landmarks[i] to node v, and
+    // toLandmark[i][v] the cost from node v to landmarks[i]
+    protected final double[][] fromLandmark;
+    protected final double[][] toLandmark;
+
+    /**
+     * Constructor for a LandmarkHeuristic over an already computed table.
+     * This is normally called through preprocess() or load().
+     *
+     * @param data         the data item stored at each node, indexed by id
+     * @param landmarks    the ids of the landmark nodes
+     * @param fromLandmark the cost from each landmark to each node
+     * @param toLandmark   the cost from each node to each landmark
+     */
+    @SuppressWarnings("unchecked")
+    protected LandmarkHeuristic(Object[] data, int[] landmarks, double[][] fromLandmark,
+            double[][] toLandmark) {
+        this.data = data;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+        this.ids = new OpenHashtableMap<>(data.length * 2 + 1);
+        for (int i = 0; i < data.length; i++)
+            ids.put((NodeType) data[i], i);
+    }
+
+    /**
+     * Chooses landmarks within the provided graph and computes the table of
+     * costs to and from each of them.
+     *
+     * @param graph         the graph to preprocess
+     * @param landmarkCount the number of landmarks to choose
+     * @return a heuristic for A* searches within this graph
+     */
+    public static <NodeType> LandmarkHeuristic<NodeType> preprocess(
+            BaseGraph<NodeType, ?> graph, int landmarkCount) {
+        return preprocess(graph.freeze(), landmarkCount);
+    }
+
+    /**
+     * Chooses landmarks within the provided snapshot and computes the table
+     * of costs to and from each of them. Landmarks are chosen one at a time:
+     * each new landmark is the node that is farthest (going there and back)
+     * from the closest landmark chosen so far, which spreads the landmarks
+     * out towards the edges of the graph where their bounds are tightest.
+     *
+     * @param snapshot      the graph to preprocess
+     * @param landmarkCount the number of landmarks to choose
+     * @return a heuristic for A* searches within this graph
+     * @throws IllegalArgumentException if landmarkCount is negative
+     */
+    public static <NodeType> LandmarkHeuristic<NodeType> preprocess(
+            CSRGraph<NodeType> snapshot, int landmarkCount) {
+        if (landmarkCount < 0)
+            throw new IllegalArgumentException("landmarkCount must not be negative");
+        int nodeCount = snapshot.getNodeCount();
+        landmarkCount = Math.min(landmarkCount, nodeCount);
+        int[] landmarks = new int[landmarkCount];
+        double[][] fromLandmark = new double[landmarkCount][];
+        double[][] toLandmark = new double[landmarkCount][];
+
+        // the first landmark is the node farthest from an arbitrary node
+        double[] separation = nodeCount > 0 ? snapshot.distancesFrom(0) : new double[0];
+        for (int i = 0; i < landmarkCount; i++) {
+            int next = 0;
+            for (int v = 1; v < nodeCount; v++)
+                if (separation[v] > separation[next])
+                    next = v;
+            landmarks[i] = next;
+            fromLandmark[i] = snapshot.distancesFrom(next);
+            toLandmark[i] = snapshot.distancesTo(next);
+            // track how far each node is from its closest landmark so far
+            for (int v = 0; v < nodeCount; v++) {
+                double roundTrip = fromLandmark[i][v] + toLandmark[i][v];
+                if (i == 0 || roundTrip < separation[v])
+                    separation[v] = roundTrip;
+            }
+        }
+
+        Object[] data = new Object[nodeCount];
+        for (int v = 0; v < nodeCount; v++)
+            data[v] = snapshot.dataOf(v);
+        return new LandmarkHeuristic<>(data, landmarks, fromLandmark, toLandmark);
+    }
+
+    /**
+     * Returns a lower bound on the cost of any path from node to target.
+     * Nodes that were not part of the preprocessed graph are estimated at 0.
+     *
+     * @param node   the data item in the node to estimate from
+     * @param target the data item in the destination node
+     * @return the largest triangle inequality bound over all landmarks
+     */
+    @Override
+    public double estimate(NodeType node, NodeType target) {
+        if (!ids.containsKey(node) || !ids.containsKey(target))
+            return 0;
+        int v = ids.get(node);
+        int t = ids.get(target);
+        double best = 0;
+        for (int i = 0; i < landmarks.length; i++) {
+            // bounds involving unreachable landmarks may be NaN, and are
+            // ignored by these comparisons
+            double forward = fromLandmark[i][t] - fromLandmark[i][v];
+            double backward = toLandmark[i][v] - toLandmark[i][t];
+            if (forward > best)
+                best = forward;
+            if (backward > best)
+                best = backward;
+        }
+        return best;
+    }
+
+    /**
+     * Return the landmark nodes chosen during preprocessing.
+     *
+     * @return list of data items in the landmark nodes
+     */
+    @SuppressWarnings("unchecked")
+    public List<NodeType> getLandmarks() {
+        List<NodeType> list = new ArrayList<>();
+        for (int id : landmarks)
+            list.add((NodeType) data[id]);
+        return list;
+    }
+
+    /**
+     * Writes this landmark table to a binary file, so that it can be loaded
+     * again without repeating the preprocessing. Nodes are recorded by their
+     * toString() value.
+     *
+     * @param filename the path of the file to write
+     * @throws IOException if there was a problem writing the file
+     */
+    public void save(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(data.length);
+            out.writeInt(landmarks.length);
+            for (Object node : data)
+                out.writeUTF(node.toString());
+            for (int i = 0; i < landmarks.length; i++) {
+                out.writeInt(landmarks[i]);
+                for (int v = 0; v < data.length; v++)
+                    out.writeDouble(fromLandmark[i][v]);
+                for (int v = 0; v < data.length; v++)
+                    out.writeDouble(toLandmark[i][v]);
+            }
+        }
+    }
+
+    /**
+     * Reads a landmark table that was written by save(), for a graph whose
+     * nodes contain Strings.
+     *
+     * @param filename the path of the file to read
+     * @return a heuristic using the landmark table stored in that file
+     * @throws IOException if there was a problem reading the file, or if it
+     *                     was not written by save()
+     */
+    public static LandmarkHeuristic<String> load(String filename) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename)))) {
+            if (in.readInt() != FILE_MAGIC)
+                throw new IOException(filename + " is not a landmark table");
+            int nodeCount = in.readInt();
+            int landmarkCount = in.readInt();
+            Object[] data = new Object[nodeCount];
+            for (int v = 0; v < nodeCount; v++)
+                data[v] = in.readUTF();
+            int[] landmarks = new int[landmarkCount];
+            double[][] fromLandmark = new double[landmarkCount][nodeCount];
+            double[][] toLandmark = new double[landmarkCount][nodeCount];
+            for (int i = 0; i < landmarkCount; i++) {
+                landmarks[i] = in.readInt();
+                for (int v = 0; v < nodeCount; v++)
+                    fromLandmark[i][v] = in.readDouble();
+                for (int v = 0; v < nodeCount; v++)
+                    toLandmark[i][v] = in.readDouble();
+            }
+            return new LandmarkHeuristic<>(data, landmarks, fromLandmark, toLandmark);
+        }
+    }
+
+}
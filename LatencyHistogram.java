@@ -0,0 +1,136 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A LatencyHistogram counts non-negative long values (such as durations in
+ * nanoseconds, or the number of nodes a search settled) in log-linear
+ * buckets, in the style of an HDR histogram: each power of two is split
+ * into SUB_BUCKETS equal buckets, so that every recorded value is known to
+ * within 1 / SUB_BUCKETS (about 3%) of its size, from single units up to
+ * Long.MAX_VALUE, in a fixed array of under 2,000 counts. Values below
+ * SUB_BUCKETS are counted exactly.
+ *
+ * Recording is lock-free and allocates nothing, so a histogram can be
+ * shared by every thread that runs queries. Reads are not atomic with
+ * respect to concurrent recording, so a percentile read while values are
+ * being recorded may miss the most recent of them.
+ */
+public class LatencyHistogram {
+
+    // each power of two is split into this many buckets
+    protected static final int SUB_BUCKET_BITS = 5;
+    protected static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // enough buckets for every power of two up to Long.MAX_VALUE
+    protected static final int BUCKET_COUNT = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+    protected final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder total = new LongAdder();
+    protected final AtomicLong max = new AtomicLong();
+
+    // returns the bucket that counts value
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * (shift + 1) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    // returns the largest value counted by a bucket
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Counts one value.
+     *
+     * @param value the value to count, where negative values count as 0
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        if (value > max.get())
+            max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Return the number of values counted.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Return the sum of every value counted.
+     *
+     * @return the sum of the values
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * Return the largest value counted, exactly.
+     *
+     * @return the largest value, or 0 when none has been counted
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Return the mean of the values counted.
+     *
+     * @return the mean, or 0 when no value has been counted
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getTotal() / n;
+    }
+
+    /**
+     * Returns a value that at least the given fraction of the values counted
+     * are less than or equal to: the largest value in the bucket holding the
+     * value at that rank, but never more than the largest value counted.
+     *
+     * @param fraction the fraction of values, from 0 to 1 (0.99 for the
+     *                 99th percentile)
+     * @return the value at that percentile, or 0 when none has been counted
+     */
+    public long getValueAtPercentile(double fraction) {
+        long n = getCount();
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank)
+                return Math.min(highestValueOf(bucket), getMax());
+        }
+        return getMax(); // values recorded while counting
+    }
+
+    /**
+     * Forgets every value counted so far.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+            counts.set(bucket, 0);
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+}
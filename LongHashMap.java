@@ -0,0 +1,160 @@
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive long keys to non-null values, using open
+ * addressing with linear probing. Keys are stored unboxed in a long[] beside
+ * a parallel array of values, so a lookup allocates nothing and touches at
+ * most a few neighboring slots. Removal shifts later entries of the probe
+ * sequence back into the freed slot, rather than leaving a tombstone, so the
+ * table never fills up with removed keys.
+ *
+ * @param ValueType is the type of the values stored
+ */
+public class LongHashMap<ValueType> {
+
+    // the table is rebuilt when more than this fraction of slots are in use
+    protected static final double MAX_LOAD_FACTOR = 0.5;
+
+    // a slot is empty when its value is null
+    protected long[] keys;
+    protected Object[] values;
+    protected int mask;
+    protected int size = 0;
+
+    /**
+     * Constructor for a map with room for at least capacity entries before
+     * it grows.
+     *
+     * @param capacity the number of entries to make room for
+     */
+    public LongHashMap(int capacity) {
+        allocate(Math.max(4, Integer.highestOneBit(Math.max(1, (int) (capacity / MAX_LOAD_FACTOR)) - 1) << 1));
+    }
+
+    // with default capacity = 16
+    public LongHashMap() {
+        this(16);
+    }
+
+    private void allocate(int slots) {
+        keys = new long[slots];
+        values = new Object[slots];
+        mask = slots - 1;
+    }
+
+    // the home slot of key; multiplying by a large odd constant spreads
+    // keys that differ only in their low or high bits across the table
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // returns the slot holding key, or the empty slot where it would go
+    private int indexOf(long key) {
+        int i = slotOf(key);
+        while (values[i] != null && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * Returns the value stored for a key.
+     *
+     * @param key the key to look up
+     * @return the value stored for key, or null when there is none
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType get(long key) {
+        return (ValueType) values[indexOf(key)];
+    }
+
+    /**
+     * Check whether a value is stored for a key.
+     *
+     * @param key the key to look up
+     * @return true if key is stored in this map, or false otherwise
+     */
+    public boolean containsKey(long key) {
+        return values[indexOf(key)] != null;
+    }
+
+    /**
+     * Stores a value for a key, replacing any value already stored for it.
+     *
+     * @param key   the key to store the value under
+     * @param value the value to store
+     * @throws NullPointerException if value is null
+     */
+    public void put(long key, ValueType value) {
+        if (value == null)
+            throw new NullPointerException("null values not allowed");
+        int i = indexOf(key);
+        if (values[i] == null) {
+            if (size + 1 > MAX_LOAD_FACTOR * values.length) {
+                rehash(values.length * 2);
+                i = indexOf(key);
+            }
+            size++;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /**
+     * Removes the value stored for a key.
+     *
+     * @param key the key to remove
+     * @return the value that was stored for key, or null when there was none
+     */
+    @SuppressWarnings("unchecked")
+    public ValueType remove(long key) {
+        int i = indexOf(key);
+        ValueType removed = (ValueType) values[i];
+        if (removed == null)
+            return null;
+        size--;
+        // move each later entry of this run back into the gap, unless its
+        // home slot lies cyclically after the gap
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slotOf(keys[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        values[i] = null;
+        return removed;
+    }
+
+    /**
+     * Return the number of keys stored in this map.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry from this map.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void rehash(int slots) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(slots);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = indexOf(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,407 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * This MappedGraph class serves shortest path queries directly from a file
+ * written by GraphFile. The file is memory-mapped rather than read, so
+ * opening it only reads its header: the operating system pages the rest in
+ * as queries touch it, and every JVM on the host that maps the same file
+ * shares the same pages of the page cache. Node names are looked up through
+ * the hash table stored in the file, and decoded into Strings only when a
+ * path is returned.
+ *
+ * A MappedGraph is read-only: the methods that would change the graph throw
+ * UnsupportedOperationException. Like CSRGraph, it can be queried by many
+ * threads at once. Closing it releases the file, which its mappings do not
+ * need, so it can still be queried afterwards.
+ */
+public class MappedGraph implements GraphADT<String, Double>, Closeable {
+
+    protected final int nodeCount;
+    protected final int edgeCount;
+    protected final long expectedChecksum;
+    protected final FileChannel channel;
+
+    // views of each section of the file
+    protected final IntBuffer nameStarts;
+    protected final IntBuffer table;
+    protected final IntBuffer offsets;
+    protected final IntBuffer targets;
+    protected final FloatBuffer floatWeights; // null unless weights are floats
+    protected final DoubleBuffer doubleWeights; // null when weights are floats
+    protected final ByteBuffer names;
+
+    // the hash code of each node's name, for PathOrder tie keys, filled in
+    // as searches reach each node; 0 means not computed yet
+    protected final int[] nameHashes;
+
+    // each thread reuses its own search state for every graph it searches
+    protected static final ThreadLocal<SearchScratch> SCRATCH = ThreadLocal.withInitial(
+            () -> new SearchScratch(0, 4));
+
+    /**
+     * Constructor for a MappedGraph over a file written by GraphFile. The
+     * checksum is not verified, since that would read the whole file; call
+     * verifyChecksum() to do so.
+     *
+     * @param filename the path of the file to map
+     * @throws IOException if the file cannot be read or was not written
+     *                     by GraphFile
+     */
+    public MappedGraph(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(GraphFile.HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+                ;
+            header.flip();
+            if (header.remaining() < GraphFile.HEADER_BYTES || header.getInt() != GraphFile.FILE_MAGIC)
+                throw new IOException(filename + " is not a graph file");
+            int version = header.getInt();
+            if (version != GraphFile.FILE_VERSION)
+                throw new IOException(filename + " has unsupported version " + version);
+            boolean useFloats = (header.getInt() & GraphFile.FLOAT_WEIGHTS) != 0;
+            nodeCount = header.getInt();
+            edgeCount = header.getInt();
+            int hashSlots = header.getInt();
+            long nameBytes = header.getLong();
+            expectedChecksum = header.getLong();
+
+            long position = GraphFile.HEADER_BYTES;
+            nameStarts = map(position, 4L * (nodeCount + 1)).asIntBuffer();
+            position = GraphFile.align(position + 4L * (nodeCount + 1));
+            table = map(position, 4L * hashSlots).asIntBuffer();
+            position = GraphFile.align(position + 4L * hashSlots);
+            offsets = map(position, 4L * (nodeCount + 1)).asIntBuffer();
+            position = GraphFile.align(position + 4L * (nodeCount + 1));
+            targets = map(position, 4L * edgeCount).asIntBuffer();
+            position = GraphFile.align(position + 4L * edgeCount);
+            long weightBytes = (useFloats ? 4L : 8L) * edgeCount;
+            floatWeights = useFloats ? map(position, weightBytes).asFloatBuffer() : null;
+            doubleWeights = useFloats ? null : map(position, weightBytes).asDoubleBuffer();
+            position = GraphFile.align(position + weightBytes);
+            names = map(position, nameBytes);
+            if (position + nameBytes != channel.size())
+                throw new IOException(filename + " is truncated or corrupt");
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        nameHashes = new int[nodeCount];
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        if (position + size > channel.size())
+            throw new IOException("graph file is truncated");
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * Reads the whole file to check that it matches the checksum stored in
+     * its header.
+     *
+     * @return true if the file is intact
+     * @throws IOException if there was a problem reading the file
+     */
+    public boolean verifyChecksum() throws IOException {
+        CRC32C crc = new CRC32C();
+        long size = channel.size();
+        // map at most 1GB at a time, since a mapping cannot exceed 2GB
+        for (long position = GraphFile.HEADER_BYTES; position < size; position += 1 << 30)
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(1 << 30, size - position)));
+        return crc.getValue() == expectedChecksum;
+    }
+
+    /**
+     * Closes the file. The graph can still be queried, but its checksum can
+     * no longer be verified.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private double weight(int edge) {
+        return floatWeights != null ? floatWeights.get(edge) : doubleWeights.get(edge);
+    }
+
+    /**
+     * Return the name of the node with the provided id.
+     *
+     * @param id the id of the node, between 0 and getNodeCount()-1
+     * @return the name stored for that node
+     */
+    public String dataOf(int id) {
+        int start = nameStarts.get(id);
+        byte[] bytes = new byte[nameStarts.get(id + 1) - start];
+        names.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // the hash code of a node's name, computed from its bytes without
+    // decoding them when the name is ASCII; threads that compute the same
+    // hash at once store the same value, so they need not synchronize
+    private int nameHash(int id) {
+        int hash = nameHashes[id];
+        if (hash != 0)
+            return hash;
+        int end = nameStarts.get(id + 1);
+        for (int i = nameStarts.get(id); i < end; i++) {
+            byte b = names.get(i);
+            if (b < 0) {
+                hash = dataOf(id).hashCode();
+                break;
+            }
+            hash = 31 * hash + b;
+        }
+        nameHashes[id] = hash;
+        return hash;
+    }
+
+    /**
+     * Return the position of the first edge leaving a node, in the same way
+     * as CSRGraph.getEdgeStart.
+     *
+     * @param id the id of the node, between 0 and getNodeCount()
+     * @return the position of its first leaving edge
+     */
+    public int getEdgeStart(int id) {
+        return offsets.get(id);
+    }
+
+    /**
+     * Return the id of the successor node of the edge at a position.
+     *
+     * @param edge the position of the edge, below getEdgeCount()
+     * @return the id of the node that edge enters
+     */
+    public int getEdgeTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    /**
+     * Return the weight of the edge at a position.
+     *
+     * @param edge the position of the edge, below getEdgeCount()
+     * @return the weight of that edge
+     */
+    public double getEdgeWeight(int edge) {
+        return weight(edge);
+    }
+
+    /**
+     * Copies the mapped arrays into an immutable CSRGraph on the heap, in the
+     * same way as BaseGraph.freeze(), for callers such as DistanceMatrix that
+     * need a snapshot. The snapshot stays usable after this graph is closed.
+     *
+     * @return a CSRGraph containing the same nodes and edges as this graph
+     */
+    public CSRGraph<String> freeze() {
+        Object[] data = new Object[nodeCount];
+        for (int id = 0; id < nodeCount; id++)
+            data[id] = dataOf(id);
+        int[] edgeStarts = new int[nodeCount + 1];
+        offsets.get(0, edgeStarts);
+        int[] edgeTargets = new int[edgeCount];
+        targets.get(0, edgeTargets);
+        double[] weights = new double[edgeCount];
+        for (int e = 0; e < edgeCount; e++)
+            weights[e] = weight(e);
+        return new CSRGraph<>(data, edgeStarts, edgeTargets, weights);
+    }
+
+    /**
+     * Return the id of the node with the provided name, or -1 if there is
+     * no such node.
+     *
+     * @param data the name to look up
+     * @return the id of that node, or -1
+     */
+    public int idOf(String data) {
+        if (data == null)
+            return -1;
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        int mask = table.capacity() - 1;
+        for (int slot = GraphFile.hash(bytes, 0, bytes.length) & mask;; slot = (slot + 1) & mask) {
+            int id = table.get(slot) - 1;
+            if (id < 0)
+                return -1;
+            int start = nameStarts.get(id);
+            if (nameStarts.get(id + 1) - start == bytes.length
+                    && names.slice(start, bytes.length).equals(ByteBuffer.wrap(bytes)))
+                return id;
+        }
+    }
+
+    // returns the id of data, throwing NSE when there is no such node
+    private int requireId(String data) {
+        int id = idOf(data);
+        if (id < 0)
+            throw new NoSuchElementException("No path from start to end.");
+        return id;
+    }
+
+    // returns the position of the edge u -> v within targets, or -1
+    private int edgeIndex(int u, int v) {
+        for (int e = offsets.get(u); e < offsets.get(u + 1); e++)
+            if (targets.get(e) == v)
+                return e;
+        return -1;
+    }
+
+    @Override
+    public boolean insertNode(String data) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    @Override
+    public boolean removeNode(String data) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    @Override
+    public boolean insertEdge(String pred, String succ, Double weight) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    @Override
+    public boolean removeEdge(String pred, String succ) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    @Override
+    public Set<String> applyEdgeUpdates(List<EdgeUpdate<String, Double>> updates) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    @Override
+    public boolean containsNode(String data) {
+        return idOf(data) >= 0;
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public boolean containsEdge(String pred, String succ) {
+        int u = idOf(pred);
+        int v = idOf(succ);
+        return u >= 0 && v >= 0 && edgeIndex(u, v) >= 0;
+    }
+
+    @Override
+    public Double getEdge(String pred, String succ) {
+        int u = idOf(pred);
+        int v = idOf(succ);
+        int e = u >= 0 && v >= 0 ? edgeIndex(u, v) : -1;
+        if (e < 0)
+            throw new NoSuchElementException("No edge from " + pred + " to " + succ);
+        return weight(e);
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public long getVersion() {
+        return 0; // read-only, so it never changes
+    }
+
+    /**
+     * Runs Dijkstra's algorithm over the mapped arrays from source until
+     * target is settled, leaving the result in the calling thread's
+     * SearchScratch.
+     */
+    protected SearchScratch computeShortestPath(int source, int target) {
+        SearchScratch search = SCRATCH.get();
+        search.reset(nodeCount);
+        IndexedMinHeap toVisit = search.heap;
+
+        search.setPath(source, 0, -1, 0, 0, 0);
+        toVisit.insertOrDecrease(source, 0);
+        while (!search.isFinished(target)) {
+            int u = toVisit.poll();
+            search.settle(u);
+            if (u == target)
+                continue;
+
+            double cost = search.getDist(u);
+            int hops = search.getHops(u) + 1;
+            int hash = nameHash(u);
+            int end = offsets.get(u + 1);
+            for (int e = offsets.get(u); e < end; e++) {
+                int v = targets.get(e);
+                double weight = weight(e);
+                double newCost = cost + weight;
+                int order = search.compareCost(v, newCost);
+                if (order > 0)
+                    continue;
+                long key = search.getTieKey(u) + PathOrder.edgeKey(hash, nameHash(v));
+                // ties are broken with PathOrder, as DijkstraGraph breaks them
+                if (order < 0 || search.improves(v, newCost, hops, key)) {
+                    search.setPath(v, newCost, u, weight, hops, key);
+                    toVisit.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+        if (search.isSettled(target))
+            return search;
+        throw new NoSuchElementException("No path from start to end.");
+    }
+
+    @Override
+    public List<String> shortestPathData(String start, String end) {
+        int target = requireId(end);
+        SearchScratch search = computeShortestPath(requireId(start), target);
+
+        LinkedList<String> path = new LinkedList<>();
+        for (int id = target; id != -1; id = search.getParent(id))
+            path.addFirst(dataOf(id));
+        return path;
+    }
+
+    @Override
+    public double shortestPathCost(String start, String end) {
+        int target = requireId(end);
+        return computeShortestPath(requireId(start), target).getDist(target);
+    }
+
+    @Override
+    public RouteResult<String> shortestPathRoute(String start, String end) {
+        int target = requireId(end);
+        SearchScratch search = computeShortestPath(requireId(start), target);
+
+        List<String> nodes = new ArrayList<>();
+        List<Double> times = new ArrayList<>();
+        for (int id = target; id != -1; id = search.getParent(id)) {
+            nodes.add(dataOf(id));
+            if (search.getParent(id) != -1)
+                times.add(search.getParentWeight(id));
+        }
+        Collections.reverse(nodes);
+        Collections.reverse(times);
+        return new RouteResult<>(nodes, times, search.getDist(target));
+    }
+
+}
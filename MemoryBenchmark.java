@@ -0,0 +1,74 @@
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap used per edge by each graph implementation, by filling
+ * it with the same random edges and comparing the heap in use before and
+ * after. The node names are created beforehand and shared, so only the
+ * structure of each graph is counted. Run with a heap large enough to hold
+ * the largest graph, e.g. java -Xmx2g MemoryBenchmark.
+ *
+ * Usage: java MemoryBenchmark [nodeCount] [edgesPerNode]
+ */
+public class MemoryBenchmark {
+
+    public static void main(String[] args) {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int edgesPerNode = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String[] names = new String[nodeCount];
+        for (int i = 0; i < nodeCount; i++)
+            names[i] = "node" + i;
+        Random random = new Random(42);
+        int[] preds = new int[nodeCount * edgesPerNode];
+        int[] succs = new int[preds.length];
+        double[] weights = new double[preds.length];
+        for (int e = 0; e < preds.length; e++) {
+            preds[e] = e / edgesPerNode;
+            succs[e] = random.nextInt(nodeCount);
+            weights[e] = 1 + random.nextInt(600);
+        }
+        System.out.println(nodeCount + " nodes, " + preds.length + " edges inserted");
+        System.out.printf("%-28s %10s %12s%n", "graph", "edges", "bytes/edge");
+
+        measure("DijkstraGraph", () -> fill(new DijkstraGraph<>(), names, preds, succs, weights));
+        measure("DijkstraGraph + edge index", () -> {
+            DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+            graph.setEdgeIndexed(true);
+            return fill(graph, names, preds, succs, weights);
+        });
+        measure("CompactGraph", () -> fill(new CompactGraph<>(), names, preds, succs, weights));
+    }
+
+    // inserts every node and edge into graph
+    private static GraphADT<String, Double> fill(GraphADT<String, Double> graph, String[] names,
+            int[] preds, int[] succs, double[] weights) {
+        for (String name : names)
+            graph.insertNode(name);
+        for (int e = 0; e < preds.length; e++)
+            graph.insertEdge(names[preds[e]], names[succs[e]], weights[e]);
+        return graph;
+    }
+
+    // builds a graph and prints the heap it holds per edge
+    private static void measure(String name, Supplier<GraphADT<String, Double>> build) {
+        long before = usedHeap();
+        GraphADT<String, Double> graph = build.get();
+        long after = usedHeap();
+        // graph is still in use here, so it cannot have been collected
+        System.out.printf("%-28s %10d %12.1f%n", name, graph.getEdgeCount(),
+                (double) (after - before) / graph.getEdgeCount());
+    }
+
+    // returns the heap in use once garbage collection has settled
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+}
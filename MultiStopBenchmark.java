@@ -0,0 +1,69 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Measures the end-to-end latency of routes through several stops, for a
+ * growing number of stops: routes that keep the stops in the order they
+ * were given, and routes whose order is optimized by MultiStopRouter. Also
+ * reports how much shorter the optimized routes are.
+ *
+ * Usage: java MultiStopBenchmark [dotFile] [routesPerSize] [maxStops]
+ */
+public class MultiStopBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String filename = args.length > 0 ? args[0] : "campus.dot";
+        int routeCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int maxStops = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        Backend backend = new Backend(graph);
+        backend.loadGraphData(filename);
+        List<String> locations = backend.getListOfAllLocations();
+        MultiStopRouter<String> router = new MultiStopRouter<>(graph.freeze());
+        System.out.println("Loaded " + graph.getNodeCount() + " nodes and "
+                + graph.getEdgeCount() + " edges from " + filename);
+        System.out.printf("%6s %14s %14s %12s%n", "stops", "ordered ms", "optimized ms", "saved");
+
+        Random random = new Random(42);
+        for (int stopCount = 2; stopCount <= maxStops; stopCount += 2) {
+            long orderedTime = 0;
+            long optimizedTime = 0;
+            double orderedCost = 0;
+            double optimizedCost = 0;
+            int routed = 0;
+            for (int i = 0; i < routeCount; i++) {
+                List<String> stops = new ArrayList<>();
+                for (int j = 0; j < stopCount + 2; j++)
+                    stops.add(locations.get(random.nextInt(locations.size())));
+                try {
+                    long time = System.nanoTime();
+                    RouteResult<String> ordered = router.routeInOrder(stops);
+                    orderedTime += System.nanoTime() - time;
+
+                    time = System.nanoTime();
+                    RouteResult<String> optimized = router.routeAnyOrder(stops.get(0),
+                            stops.subList(1, stopCount + 1), stops.get(stopCount + 1));
+                    optimizedTime += System.nanoTime() - time;
+
+                    orderedCost += ordered.getCost();
+                    optimizedCost += optimized.getCost();
+                    routed++;
+                } catch (NoSuchElementException e) {
+                    // some stop cannot be reached; leave this set out
+                }
+            }
+            if (routed == 0) {
+                System.out.printf("%6d %14s %14s %12s%n", stopCount, "-", "-", "unreachable");
+                continue;
+            }
+            System.out.printf("%6d %14.3f %14.3f %11.1f%%%n", stopCount,
+                    orderedTime / 1e6 / routed, optimizedTime / 1e6 / routed,
+                    100 * (1 - optimizedCost / orderedCost));
+        }
+    }
+
+}
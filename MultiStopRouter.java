@@ -0,0 +1,330 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Plans routes through several stops within a CSRGraph snapshot, either in
+ * a given order or in whichever order is cheapest.
+ *
+ * Routes through ordered stops are joined from one leg per pair of
+ * consecutive stops. Each leg is read from a shortest path tree grown from
+ * its first stop; the trees are computed in parallel, and a stop that is
+ * visited more than once has its tree computed only once.
+ *
+ * To choose the order of unordered stops, the cost between every pair of
+ * points (the start, each stop and the end) is first computed once, in
+ * parallel, with DistanceMatrix. The order is then solved exactly with the
+ * Held-Karp dynamic program for up to HELD_KARP_LIMIT stops, or otherwise
+ * built from the nearest neighbor at each step and improved with 2-opt and
+ * Or-opt moves until neither finds a cheaper order. Both account for edge
+ * costs that differ by direction.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class MultiStopRouter<NodeType> {
+
+    // the largest number of stops ordered exactly; Held-Karp takes time
+    // proportional to 2^k * k^2 and memory proportional to 2^k * k
+    protected static final int HELD_KARP_LIMIT = 12;
+
+    // improvements smaller than this are treated as rounding noise
+    private static final double EPSILON = 1e-9;
+
+    protected final CSRGraph<NodeType> graph;
+    protected final ForkJoinPool pool;
+
+    /**
+     * Constructor for a router over a snapshot, which computes in parallel
+     * on the common ForkJoinPool.
+     *
+     * @param graph the snapshot to plan routes within
+     */
+    public MultiStopRouter(CSRGraph<NodeType> graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for a router over a snapshot.
+     *
+     * @param graph the snapshot to plan routes within
+     * @param pool  the pool to compute trees and matrices on
+     */
+    public MultiStopRouter(CSRGraph<NodeType> graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the shortest route that visits every stop in the given order.
+     *
+     * @param stops the data items in the nodes to visit, starting with the
+     *              start of the route and ending with its end
+     * @return the route through every stop
+     * @throws NoSuchElementException when a stop is not in the graph, or
+     *                                when one leg has no path
+     * @throws IllegalArgumentException if stops is empty
+     */
+    public RouteResult<NodeType> routeInOrder(List<NodeType> stops) {
+        if (stops.isEmpty())
+            throw new IllegalArgumentException("A route needs at least one stop");
+        for (NodeType stop : stops)
+            graph.idOf(stop); // fail before starting on unknown stops
+
+        // grow one tree from every stop that a leg starts from, in parallel
+        Map<NodeType, ForkJoinTask<ShortestPathTree<NodeType>>> trees = new HashMap<>();
+        for (int i = 0; i + 1 < stops.size(); i++) {
+            NodeType from = stops.get(i);
+            if (!trees.containsKey(from))
+                trees.put(from, pool.submit(() -> graph.shortestPathTree(from)));
+        }
+
+        RouteResult<NodeType> route = new RouteResult<>(List.of(stops.get(0)), List.of(), 0);
+        for (int i = 0; i + 1 < stops.size(); i++) {
+            try {
+                route = route.append(trees.get(stops.get(i)).get().getRoute(stops.get(i + 1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Returns the cheapest order in which to visit a set of stops between a
+     * fixed start and end.
+     *
+     * @param start the data item in the node the route starts at
+     * @param stops the data items in the nodes to visit, in any order
+     * @param end   the data item in the node the route ends at, which may be
+     *              the same as start for a round trip
+     * @return start, followed by every stop in the order to visit them, and
+     *         then end
+     * @throws NoSuchElementException when a node is not in the graph, or
+     *                                when no order connects every stop
+     */
+    public List<NodeType> optimizeOrder(NodeType start, List<NodeType> stops, NodeType end) {
+        List<NodeType> points = new ArrayList<>(stops.size() + 2);
+        points.add(start);
+        points.addAll(stops);
+        points.add(end);
+        double[] matrix = DistanceMatrix.compute(graph, points, points, pool);
+
+        int[] order = solveOrder(matrix, points.size());
+        List<NodeType> ordered = new ArrayList<>(order.length);
+        for (int point : order)
+            ordered.add(points.get(point));
+        return ordered;
+    }
+
+    /**
+     * Returns the cheapest route that starts at start, visits every stop in
+     * any order, and ends at end.
+     *
+     * @param start the data item in the node the route starts at
+     * @param stops the data items in the nodes to visit, in any order
+     * @param end   the data item in the node the route ends at
+     * @return the route through every stop
+     * @throws NoSuchElementException when a node is not in the graph, or
+     *                                when no order connects every stop
+     */
+    public RouteResult<NodeType> routeAnyOrder(NodeType start, List<NodeType> stops, NodeType end) {
+        return routeInOrder(optimizeOrder(start, stops, end));
+    }
+
+    /**
+     * Chooses the order in which to visit points 1 to n-2 on a route from
+     * point 0 to point n-1, given the cost between every pair of points.
+     *
+     * @param matrix the cost from point i to point j at index i * n + j,
+     *               which may differ from the cost from j to i
+     * @param n      the number of points, including the start and end
+     * @return the points in the order to visit them, starting with 0 and
+     *         ending with n-1
+     * @throws NoSuchElementException when every order costs infinity
+     */
+    public static int[] solveOrder(double[] matrix, int n) {
+        int[] order = n - 2 <= HELD_KARP_LIMIT ? heldKarp(matrix, n) : improve(matrix, n,
+                nearestNeighbor(matrix, n));
+        if (!(cost(matrix, n, order) < Double.POSITIVE_INFINITY))
+            throw new NoSuchElementException("No path from start to end.");
+        return order;
+    }
+
+    /**
+     * Returns the total cost of visiting the points in the given order.
+     *
+     * @param matrix the cost between every pair of points
+     * @param n      the number of points
+     * @param order  the points in the order to visit them
+     * @return the sum of the costs between consecutive points
+     */
+    public static double cost(double[] matrix, int n, int[] order) {
+        double total = 0;
+        for (int i = 0; i + 1 < order.length; i++)
+            total += matrix[order[i] * n + order[i + 1]];
+        return total;
+    }
+
+    /**
+     * Finds the cheapest order exactly. best[mask * k + j] is the cost of the
+     * cheapest path from the start through the set of stops in mask that
+     * ends at stop j (point j + 1), and last[] records the stop before j.
+     */
+    private static int[] heldKarp(double[] matrix, int n) {
+        int k = n - 2;
+        int[] order = new int[n];
+        order[n - 1] = n - 1;
+        if (k == 0)
+            return order;
+
+        int subsets = 1 << k;
+        double[] best = new double[subsets * k];
+        int[] last = new int[subsets * k];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        for (int j = 0; j < k; j++)
+            best[(1 << j) * k + j] = matrix[j + 1];
+        for (int mask = 1; mask < subsets; mask++) {
+            for (int j = 0; j < k; j++) {
+                double cost = best[mask * k + j];
+                if ((mask & (1 << j)) == 0 || cost == Double.POSITIVE_INFINITY)
+                    continue;
+                for (int l = 0; l < k; l++) {
+                    if ((mask & (1 << l)) != 0)
+                        continue;
+                    int next = (mask | (1 << l)) * k + l;
+                    double through = cost + matrix[(j + 1) * n + l + 1];
+                    if (through < best[next]) {
+                        best[next] = through;
+                        last[next] = j;
+                    }
+                }
+            }
+        }
+
+        // close the path at the end, then follow last[] back to the start
+        int full = subsets - 1;
+        int stop = 0;
+        double total = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < k; j++) {
+            double through = best[full * k + j] + matrix[(j + 1) * n + n - 1];
+            if (through < total) {
+                total = through;
+                stop = j;
+            }
+        }
+        for (int mask = full, i = k; i >= 1; i--) {
+            order[i] = stop + 1;
+            int previous = last[mask * k + stop];
+            mask &= ~(1 << stop);
+            stop = previous;
+        }
+        return order;
+    }
+
+    // builds an order by always moving on to the cheapest unvisited stop
+    private static int[] nearestNeighbor(double[] matrix, int n) {
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        order[n - 1] = n - 1;
+        for (int i = 1; i < n - 1; i++) {
+            int from = order[i - 1];
+            int next = -1;
+            for (int point = 1; point < n - 1; point++)
+                if (!visited[point] && (next == -1
+                        || matrix[from * n + point] < matrix[from * n + next]))
+                    next = point;
+            visited[next] = true;
+            order[i] = next;
+        }
+        return order;
+    }
+
+    /**
+     * Improves an order with 2-opt moves (reversing a run of stops) and
+     * Or-opt moves (moving a run of up to three stops elsewhere) until
+     * neither finds a cheaper order. The start and end never move.
+     */
+    private static int[] improve(double[] matrix, int n, int[] order) {
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+
+            // 2-opt: reversing order[i..j] also reverses the direction of
+            // every edge inside the run, so those edges are summed both ways
+            for (int i = 1; i < n - 2 && !improved; i++) {
+                double forward = 0;
+                double backward = 0;
+                for (int j = i + 1; j < n - 1; j++) {
+                    forward += matrix[order[j - 1] * n + order[j]];
+                    backward += matrix[order[j] * n + order[j - 1]];
+                    double before = matrix[order[i - 1] * n + order[i]] + forward
+                            + matrix[order[j] * n + order[j + 1]];
+                    double after = matrix[order[i - 1] * n + order[j]] + backward
+                            + matrix[order[i] * n + order[j + 1]];
+                    if (after < before - EPSILON) {
+                        for (int a = i, b = j; a < b; a++, b--) {
+                            int swap = order[a];
+                            order[a] = order[b];
+                            order[b] = swap;
+                        }
+                        improved = true;
+                        break;
+                    }
+                }
+            }
+
+            // Or-opt: move order[i..i+length-1] between order[p] and order[p+1]
+            for (int length = 1; length <= 3 && !improved; length++) {
+                for (int i = 1; i + length < n && !improved; i++) {
+                    int first = order[i];
+                    int lastStop = order[i + length - 1];
+                    int before = order[i - 1];
+                    int after = order[i + length];
+                    double removed = matrix[before * n + first] + matrix[lastStop * n + after]
+                            - matrix[before * n + after];
+                    for (int p = 0; p < n - 1 && !improved; p++) {
+                        if (p >= i - 1 && p < i + length)
+                            continue; // the run is already here
+                        int a = order[p];
+                        int b = order[p + 1];
+                        double added = matrix[a * n + first] + matrix[lastStop * n + b]
+                                - matrix[a * n + b];
+                        if (added < removed - EPSILON) {
+                            order = moveRun(order, i, length, p);
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    // returns order with the run order[i..i+length-1] moved to just after
+    // the point that was at position p
+    private static int[] moveRun(int[] order, int i, int length, int p) {
+        int[] moved = new int[order.length];
+        int size = 0;
+        for (int q = 0; q < order.length; q++) {
+            if (q >= i && q < i + length)
+                continue;
+            moved[size++] = order[q];
+            if (q == p)
+                for (int r = i; r < i + length; r++)
+                    moved[size++] = order[r];
+        }
+        return moved;
+    }
+
+}
@@ -0,0 +1,210 @@
+import java.util.NoSuchElementException;
+
+/**
+ * Implements MapADT using open addressing with linear probing. Keys and
+ * values are stored directly in parallel arrays whose length is always a
+ * power of two, so that a key's home slot is found by masking its hash code
+ * rather than by division. Each slot also caches the hash code of its key, so
+ * that most non-matching slots are skipped without calling equals(), and the
+ * table never calls hashCode() again while resizing. Removed keys leave a
+ * tombstone behind, so that probe sequences passing through their slot are not
+ * cut short; tombstones are reused by later insertions and cleared whenever
+ * the table is rebuilt.
+ */
+public class OpenHashtableMap<KeyType, ValueType> implements MapADT<KeyType, ValueType> {
+
+    // marks a slot whose key was removed
+    protected static final Object TOMBSTONE = new Object();
+
+    // the table is rebuilt when more than this fraction of slots are in use
+    protected static final double MAX_LOAD_FACTOR = 0.75;
+
+    // a slot is empty when its key is null
+    protected Object[] keys;
+    protected Object[] values;
+    protected int[] hashes;
+    protected int mask;
+
+    protected int size = 0; // the number of keys stored
+    protected int tombstones = 0; // the number of slots holding TOMBSTONE
+
+    /**
+     * Constructor for a map with room for at least capacity slots.
+     *
+     * @param capacity the initial number of slots, which is rounded up to
+     *                 the next power of two
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public OpenHashtableMap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        }
+        allocate(Math.max(2, Integer.highestOneBit(capacity - 1) << 1));
+    }
+
+    // with default capacity = 64
+    public OpenHashtableMap() {
+        this(64);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    // spreads the high bits of key's hash code into the bits used by mask
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // returns the slot holding key, or -1 when key is not stored
+    private int indexOf(Object key) {
+        int h = hash(key);
+        for (int i = h & mask;; i = (i + 1) & mask) {
+            Object k = keys[i];
+            if (k == null)
+                return -1;
+            if (hashes[i] == h && k != TOMBSTONE && (k == key || k.equals(key)))
+                return i;
+        }
+    }
+
+    /**
+     * Adds a new key,value pair/mapping to this collection.
+     */
+    @Override
+    public void put(KeyType key, ValueType value) throws IllegalArgumentException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+
+        // search the whole probe sequence for key, remembering the first
+        // tombstone along the way as the place to insert it
+        int h = hash(key);
+        int free = -1;
+        int i = h & mask;
+        for (;; i = (i + 1) & mask) {
+            Object k = keys[i];
+            if (k == null)
+                break;
+            if (k == TOMBSTONE) {
+                if (free < 0)
+                    free = i;
+            } else if (hashes[i] == h && (k == key || k.equals(key))) {
+                throw new IllegalArgumentException("Key already exists.");
+            }
+        }
+        if (free >= 0) {
+            i = free;
+            tombstones--;
+        }
+        keys[i] = key;
+        values[i] = value;
+        hashes[i] = h;
+        size++;
+
+        if (size + tombstones > MAX_LOAD_FACTOR * keys.length)
+            rebuild();
+    }
+
+    /**
+     * Rehashes every key into a fresh table, dropping all tombstones. The
+     * table doubles in size unless most of its used slots were tombstones.
+     */
+    private void rebuild() {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        int capacity = oldKeys.length;
+        if (size >= capacity / 4)
+            capacity *= 2;
+        allocate(capacity);
+        tombstones = 0;
+
+        for (int j = 0; j < oldKeys.length; j++) {
+            Object k = oldKeys[j];
+            if (k == null || k == TOMBSTONE)
+                continue;
+            int i = oldHashes[j] & mask;
+            while (keys[i] != null)
+                i = (i + 1) & mask;
+            keys[i] = k;
+            values[i] = oldValues[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+
+    /**
+     * Checks whether a key maps to a value in this collection.
+     */
+    @Override
+    public boolean containsKey(KeyType key) {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Retrieves the specific value that a key maps to.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType get(KeyType key) throws NoSuchElementException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int i = indexOf(key);
+        if (i < 0)
+            throw new NoSuchElementException("Key not found.");
+        return (ValueType) values[i];
+    }
+
+    /**
+     * Remove the mapping for a key from this collection.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueType remove(KeyType key) throws NoSuchElementException {
+        if (key == null)
+            throw new NullPointerException("null keys not allowed");
+        int i = indexOf(key);
+        if (i < 0)
+            throw new NoSuchElementException("Key not found.");
+        ValueType value = (ValueType) values[i];
+        keys[i] = TOMBSTONE;
+        values[i] = null;
+        size--;
+        tombstones++;
+        return value;
+    }
+
+    /**
+     * Removes all key,value pairs from this collection.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+        tombstones = 0;
+    }
+
+    /**
+     * Retrieves the number of keys stored in this collection.
+     */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the capacity of the table.
+     */
+    @Override
+    public int getCapacity() {
+        return keys.length;
+    }
+}
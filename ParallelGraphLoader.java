@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads large DOT edge lists on several threads at once. The file is split
+ * into chunks that each start at the beginning of a line, and each chunk is
+ * parsed by its own DotReader, into its own name dictionary and edge buffer.
+ * The chunks are then merged: their dictionaries are combined into one
+ * global node id space (in order of first appearance in the file, as if it
+ * had been read on one thread), their edges are renumbered into it in
+ * parallel, and the result is packed into a CSRGraph.
+ *
+ * Because chunks are split at line breaks, each statement must fit on a
+ * single line, as in files written one edge per line. When the same edge
+ * appears more than once, the weight that appears last in the file is kept,
+ * in the same way as repeated calls to insertEdge.
+ */
+public class ParallelGraphLoader {
+
+    // the file is split into this many chunks per thread, so that threads
+    // that finish early can take over the remaining work
+    protected static final int CHUNKS_PER_THREAD = 4;
+
+    // chunks smaller than this are not worth parsing on their own
+    protected static final long MIN_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * The names and edges read from one chunk, numbered by the chunk's own
+     * dictionary until they are renumbered during the merge.
+     */
+    protected static class Chunk implements DotReader.Handler {
+        String[] names = new String[64];
+        int nameCount = 0;
+        int[] from = new int[1024];
+        int[] to = new int[1024];
+        double[] weights = new double[1024];
+        int edgeCount = 0;
+
+        @Override
+        public void node(int id, String name) {
+            if (nameCount == names.length)
+                names = Arrays.copyOf(names, nameCount * 2);
+            names[nameCount++] = name;
+        }
+
+        @Override
+        public void edge(int source, int target, double weight) {
+            if (edgeCount == from.length) {
+                from = Arrays.copyOf(from, edgeCount * 2);
+                to = Arrays.copyOf(to, edgeCount * 2);
+                weights = Arrays.copyOf(weights, edgeCount * 2);
+            }
+            from[edgeCount] = source;
+            to[edgeCount] = target;
+            weights[edgeCount] = weight;
+            edgeCount++;
+        }
+    }
+
+    /**
+     * Loads a DOT file into a CSRGraph using the provided number of threads.
+     *
+     * @param filename the path of the file to read
+     * @param threads  the number of threads to parse with
+     * @return a snapshot containing every node and weighted edge in the file
+     * @throws IOException if there was a problem reading the file
+     * @throws IllegalArgumentException if threads is not positive
+     */
+    public static CSRGraph<String> load(String filename, int threads) throws IOException {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long[] bounds = split(channel, threads * CHUNKS_PER_THREAD);
+
+            // parse every chunk
+            List<Callable<Chunk>> parses = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                parses.add(() -> {
+                    Chunk chunk = new Chunk();
+                    new DotReader(channel, start, end).read(chunk);
+                    return chunk;
+                });
+            }
+            List<Chunk> chunks = getAll(pool.invokeAll(parses));
+
+            // merge the dictionaries in file order, recording how each
+            // chunk's ids map onto the global ids
+            MapADT<String, Integer> ids = new OpenHashtableMap<>();
+            List<String> names = new ArrayList<>();
+            List<Callable<Chunk>> renumbers = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                int[] global = new int[chunk.nameCount];
+                for (int i = 0; i < chunk.nameCount; i++) {
+                    String name = chunk.names[i];
+                    if (ids.containsKey(name)) {
+                        global[i] = ids.get(name);
+                    } else {
+                        global[i] = names.size();
+                        ids.put(name, global[i]);
+                        names.add(name);
+                    }
+                }
+                renumbers.add(() -> {
+                    for (int e = 0; e < chunk.edgeCount; e++) {
+                        chunk.from[e] = global[chunk.from[e]];
+                        chunk.to[e] = global[chunk.to[e]];
+                    }
+                    return chunk;
+                });
+            }
+            getAll(pool.invokeAll(renumbers));
+
+            return pack(names.toArray(), chunks);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // waits for every task, rethrowing the first failure
+    private static List<Chunk> getAll(List<Future<Chunk>> futures) throws IOException {
+        List<Chunk> results = new ArrayList<>();
+        try {
+            for (Future<Chunk> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Returns the positions at which to split the file, starting with 0 and
+     * ending with its size. Each split is moved forward to just after the
+     * next line break, so that every chunk begins at the start of a line.
+     */
+    protected static long[] split(FileChannel channel, int chunkCount) throws IOException {
+        long size = channel.size();
+        chunkCount = (int) Math.max(1, Math.min(chunkCount, size / MIN_CHUNK_BYTES));
+        long[] bounds = new long[chunkCount + 1];
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (int i = 1; i < chunkCount; i++) {
+            long position = Math.max(bounds[i - 1], size * i / chunkCount);
+            search: while (position < size) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                if (n <= 0)
+                    break;
+                for (int j = 0; j < n; j++) {
+                    if (buffer.get(j) == '\n') {
+                        position += j + 1;
+                        break search;
+                    }
+                }
+                position += n;
+            }
+            bounds[i] = Math.min(position, size);
+        }
+        bounds[chunkCount] = size;
+        return bounds;
+    }
+
+    /**
+     * Packs the renumbered edges of every chunk into CSR arrays. Edges are
+     * placed in file order within each node's run, and repeated edges are
+     * collapsed onto their first position, keeping their last weight.
+     */
+    protected static CSRGraph<String> pack(Object[] data, List<Chunk> chunks) {
+        int nodeCount = data.length;
+        int[] offsets = new int[nodeCount + 1];
+        for (Chunk chunk : chunks)
+            for (int e = 0; e < chunk.edgeCount; e++)
+                offsets[chunk.from[e] + 1]++;
+        for (int i = 0; i < nodeCount; i++)
+            offsets[i + 1] += offsets[i];
+
+        int[] targets = new int[offsets[nodeCount]];
+        double[] weights = new double[offsets[nodeCount]];
+        int[] next = Arrays.copyOf(offsets, nodeCount);
+        for (Chunk chunk : chunks) {
+            for (int e = 0; e < chunk.edgeCount; e++) {
+                int slot = next[chunk.from[e]]++;
+                targets[slot] = chunk.to[e];
+                weights[slot] = chunk.weights[e];
+            }
+        }
+
+        // collapse repeated edges, compacting every run towards the front
+        int[] seenBy = new int[nodeCount];
+        int[] seenAt = new int[nodeCount];
+        Arrays.fill(seenBy, -1);
+        int write = 0;
+        for (int u = 0; u < nodeCount; u++) {
+            int start = offsets[u];
+            offsets[u] = write;
+            for (int e = start; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                if (seenBy[v] == u) {
+                    weights[seenAt[v]] = weights[e];
+                } else {
+                    seenBy[v] = u;
+                    seenAt[v] = write;
+                    targets[write] = v;
+                    weights[write] = weights[e];
+                    write++;
+                }
+            }
+        }
+        offsets[nodeCount] = write;
+        if (write < targets.length) {
+            targets = Arrays.copyOf(targets, write);
+            weights = Arrays.copyOf(weights, write);
+        }
+        return new CSRGraph<>(data, offsets, targets, weights);
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * PathOrder decides which of two paths a shortest path search prefers, so
+ * that every search returns the same path between two nodes however many
+ * shortest paths tie on cost. DijkstraGraph, ContractionHierarchy, CSRGraph,
+ * CompactGraph and MappedGraph all apply it, so each of them returns exactly
+ * the path that DijkstraGraph does.
+ *
+ * Paths are compared by cost, then by their number of edges (fewest
+ * first), then by their tie key (lowest first): the sum of edgeKey over
+ * their edges. All three are sums over the edges of a path, so the
+ * preferred path between two nodes is made of preferred paths between the
+ * nodes along it, which is what lets a search, or a hierarchy's shortcuts,
+ * build it up piece by piece. Costs within a relative COST_TOLERANCE of each
+ * other count as equal, since searches that add up the same path's weights
+ * in a different order can differ in the last bits. Two different paths
+ * only tie on all three when their edge keys collide, which is left to
+ * chance.
+ */
+public class PathOrder {
+
+    // costs closer than this fraction of their size count as equal
+    protected static final double COST_TOLERANCE = 1e-9;
+
+    /**
+     * Check whether two costs are equal, up to rounding.
+     *
+     * @param cost  one cost
+     * @param other another cost
+     * @return true if the costs are within COST_TOLERANCE of each other
+     */
+    public static boolean sameCost(double cost, double other) {
+        if (cost == other)
+            return true;
+        if (Double.isInfinite(cost) || Double.isInfinite(other))
+            return false;
+        return Math.abs(cost - other) <= COST_TOLERANCE * Math.max(Math.abs(cost), Math.abs(other));
+    }
+
+    /**
+     * Check whether one cost is larger than another by more than rounding,
+     * so that a path of the first cost can never tie with the second.
+     *
+     * @param cost  one cost
+     * @param other another cost
+     * @return true if cost is more than other, and not the same cost
+     */
+    public static boolean exceeds(double cost, double other) {
+        return cost > other && !sameCost(cost, other);
+    }
+
+    /**
+     * Compares two paths.
+     *
+     * @param cost       the cost of the first path
+     * @param hops       the number of edges along the first path
+     * @param key        the tie key of the first path
+     * @param otherCost  the cost of the second path
+     * @param otherHops  the number of edges along the second path
+     * @param otherKey   the tie key of the second path
+     * @return a negative number if the first path is preferred, a positive
+     *         number if the second is, and 0 if they tie
+     */
+    public static int compare(double cost, int hops, long key,
+            double otherCost, int otherHops, long otherKey) {
+        if (cost != otherCost) {
+            double difference = cost - otherCost;
+            // an infinite cost never ties with a finite one
+            if (Double.isInfinite(difference) || Math.abs(difference)
+                    > COST_TOLERANCE * Math.max(Math.abs(cost), Math.abs(otherCost)))
+                return difference < 0 ? -1 : 1;
+        }
+        if (hops != otherHops)
+            return hops < otherHops ? -1 : 1;
+        return Long.compare(key, otherKey);
+    }
+
+    /**
+     * Returns the tie key of the edge between two nodes, which depends only
+     * on the hash codes of their data, so that it is the same however the
+     * nodes are numbered.
+     *
+     * @param pred the data in the predecessor node of the edge
+     * @param succ the data in the successor node of the edge
+     * @return a key between 0 and 2^31-1
+     */
+    public static long edgeKey(Object pred, Object succ) {
+        return edgeKey(pred.hashCode(), succ.hashCode());
+    }
+
+    /**
+     * Returns the tie key of the edge between two nodes from the hash codes
+     * of their data, for searches that do not hold the data itself.
+     *
+     * @param predHash the hash code of the data in the predecessor node
+     * @param succHash the hash code of the data in the successor node
+     * @return a key between 0 and 2^31-1
+     */
+    public static long edgeKey(int predHash, int succHash) {
+        long h = predHash * 0x9E3779B97F4A7C15L + succHash;
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 29)) * 0x94D049BB133111EBL;
+        return (h ^ (h >>> 32)) >>> 33;
+    }
+
+}
@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A QueryMetrics collects the counters and histograms recorded by the graphs
+ * and backends it is passed to through their setMetrics methods, and exports
+ * them: as Prometheus text (from toPrometheusText, or over HTTP from
+ * startHttpServer), or as the attributes of a JMX MBean (registerMBean).
+ * Metrics are off unless a QueryMetrics is set, and cost only a null check
+ * per query while they are off.
+ *
+ * Every metric belongs to a family: a name such as graph_query_nanoseconds
+ * with at most one label, such as query, whose values (shortestPathCost,
+ * shortestPathRoute, ...) each name one series of the family. Recording
+ * looks a series up by its family name and label value, which allocates
+ * nothing once the series exists, so one QueryMetrics can be shared by
+ * every thread and graph.
+ */
+public class QueryMetrics {
+
+    // the percentiles exported for each histogram
+    protected static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    protected static final String[] QUANTILE_NAMES = { "p50", "p90", "p99", "p999" };
+
+    // the series of one metric, keyed by their label values
+    protected static class Family {
+        final String name;
+        final String label; // null for a family with a single series
+        final boolean counter;
+        final ConcurrentHashMap<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String label, boolean counter) {
+            this.name = name;
+            this.label = label;
+            this.counter = counter;
+        }
+    }
+
+    protected final ConcurrentHashMap<String, Family> families = new ConcurrentHashMap<>();
+
+    // returns the family called name, checking that it is of the right kind
+    private Family family(String name, String label, boolean counter) {
+        Family family = families.get(name);
+        if (family == null)
+            family = families.computeIfAbsent(name, key -> new Family(name, label, counter));
+        if (family.counter != counter || (family.label == null ? label != null : !family.label.equals(label)))
+            throw new IllegalArgumentException("Metric " + name + " is already in use with "
+                    + (family.counter ? "a counter" : "a histogram") + " labelled " + family.label);
+        return family;
+    }
+
+    /**
+     * Returns the histogram of one series of a family, creating it when it
+     * is first used.
+     *
+     * @param name  the name of the family
+     * @param label the name of the family's label, or null for none
+     * @param value the value of the label for this series, or "" when there
+     *              is no label
+     * @return the histogram of that series
+     * @throws IllegalArgumentException if name is already used by a counter,
+     *                                  or with a different label
+     */
+    public LatencyHistogram histogram(String name, String label, String value) {
+        Family family = family(name, label, false);
+        Object histogram = family.series.get(value);
+        if (histogram == null)
+            histogram = family.series.computeIfAbsent(value, key -> new LatencyHistogram());
+        return (LatencyHistogram) histogram;
+    }
+
+    /**
+     * Records a value in one series of a histogram family.
+     *
+     * @param name  the name of the family
+     * @param label the name of the family's label
+     * @param value the value of the label for the series
+     * @param v     the value to record
+     */
+    public void record(String name, String label, String value, long v) {
+        histogram(name, label, value).record(v);
+    }
+
+    /**
+     * Records a value in a histogram family without a label.
+     *
+     * @param name the name of the family
+     * @param v    the value to record
+     */
+    public void record(String name, long v) {
+        histogram(name, null, "").record(v);
+    }
+
+    /**
+     * Adds to one series of a counter family.
+     *
+     * @param name   the name of the family, which should end in _total
+     * @param label  the name of the family's label, or null for none
+     * @param value  the value of the label for the series, or ""
+     * @param amount the amount to add
+     * @throws IllegalArgumentException if name is already used by a
+     *                                  histogram, or with a different label
+     */
+    public void add(String name, String label, String value, long amount) {
+        Family family = family(name, label, true);
+        Object counter = family.series.get(value);
+        if (counter == null)
+            counter = family.series.computeIfAbsent(value, key -> new LongAdder());
+        ((LongAdder) counter).add(amount);
+    }
+
+    /**
+     * Return the current value of one series of a counter family.
+     *
+     * @param name  the name of the family
+     * @param value the value of the label for the series, or ""
+     * @return the sum of everything added to that series, or 0 if nothing
+     *         has been
+     */
+    public long getCount(String name, String value) {
+        Family family = families.get(name);
+        Object counter = family == null ? null : family.series.get(value);
+        return counter instanceof LongAdder ? ((LongAdder) counter).sum() : 0;
+    }
+
+    /**
+     * Forgets every value recorded so far.
+     */
+    public void reset() {
+        families.clear();
+    }
+
+    /**
+     * Returns every metric in the Prometheus text exposition format:
+     * counters as counters, and histograms as summaries with the
+     * percentiles in QUANTILES, their sum and their count. Families are
+     * listed by name, and the series of each family by label value.
+     *
+     * @return the metrics as Prometheus text
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        for (Family family : new TreeMap<>(families).values()) {
+            text.append("# TYPE ").append(family.name)
+                    .append(family.counter ? " counter\n" : " summary\n");
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                String labels = family.label == null ? ""
+                        : family.label + "=\"" + escape(series.getKey()) + "\"";
+                if (family.counter) {
+                    text.append(family.name).append(braces(labels)).append(' ')
+                            .append(((LongAdder) series.getValue()).sum()).append('\n');
+                    continue;
+                }
+                LatencyHistogram histogram = (LatencyHistogram) series.getValue();
+                String separator = labels.isEmpty() ? "" : ",";
+                for (double quantile : QUANTILES) {
+                    text.append(family.name).append('{').append(labels).append(separator)
+                            .append("quantile=\"").append(quantile).append("\"} ")
+                            .append(histogram.getValueAtPercentile(quantile)).append('\n');
+                }
+                text.append(family.name).append("_sum").append(braces(labels)).append(' ')
+                        .append(histogram.getTotal()).append('\n');
+                text.append(family.name).append("_count").append(braces(labels)).append(' ')
+                        .append(histogram.getCount()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    // escapes a label value as the Prometheus text format requires
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Serves toPrometheusText at http://localhost:port/metrics, for a local
+     * scraper to read. The server only listens on the loopback address, and
+     * answers from a single background thread.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @return the running server, whose address holds the port chosen and
+     *         which is stopped with stop(0)
+     * @throws IOException if the server could not be started
+     */
+    public HttpServer startHttpServer(int port) throws IOException {
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, so that they
+     * can be read from JConsole or any other JMX client. Each counter is one
+     * attribute, and each histogram is one attribute for each of its count,
+     * mean, maximum and percentiles, named family.labelValue.statistic (for
+     * example graph_query_nanoseconds.shortestPathCost.p99). Attributes are
+     * read-only, and computed when they are read.
+     *
+     * @param objectName the name to register under, such as
+     *                   "graph:type=QueryMetrics"
+     * @return the name registered
+     * @throws JMException if the name is invalid or already registered
+     */
+    public ObjectName registerMBean(String objectName) throws JMException {
+        ObjectName name = new ObjectName(objectName);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), name);
+        return name;
+    }
+
+    // returns every metric as a JMX attribute name and value
+    private Map<String, Double> attributes() {
+        Map<String, Double> attributes = new LinkedHashMap<>();
+        for (Family family : new TreeMap<>(families).values()) {
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                String prefix = family.label == null ? family.name
+                        : family.name + "." + series.getKey();
+                if (family.counter) {
+                    attributes.put(prefix, (double) ((LongAdder) series.getValue()).sum());
+                    continue;
+                }
+                LatencyHistogram histogram = (LatencyHistogram) series.getValue();
+                attributes.put(prefix + ".count", (double) histogram.getCount());
+                attributes.put(prefix + ".mean", histogram.getMean());
+                attributes.put(prefix + ".max", (double) histogram.getMax());
+                for (int q = 0; q < QUANTILES.length; q++) {
+                    attributes.put(prefix + "." + QUANTILE_NAMES[q],
+                            (double) histogram.getValueAtPercentile(QUANTILES[q]));
+                }
+            }
+        }
+        return attributes;
+    }
+
+    // exposes the metrics that exist when it is asked as JMX attributes
+    private class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Double value = attributes().get(attribute);
+            if (value == null)
+                throw new AttributeNotFoundException("No metric " + attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Double> attributes = attributes();
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                if (attributes.containsKey(name))
+                    list.add(new Attribute(name, attributes.get(name)));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList(); // every metric is read-only
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("No operation " + action);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (String name : attributes().keySet())
+                infos.add(new MBeanAttributeInfo(name, "java.lang.Double", name, true, false, false));
+            return new MBeanInfo(QueryMetrics.class.getName(), "Graph query metrics",
+                    infos.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+        }
+    }
+
+}
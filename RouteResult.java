@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A RouteResult holds everything a single shortest path search finds about
+ * one route: the data in each node along the path, the weight of each edge
+ * between consecutive nodes, and the total cost. Edge weights are recorded
+ * while the path is unwound from the search, so a RouteResult never needs
+ * to look edges up in the graph again. RouteResults are immutable.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class RouteResult<NodeType> {
+
+    protected final List<NodeType> nodes;
+    protected final List<Double> times;
+    protected final double cost;
+
+    /**
+     * Constructor for a RouteResult. The lists are not copied, and must not
+     * be changed afterwards.
+     *
+     * @param nodes the data in each node along the path, from start to end
+     * @param times the weight of each edge along the path, with one fewer
+     *              entry than nodes
+     * @param cost  the total cost of the path
+     * @throws IllegalArgumentException if times does not hold one entry per
+     *                                  edge along the path
+     */
+    public RouteResult(List<NodeType> nodes, List<Double> times, double cost) {
+        if (nodes.isEmpty() || times.size() != nodes.size() - 1)
+            throw new IllegalArgumentException("A route needs one time per edge");
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.times = Collections.unmodifiableList(times);
+        this.cost = cost;
+    }
+
+    /**
+     * Return the data in each node along the route.
+     *
+     * @return unmodifiable list of node data, from start to end
+     */
+    public List<NodeType> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Return the weight of each edge along the route.
+     *
+     * @return unmodifiable list of edge weights, where the i-th weight is
+     *         that of the edge from getNodes().get(i) to getNodes().get(i+1)
+     */
+    public List<Double> getTimes() {
+        return times;
+    }
+
+    /**
+     * Return the total cost of the route.
+     *
+     * @return the sum of the weights along the route
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Return the data in the first node of the route.
+     *
+     * @return the start of the route
+     */
+    public NodeType getStart() {
+        return nodes.get(0);
+    }
+
+    /**
+     * Return the data in the last node of the route.
+     *
+     * @return the end of the route
+     */
+    public NodeType getEnd() {
+        return nodes.get(nodes.size() - 1);
+    }
+
+    /**
+     * Joins this route with one that continues from where it ends.
+     *
+     * @param next the route to follow this one with
+     * @return a route along this route and then along next
+     * @throws IllegalArgumentException if next does not start where this
+     *                                  route ends
+     */
+    public RouteResult<NodeType> append(RouteResult<NodeType> next) {
+        if (!getEnd().equals(next.getStart()))
+            throw new IllegalArgumentException("Routes must share their middle location");
+        List<NodeType> joinedNodes = new ArrayList<>(nodes.size() + next.nodes.size() - 1);
+        joinedNodes.addAll(nodes);
+        joinedNodes.addAll(next.nodes.subList(1, next.nodes.size()));
+        List<Double> joinedTimes = new ArrayList<>(times.size() + next.times.size());
+        joinedTimes.addAll(times);
+        joinedTimes.addAll(next.times);
+        return new RouteResult<>(joinedNodes, joinedTimes, cost + next.cost);
+    }
+
+    @Override
+    public String toString() {
+        return "RouteResult[nodes=" + nodes + ", times=" + times + ", cost=" + cost + "]";
+    }
+
+}
@@ -0,0 +1,288 @@
+import java.util.Arrays;
+
+/**
+ * A SearchScratch holds the per-node state of one shortest path search over
+ * nodes with dense int ids: the cost and predecessor of the best path found
+ * to each node, whether each node has been settled, and the frontier heap.
+ * The same SearchScratch can be reused by every search that runs on one
+ * thread, so that searches do not allocate or hash anything per node.
+ *
+ * Instead of clearing its arrays between searches, a SearchScratch stamps
+ * each entry with the generation (search number) that wrote it. reset()
+ * starts a new generation in constant time, after which every entry stamped
+ * by an earlier generation reads as unreached and unsettled.
+ */
+public class SearchScratch {
+
+    // the frontier of the current search
+    public final IndexedMinHeap heap;
+
+    // the current generation; entries are only valid when stamped with it
+    protected int generation = 0;
+    protected int[] reachedStamp;
+    protected int[] settledStamp;
+
+    // valid for nodes reached during the current generation
+    protected double[] dist;
+    protected int[] parent;
+    protected double[] parentWeight;
+    protected double[] estimate;
+    // the number of edges and the PathOrder tie key of each recorded path,
+    // valid for nodes recorded with the longer form of setPath
+    protected int[] hops;
+    protected long[] tieKey;
+
+    /**
+     * Constructor for a SearchScratch with room for ids below capacity.
+     *
+     * @param capacity the number of node ids to make room for
+     * @param arity    the arity of the frontier heap (2 or 4)
+     */
+    public SearchScratch(int capacity, int arity) {
+        heap = new IndexedMinHeap(capacity, arity);
+        reachedStamp = new int[capacity];
+        settledStamp = new int[capacity];
+        dist = new double[capacity];
+        parent = new int[capacity];
+        parentWeight = new double[capacity];
+        estimate = new double[capacity];
+        hops = new int[capacity];
+        tieKey = new long[capacity];
+    }
+
+    /**
+     * Starts a new search over nodes with ids below nodeCount. Every node
+     * becomes unreached and unsettled, and the heap is emptied.
+     *
+     * @param nodeCount the number of node ids the search may use
+     */
+    public void reset(int nodeCount) {
+        if (nodeCount > reachedStamp.length) {
+            int capacity = Math.max(nodeCount, reachedStamp.length * 2);
+            reachedStamp = Arrays.copyOf(reachedStamp, capacity);
+            settledStamp = Arrays.copyOf(settledStamp, capacity);
+            dist = Arrays.copyOf(dist, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            parentWeight = Arrays.copyOf(parentWeight, capacity);
+            estimate = Arrays.copyOf(estimate, capacity);
+            hops = Arrays.copyOf(hops, capacity);
+            tieKey = Arrays.copyOf(tieKey, capacity);
+        }
+        heap.ensureCapacity(nodeCount);
+        heap.clear();
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            // only happens once every few billion searches
+            Arrays.fill(reachedStamp, 0);
+            Arrays.fill(settledStamp, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Check whether a path to a node has been recorded during this search.
+     *
+     * @param id the id of the node
+     * @return true if setPath was called for id since the last reset
+     */
+    public boolean isReached(int id) {
+        return reachedStamp[id] == generation;
+    }
+
+    /**
+     * Return the cost of the best path recorded to a node.
+     *
+     * @param id the id of the node
+     * @return the cost of that path, or Double.POSITIVE_INFINITY if the node
+     *         has not been reached
+     */
+    public double getDist(int id) {
+        return reachedStamp[id] == generation ? dist[id] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Return the predecessor along the best path recorded to a node.
+     *
+     * @param id the id of the node
+     * @return the id of the predecessor, or -1 for the start of the search
+     *         and for nodes that have not been reached
+     */
+    public int getParent(int id) {
+        return reachedStamp[id] == generation ? parent[id] : -1;
+    }
+
+    /**
+     * Return the weight of the edge between a node and its predecessor along
+     * the best path recorded to it.
+     *
+     * @param id the id of the node
+     * @return the weight recorded by setPath, which is 0 for the start of the
+     *         search and meaningless for nodes that have not been reached
+     */
+    public double getParentWeight(int id) {
+        return parentWeight[id];
+    }
+
+    /**
+     * Records a path to the start of a search, marking it as reached.
+     *
+     * @param id       the id of the node
+     * @param cost     the cost of the path
+     * @param parentId the id of the predecessor along the path, or -1
+     */
+    public void setPath(int id, double cost, int parentId) {
+        setPath(id, cost, parentId, 0);
+    }
+
+    /**
+     * Records a path to a node, marking the node as reached.
+     *
+     * @param id         the id of the node
+     * @param cost       the cost of the path
+     * @param parentId   the id of the predecessor along the path, or -1
+     * @param edgeWeight the weight of the edge between the predecessor and
+     *                   this node, which the path ends with
+     */
+    public void setPath(int id, double cost, int parentId, double edgeWeight) {
+        reachedStamp[id] = generation;
+        dist[id] = cost;
+        parent[id] = parentId;
+        parentWeight[id] = edgeWeight;
+    }
+
+    /**
+     * Records a path to a node along with what PathOrder needs to compare it
+     * with other paths, marking the node as reached.
+     *
+     * @param id         the id of the node
+     * @param cost       the cost of the path
+     * @param parentId   the id of the predecessor along the path, or -1
+     * @param edgeWeight the weight of the edge between the predecessor and
+     *                   this node, which the path ends with
+     * @param hopCount   the number of edges along the path
+     * @param key        the tie key of the path
+     */
+    public void setPath(int id, double cost, int parentId, double edgeWeight, int hopCount, long key) {
+        setPath(id, cost, parentId, edgeWeight);
+        hops[id] = hopCount;
+        tieKey[id] = key;
+    }
+
+    /**
+     * Return the number of edges along the best path recorded to a node.
+     *
+     * @param id the id of the node
+     * @return the number of edges stored by setPath during this search
+     */
+    public int getHops(int id) {
+        return hops[id];
+    }
+
+    /**
+     * Return the PathOrder tie key of the best path recorded to a node.
+     *
+     * @param id the id of the node
+     * @return the tie key stored by setPath during this search
+     */
+    public long getTieKey(int id) {
+        return tieKey[id];
+    }
+
+    /**
+     * Check whether PathOrder prefers a path to the best path recorded to a
+     * node so far.
+     *
+     * @param id       the id of the node
+     * @param cost     the cost of the new path
+     * @param hopCount the number of edges along the new path
+     * @param key      the tie key of the new path
+     * @return true if the node has not been reached, or the new path is
+     *         preferred to the recorded one
+     */
+    public boolean improves(int id, double cost, int hopCount, long key) {
+        int order = compareCost(id, cost);
+        if (order != 0)
+            return order < 0;
+        return PathOrder.compare(cost, hopCount, key, dist[id], hops[id], tieKey[id]) < 0;
+    }
+
+    /**
+     * Compares the cost of a new path to a node with the cost of the best
+     * path recorded to it, which is all that improves needs unless the
+     * costs are the same. Searches check this first, so that they only work
+     * out the tie key of a path that could be recorded.
+     *
+     * @param id   the id of the node
+     * @param cost the cost of the new path
+     * @return a negative number if the node has not been reached or the new
+     *         path costs less, a positive number if it costs more, and 0 if
+     *         the costs are the same, up to rounding
+     */
+    public int compareCost(int id, double cost) {
+        if (reachedStamp[id] != generation)
+            return -1;
+        // the same test as PathOrder.compare, for the non-negative costs of
+        // a search
+        double recorded = dist[id];
+        if (cost < recorded * (1 - PathOrder.COST_TOLERANCE))
+            return -1;
+        if (cost * (1 - PathOrder.COST_TOLERANCE) > recorded)
+            return 1;
+        return 0;
+    }
+
+    /**
+     * Checks whether a search that records its paths with PathOrder can
+     * stop: when its frontier is empty, or its end node has left the
+     * frontier and nothing still in it could reach the end node for the
+     * same cost.
+     *
+     * @param endId the id of the node the path must end at
+     * @return true if no preferred path to the end node can be found
+     */
+    public boolean isFinished(int endId) {
+        return heap.isEmpty() || (isSettled(endId) && !heap.contains(endId)
+                && PathOrder.exceeds(heap.peekKey(), getDist(endId)));
+    }
+
+    /**
+     * Check whether a node has been settled during this search.
+     *
+     * @param id the id of the node
+     * @return true if settle was called for id since the last reset
+     */
+    public boolean isSettled(int id) {
+        return settledStamp[id] == generation;
+    }
+
+    /**
+     * Marks a node as settled, meaning its recorded path is final.
+     *
+     * @param id the id of the node
+     */
+    public void settle(int id) {
+        settledStamp[id] = generation;
+    }
+
+    /**
+     * Return the heuristic estimate stored for a reached node.
+     *
+     * @param id the id of the node
+     * @return the estimate stored by setEstimate during this search
+     */
+    public double getEstimate(int id) {
+        return estimate[id];
+    }
+
+    /**
+     * Stores a heuristic estimate for a node, such as the A* estimate of the
+     * remaining cost from that node to the destination.
+     *
+     * @param id    the id of the node
+     * @param value the estimate to store
+     */
+    public void setEstimate(int id, double value) {
+        estimate[id] = value;
+    }
+
+}
@@ -0,0 +1,74 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Compares the number of nodes settled and the time taken by plain Dijkstra,
+ * bidirectional Dijkstra and A* search with landmark (ALT) heuristics, over
+ * the same set of random point-to-point queries.
+ *
+ * Usage: java ShortestPathBenchmark [dotFile] [queryCount]
+ */
+public class ShortestPathBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String filename = args.length > 0 ? args[0] : "campus.dot";
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        DijkstraGraph<String, Double> graph = new DijkstraGraph<>();
+        Backend backend = new Backend(graph);
+        backend.loadGraphData(filename);
+        List<String> locations = backend.getListOfAllLocations();
+        System.out.println("Loaded " + graph.getNodeCount() + " nodes and "
+                + graph.getEdgeCount() + " edges from " + filename);
+
+        // pick the same random queries for every method
+        Random random = new Random(42);
+        String[] starts = new String[queryCount];
+        String[] ends = new String[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            starts[i] = locations.get(random.nextInt(locations.size()));
+            ends[i] = locations.get(random.nextInt(locations.size()));
+        }
+
+        double[] expected = run("Dijkstra", graph, null, starts, ends, null);
+        graph.setBidirectional(true);
+        run("Bidirectional Dijkstra", graph, null, starts, ends, expected);
+        graph.setBidirectional(false);
+        for (int landmarkCount = 1; landmarkCount <= 16; landmarkCount *= 2) {
+            long time = System.nanoTime();
+            LandmarkHeuristic<String> heuristic = LandmarkHeuristic.preprocess(graph, landmarkCount);
+            time = System.nanoTime() - time;
+            System.out.printf("  (preprocessed %d landmarks in %.1f ms)%n", landmarkCount, time / 1e6);
+            run("A* with " + landmarkCount + " landmarks", graph, heuristic, starts, ends, expected);
+        }
+    }
+
+    // runs every query, printing totals and checking costs against expected
+    private static double[] run(String name, DijkstraGraph<String, Double> graph,
+            Heuristic<String> heuristic, String[] starts, String[] ends, double[] expected) {
+        double[] costs = new double[starts.length];
+        long settled = 0;
+        int mismatches = 0;
+        long time = System.nanoTime();
+        for (int i = 0; i < starts.length; i++) {
+            try {
+                costs[i] = heuristic == null ? graph.shortestPathCost(starts[i], ends[i])
+                        : graph.shortestPathCost(starts[i], ends[i], heuristic);
+            } catch (NoSuchElementException e) {
+                costs[i] = Double.POSITIVE_INFINITY;
+            }
+            settled += graph.getLastSettledCount();
+            if (expected != null && Math.abs(costs[i] - expected[i]) > 1e-9
+                    && costs[i] != expected[i])
+                mismatches++;
+        }
+        time = System.nanoTime() - time;
+        System.out.printf("%-28s %10.1f settled/query %10.2f us/query", name,
+                (double) settled / starts.length, time / 1e3 / starts.length);
+        System.out.println(mismatches == 0 ? "" : "  " + mismatches + " COST MISMATCHES");
+        return costs;
+    }
+
+}
@@ -0,0 +1,182 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A ShortestPathTree holds the result of one search from a start node to
+ * every node it can reach: the cost of the shortest path to each node and
+ * each node's predecessor along that path, both indexed by node id. After a
+ * single search, the cost of the path to any target is found in constant
+ * time, and the path itself in time proportional to its length.
+ *
+ * A ShortestPathTree can be passed back to the graph that filled it to hold
+ * the result of a later search, which reuses its arrays. The ids used by a
+ * tree are those of the graph at the time of the search, so a tree filled by
+ * a DijkstraGraph should not be used after that graph is modified, unless
+ * the tree is one that a DynamicDijkstraGraph keeps up to date.
+ *
+ * @param NodeType is the data type stored at each graph node
+ */
+public class ShortestPathTree<NodeType> {
+
+    // the id of the start node, and the number of node ids in use
+    protected int start = -1;
+    protected int nodeCount = 0;
+
+    // dist[id] is the cost of the path to node id, or infinity when it cannot
+    // be reached, parent[id] its predecessor, or -1 at the start, and
+    // parentWeight[id] the weight of the edge from that predecessor
+    protected double[] dist = new double[0];
+    protected int[] parent = new int[0];
+    protected double[] parentWeight = new double[0];
+    // hops[id] and tieKey[id] are the number of edges along the path to node
+    // id and its PathOrder tie key, which DynamicDijkstraGraph compares when
+    // it repairs the tree
+    protected int[] hops = new int[0];
+    protected long[] tieKey = new long[0];
+
+    // converts between node data and ids in the graph that was searched
+    protected IntFunction<NodeType> dataOf;
+    protected ToIntFunction<NodeType> idOf;
+
+    /**
+     * Prepares this tree to receive the result of a new search: every node
+     * is marked unreachable until the search records a path to it.
+     *
+     * @param start     the id of the start node
+     * @param nodeCount the number of node ids in the searched graph
+     * @param dataOf    returns the data in the node with a given id
+     * @param idOf      returns the id of the node with given data, or -1
+     */
+    protected void reset(int start, int nodeCount, IntFunction<NodeType> dataOf,
+            ToIntFunction<NodeType> idOf) {
+        if (dist.length < nodeCount) {
+            dist = new double[nodeCount];
+            parent = new int[nodeCount];
+            parentWeight = new double[nodeCount];
+            hops = new int[nodeCount];
+            tieKey = new long[nodeCount];
+        }
+        Arrays.fill(dist, 0, nodeCount, Double.POSITIVE_INFINITY);
+        Arrays.fill(parent, 0, nodeCount, -1);
+        this.start = start;
+        this.nodeCount = nodeCount;
+        this.dataOf = dataOf;
+        this.idOf = idOf;
+    }
+
+    /**
+     * Return the data item in the node this tree was searched from.
+     *
+     * @return the data item in the start node
+     */
+    public NodeType getStart() {
+        return dataOf.apply(start);
+    }
+
+    /**
+     * Return the number of node ids covered by this tree.
+     *
+     * @return the number of nodes in the searched graph
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Return the cost of the shortest path to the node with the provided id.
+     *
+     * @param id the id of the target node
+     * @return the cost of that path, or Double.POSITIVE_INFINITY when the
+     *         node cannot be reached
+     */
+    public double getCostById(int id) {
+        return dist[id];
+    }
+
+    /**
+     * Return the predecessor of the node with the provided id along its
+     * shortest path.
+     *
+     * @param id the id of the target node
+     * @return the id of its predecessor, or -1 for the start node and for
+     *         nodes that cannot be reached
+     */
+    public int getParentId(int id) {
+        return parent[id];
+    }
+
+    // returns the id of target, if it is a reachable node
+    private int reachableId(NodeType target) {
+        int id = target == null ? -1 : idOf.applyAsInt(target);
+        if (id < 0 || id >= nodeCount || dist[id] == Double.POSITIVE_INFINITY)
+            throw new NoSuchElementException("No path from start to end.");
+        return id;
+    }
+
+    /**
+     * Check whether there is a path from the start node to target.
+     *
+     * @param target the data item in the destination node
+     * @return true if target is a node that can be reached, or false otherwise
+     */
+    public boolean isReachable(NodeType target) {
+        int id = target == null ? -1 : idOf.applyAsInt(target);
+        return id >= 0 && id < nodeCount && dist[id] < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the cost of the shortest path from the start node to target.
+     *
+     * @param target the data item in the destination node
+     * @return the cost of the shortest path to target
+     * @throws NoSuchElementException when target cannot be reached
+     */
+    public double getCost(NodeType target) {
+        return dist[reachableId(target)];
+    }
+
+    /**
+     * Returns the list of data values from nodes along the shortest path
+     * from the start node to target, in the same way as
+     * GraphADT.shortestPathData.
+     *
+     * @param target the data item in the destination node
+     * @return list of data item from node along this shortest path
+     * @throws NoSuchElementException when target cannot be reached
+     */
+    public List<NodeType> getPath(NodeType target) {
+        LinkedList<NodeType> path = new LinkedList<>();
+        for (int id = reachableId(target); id != -1; id = parent[id])
+            path.addFirst(dataOf.apply(id));
+        return path;
+    }
+
+    /**
+     * Returns the route from the start node to target, with the weight of
+     * each edge along it, in the same way as GraphADT.shortestPathRoute.
+     *
+     * @param target the data item in the destination node
+     * @return the route along the shortest path to target
+     * @throws NoSuchElementException when target cannot be reached
+     */
+    public RouteResult<NodeType> getRoute(NodeType target) {
+        int targetId = reachableId(target);
+        List<NodeType> nodes = new ArrayList<>();
+        List<Double> times = new ArrayList<>();
+        for (int id = targetId; id != -1; id = parent[id]) {
+            nodes.add(dataOf.apply(id));
+            if (parent[id] != -1)
+                times.add(parentWeight[id]);
+        }
+        Collections.reverse(nodes);
+        Collections.reverse(times);
+        return new RouteResult<>(nodes, times, dist[targetId]);
+    }
+
+}